@@ -3,10 +3,13 @@ package uk.ac.bham.cs.domct.physicsengine.application;
 import static org.lwjgl.glfw.GLFW.*;
 
 import uk.ac.bham.cs.domct.physicsengine.entity.Camera;
+import uk.ac.bham.cs.domct.physicsengine.systems.World;
 import uk.ac.bham.cs.domct.physicsengine.systems.io.input.Keyboard;
 import uk.ac.bham.cs.domct.physicsengine.systems.io.output.CameraSystem;
 import uk.ac.bham.cs.domct.physicsengine.systems.io.output.Window;
 import uk.ac.bham.cs.domct.physicsengine.systems.physics.collision.CollisionSystem;
+import uk.ac.bham.cs.domct.physicsengine.systems.physics.collision.detection.broadphase.BroadPhase;
+import uk.ac.bham.cs.domct.physicsengine.systems.physics.collision.detection.broadphase.SweepAndPrune;
 import uk.ac.bham.cs.domct.physicsengine.systems.physics.dynamics.DynamicsSystem;
 import uk.ac.bham.cs.domct.physicsengine.systems.rendering.RenderSystem;
 import uk.ac.bham.cs.domct.physicsengine.systems.rendering.shader.EntityShader;
@@ -22,6 +25,7 @@ import uk.ac.bham.cs.domct.physicsengine.systems.rendering.shader.EntityShader;
 public abstract class Application implements Runnable
 {
 	private Thread game;
+	private final World world;
 	private Window window;
 	private EntityShader shader;
 	private Camera camera;
@@ -35,8 +39,28 @@ public abstract class Application implements Runnable
 	
 	private RenderSystem renderer;
 	private CameraSystem camSystem;
-	private DynamicsSystem dynamicsSystem = new DynamicsSystem(dt);
-	private CollisionSystem collisionSystem = new CollisionSystem(dt);
+	private DynamicsSystem dynamicsSystem;
+	private CollisionSystem collisionSystem;
+	
+	/**
+	 * Constructs an application simulating the default world.
+	 */
+	protected Application()
+	{
+		this(World.getDefault());
+	}
+	
+	/**
+	 * Constructs an application simulating the given world, to which every entity
+	 * in the scene should be added.
+	 * 
+	 * @param world The world of the application.
+	 */
+	protected Application(World world)
+	{
+		this.world = world;
+		dynamicsSystem = new DynamicsSystem(world, dt);
+	}
 
 	@Override
 	public void run()
@@ -81,12 +105,34 @@ public abstract class Application implements Runnable
 	{
 		window = new Window(1280, 720);
 		windowSettings(window);
-		camera = new Camera(window);
+		camera = new Camera(world, window);
 		shader = new EntityShader();
 		window.create();
 		shader.create();
 		renderer = new RenderSystem(camera, shader);
 		camSystem = new CameraSystem(camera);
+		collisionSystem = new CollisionSystem(world, dt, createBroadPhase());
+	}
+	
+	/**
+	 * Creates the broad phase used to find pairs of entities with intersecting
+	 * bounding boxes. Uses sweep and prune unless overridden.
+	 * 
+	 * @return The broad phase for the collision system.
+	 */
+	protected BroadPhase createBroadPhase()
+	{
+		return new SweepAndPrune();
+	}
+	
+	/**
+	 * Returns the world simulated by the application.
+	 * 
+	 * @return The world of the application.
+	 */
+	protected World getWorld()
+	{
+		return world;
 	}
 	
 	/**
@@ -115,7 +161,9 @@ public abstract class Application implements Runnable
 	
 	/**
 	 * Method for the user to define how the scene updates each
-	 * frame.
+	 * frame. Entities should be created, destroyed or have their components
+	 * changed through the world's command buffer, which is applied at the
+	 * end of the frame.
 	 * 
 	 * @param dt The time taken for a frame.
 	 */
@@ -138,6 +186,8 @@ public abstract class Application implements Runnable
 			dynamicsSystem.update();
 			collisionSystem.update();
 			updateScene(dt);
+			// Apply the structural changes recorded during the step.
+			world.applyCommands();
 		}
 	}
 
@@ -155,11 +205,12 @@ public abstract class Application implements Runnable
 	
 	/**
 	 * Close the application. Destroying the window, closing the render
-	 * system.
+	 * and collision systems.
 	 */
 	private void close()
 	{
 		window.destroy();
+		collisionSystem.close();
 		renderer.close();
 		shader.close();
 	}
@@ -0,0 +1,233 @@
+package uk.ac.bham.cs.domct.physicsengine.application;
+
+import java.util.function.BooleanSupplier;
+
+import uk.ac.bham.cs.domct.physicsengine.systems.World;
+import uk.ac.bham.cs.domct.physicsengine.systems.physics.collision.CollisionSystem;
+import uk.ac.bham.cs.domct.physicsengine.systems.physics.collision.detection.broadphase.BroadPhase;
+import uk.ac.bham.cs.domct.physicsengine.systems.physics.collision.detection.broadphase.SweepAndPrune;
+import uk.ac.bham.cs.domct.physicsengine.systems.physics.dynamics.DynamicsSystem;
+
+/**
+ * Application class to be extended by any program that only needs to simulate a scene. No
+ * window, shader or rendering system is created so no LWJGL natives are initialised, and the
+ * dynamics and collision systems are stepped as fast as possible rather than in real-time.
+ * The simulation runs for a fixed number of steps or until a given condition is met, after
+ * which the number of steps simulated per second is reported.
+ *
+ * @author Dominic Cogan-Tucker
+ *
+ */
+public abstract class HeadlessApplication implements Runnable
+{
+	private Thread simulation;
+	private final World world;
+
+	private final double dt;
+	private long stepLimit = Long.MAX_VALUE;
+	private BooleanSupplier stopCondition = () -> false;
+
+	private long steps = 0;
+	private long elapsedTime = 0;
+
+	private DynamicsSystem dynamicsSystem;
+	private CollisionSystem collisionSystem;
+
+	/**
+	 * Constructs a headless application with the same fixed time step as
+	 * a windowed application.
+	 */
+	protected HeadlessApplication()
+	{
+		this(1.0 / 144);
+	}
+
+	/**
+	 * Constructs a headless application with the given fixed time step.
+	 *
+	 * @param dt The time simulated by each step.
+	 */
+	protected HeadlessApplication(double dt)
+	{
+		this(World.getDefault(), dt);
+	}
+
+	/**
+	 * Constructs a headless application simulating the given world with the given
+	 * fixed time step. Every entity in the scene should be added to the world, so that
+	 * several applications can be run at once, each on its own world.
+	 *
+	 * @param world The world of the application.
+	 * @param dt The time simulated by each step.
+	 */
+	protected HeadlessApplication(World world, double dt)
+	{
+		this.world = world;
+		this.dt = dt;
+		dynamicsSystem = new DynamicsSystem(world, dt);
+	}
+
+	@Override
+	public void run()
+	{
+		collisionSystem = new CollisionSystem(world, dt, createBroadPhase());
+		initScene();
+		long startTime = System.nanoTime();
+
+		// Loops until the step limit is reached or the stop condition is met.
+		while (steps < stepLimit && !stopCondition.getAsBoolean())
+		{
+			update(dt);
+			steps++;
+		}
+		elapsedTime = System.nanoTime() - startTime;
+		collisionSystem.close();
+		report();
+	}
+
+	/**
+	 * Starts the simulation on its own thread. To be called in the main method of
+	 * the class extending this class.
+	 */
+	public HeadlessApplication start()
+	{
+		simulation = new Thread(this, "HeadlessApplication");
+		simulation.start();
+		return this;
+	}
+
+	/**
+	 * Waits for a simulation started with {@link #start()} to finish.
+	 *
+	 * @throws InterruptedException If interrupted while waiting.
+	 */
+	public HeadlessApplication join() throws InterruptedException
+	{
+		if (simulation != null)
+		{
+			simulation.join();
+		}
+		return this;
+	}
+
+	/**
+	 * Sets the number of steps to simulate before stopping.
+	 *
+	 * @param steps The maximum number of steps.
+	 */
+	public HeadlessApplication runFor(long steps)
+	{
+		stepLimit = steps;
+		return this;
+	}
+
+	/**
+	 * Sets the condition to stop the simulation. The condition is checked
+	 * before every step.
+	 *
+	 * @param condition The condition that stops the simulation once true.
+	 */
+	public HeadlessApplication runUntil(BooleanSupplier condition)
+	{
+		stopCondition = condition;
+		return this;
+	}
+
+	/**
+	 * Creates the broad phase used to find pairs of entities with intersecting
+	 * bounding boxes. Uses sweep and prune unless overridden.
+	 *
+	 * @return The broad phase for the collision system.
+	 */
+	protected BroadPhase createBroadPhase()
+	{
+		return new SweepAndPrune();
+	}
+
+	/**
+	 * Method for the user to define the initial contents of the
+	 * scene.
+	 */
+	protected abstract void initScene();
+
+	/**
+	 * Method for the user to define how the scene updates each
+	 * step. Entities should be created, destroyed or have their components
+	 * changed through the world's command buffer, which is applied at the
+	 * end of the step.
+	 *
+	 * @param dt The time simulated by a step.
+	 */
+	protected abstract void updateScene(double dt);
+
+	/**
+	 * Updates the application's physics systems. To be called every step.
+	 */
+	private void update(double dt)
+	{
+		dynamicsSystem.update();
+		collisionSystem.update();
+		updateScene(dt);
+		// Apply the structural changes recorded during the step.
+		world.applyCommands();
+	}
+
+	/**
+	 * Prints the number of steps simulated and the rate they were simulated at.
+	 */
+	protected void report()
+	{
+		System.out.printf("Simulated %d steps in %.3f s (%.1f steps/sec).%n",
+				steps, getElapsedSeconds(), getStepsPerSecond());
+	}
+
+	/**
+	 * Returns the number of steps simulated so far.
+	 *
+	 * @return The number of steps simulated.
+	 */
+	public long getSteps()
+	{
+		return steps;
+	}
+
+	/**
+	 * Returns the wall clock time taken to simulate every step.
+	 *
+	 * @return The time taken in seconds.
+	 */
+	public double getElapsedSeconds()
+	{
+		return elapsedTime / 1E9;
+	}
+
+	/**
+	 * Returns the number of steps simulated per second of wall clock time.
+	 *
+	 * @return The simulation throughput in steps per second.
+	 */
+	public double getStepsPerSecond()
+	{
+		return elapsedTime == 0 ? 0 : steps / getElapsedSeconds();
+	}
+
+	/**
+	 * Returns the world simulated by the application.
+	 *
+	 * @return The world of the application.
+	 */
+	public World getWorld()
+	{
+		return world;
+	}
+
+	/**
+	 * Returns the collision system used by the simulation.
+	 *
+	 * @return The collision system.
+	 */
+	public CollisionSystem getCollisionSystem()
+	{
+		return collisionSystem;
+	}
+}
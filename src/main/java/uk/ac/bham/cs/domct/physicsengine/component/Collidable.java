@@ -1,5 +1,7 @@
 package uk.ac.bham.cs.domct.physicsengine.component;
 
+import org.joml.Vector3f;
+
 import uk.ac.bham.cs.domct.physicsengine.systems.physics.collision.detection.broadphase.BoundingBox;
 import uk.ac.bham.cs.domct.physicsengine.systems.physics.collision.detection.narrowphase.ConvexHull;
 
@@ -7,6 +9,10 @@ import uk.ac.bham.cs.domct.physicsengine.systems.physics.collision.detection.nar
  * Component that holds an entity's bounding box for collision detection,
  * as well as the coefficients of restitution and friction for collision
  * response.
+ * <p>
+ * The shape of the entity decides how its collisions are detected. Pairs of
+ * spheres, boxes and planes have their contact data found in closed form, while
+ * any pair involving a hull is tested with GJK and EPA on the convex hulls.
  * 
  * @author Dominic Cogan-Tucker
  *
@@ -23,6 +29,23 @@ public class Collidable extends Component
 	 */
 	public ConvexHull hull;
 	
+	/**
+	 * The shape of the entity, a general convex hull unless set otherwise.
+	 */
+	public Shape shape = Shape.HULL;
+	
+	/**
+	 * The half extents of a box or plane in local space, centred on the origin
+	 * of the entity and scaled by the entity's scale.
+	 */
+	public final Vector3f halfExtents = new Vector3f();
+	
+	/**
+	 * The radius of a sphere in local space, centred on the origin of the entity
+	 * and scaled by the entity's scale.
+	 */
+	public float radius;
+	
 	/**
 	 * The coefficient of restitution for the entity. 
 	 */
@@ -32,4 +55,30 @@ public class Collidable extends Component
 	 * The coefficient of friction for the entity.
 	 */
 	public float friction = 0f;
+	
+	/**
+	 * The shapes of collidable entity.
+	 */
+	public enum Shape
+	{
+		/**
+		 * A general convex hull, tested with GJK and EPA.
+		 */
+		HULL,
+		
+		/**
+		 * A sphere of the collidable's radius.
+		 */
+		SPHERE,
+		
+		/**
+		 * A box of the collidable's half extents.
+		 */
+		BOX,
+		
+		/**
+		 * A rectangle in the local x and z axes, a box with no height.
+		 */
+		PLANE
+	}
 }
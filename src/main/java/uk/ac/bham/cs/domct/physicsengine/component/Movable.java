@@ -45,7 +45,8 @@ public class Movable extends Component
 	
 	/**
 	 * The value of the movable component from the 
-	 * previous time step.
+	 * previous time step. Created the first
+	 * time the entity is integrated and overwritten every step after.
 	 */
 	public Movable previous;
 }
\ No newline at end of file
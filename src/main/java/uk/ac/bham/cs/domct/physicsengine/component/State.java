@@ -1,12 +1,19 @@
 package uk.ac.bham.cs.domct.physicsengine.component;
 
+import org.joml.Quaternionf;
+import org.joml.Quaternionfc;
 import org.joml.Vector3f;
+import org.joml.Vector3fc;
 
 /**
  * Component that stores the state of an entity consisting 
  * of the coordinate position of the entit, it's rotation and
  * size in the scene. Also holds the previous state component of 
  * the entity.
+ * <p>
+ * The orientation of the entity is held as a quaternion, with the rotation
+ * vector kept as a view of it in Euler angles. Setting the rotation directly
+ * still works, the orientation being rebuilt from it the next time it is read.
  * 
  * @author Dominic Cogan-Tucker
  *
@@ -19,10 +26,26 @@ public class State extends Component
 	public Vector3f position = new Vector3f();
 
 	/**
-	 * The rotation of the entity.
+	 * The rotation of the entity as Euler angles in degrees, applied about the
+	 * x, then y, then z axis.
 	 */
 	public Vector3f rotation = new Vector3f();
 	
+	/**
+	 * The orientation of the entity.
+	 */
+	private final Quaternionf orientation = new Quaternionf();
+	
+	/**
+	 * The rotation the orientation was last synchronised with.
+	 */
+	private final Vector3f syncedRotation = new Vector3f();
+	
+	/**
+	 * The rotation over a step, reused every step.
+	 */
+	private final Quaternionf spin = new Quaternionf();
+	
 	/**
 	 * The scale of the entity.
 	 */
@@ -30,7 +53,56 @@ public class State extends Component
 	
 	/**
 	 * The value of the state component from the
-	 * previous time step.
+	 * previous time step. Created the first
+	 * time the entity is integrated and overwritten every step after.
 	 */
 	public State previous;
+	
+	/**
+	 * Returns the orientation of the entity, first rebuilding it from the rotation
+	 * if the rotation has been changed directly. The returned quaternion should not
+	 * be modified, setOrientation should be used instead.
+	 * 
+	 * @return The orientation of the entity.
+	 */
+	public Quaternionf getOrientation()
+	{
+		if (!rotation.equals(syncedRotation))
+		{
+			orientation.rotationXYZ((float) Math.toRadians(rotation.x), 
+					(float) Math.toRadians(rotation.y), (float) Math.toRadians(rotation.z));
+			syncedRotation.set(rotation);
+		}
+		return orientation;
+	}
+	
+	/**
+	 * Sets the orientation of the entity, updating the rotation to match it.
+	 * 
+	 * @param orientation The new orientation.
+	 * @return This state.
+	 */
+	public State setOrientation(Quaternionfc orientation)
+	{
+		this.orientation.set(orientation);
+		this.orientation.getEulerAnglesXYZ(rotation);
+		rotation.set((float) Math.toDegrees(rotation.x), 
+				(float) Math.toDegrees(rotation.y), (float) Math.toDegrees(rotation.z));
+		syncedRotation.set(rotation);
+		return this;
+	}
+	
+	/**
+	 * Rotates the entity about the world axes by the given angular velocity over the
+	 * given time.
+	 * 
+	 * @param dt The time to rotate for.
+	 * @param angVelocity The angular velocity in radians per second.
+	 * @return This state.
+	 */
+	public State rotate(float dt, Vector3fc angVelocity)
+	{
+		spin.identity().integrate(dt, angVelocity.x(), angVelocity.y(), angVelocity.z());
+		return setOrientation(getOrientation().premul(spin).normalize());
+	}
 }
@@ -0,0 +1,133 @@
+package uk.ac.bham.cs.domct.physicsengine.component;
+
+import org.joml.Matrix4f;
+import org.joml.Quaternionf;
+import org.joml.Quaternionfc;
+import org.joml.Vector3f;
+
+/**
+ * Component that caches the world transformation matrix of an entity, and its
+ * inverse, as built from the entity's state. The matrices are only rebuilt when
+ * the position, orientation or scale they were built from has changed, so the
+ * broad phase, narrow phase and renderer can all share one transform per entity
+ * per step.
+ *
+ * @author Dominic Cogan-Tucker
+ *
+ */
+public class Transform extends Component
+{
+	/**
+	 * The distance from 0, 1 or -1 within which rotation entries are snapped.
+	 */
+	private static final float SNAP_EPSILON = 1E-6f;
+
+	/**
+	 * The local to world transformation matrix.
+	 */
+	public final Matrix4f matrix = new Matrix4f();
+
+	/**
+	 * The world to local transformation matrix. Axes with a scale of zero, such as
+	 * the height of a plane, are flattened rather than made infinite.
+	 */
+	public final Matrix4f inverse = new Matrix4f();
+
+	/**
+	 * The position, orientation and scale the matrices were built from.
+	 */
+	private final Vector3f position = new Vector3f(Float.NaN);
+	private final Quaternionf orientation = new Quaternionf(Float.NaN, Float.NaN, Float.NaN, Float.NaN);
+	private final Vector3f scale = new Vector3f(Float.NaN);
+
+	/**
+	 * Rebuilds the matrices from the given state if it has changed since they
+	 * were last built.
+	 *
+	 * @param state The state of the entity.
+	 * @return This transform.
+	 */
+	public Transform update(State state)
+	{
+		return update(state.position, state.getOrientation(), state.scale);
+	}
+
+	/**
+	 * Rebuilds the matrices from the given position, orientation and scale if they
+	 * have changed since the matrices were last built.
+	 *
+	 * @param position The position.
+	 * @param orientation The orientation.
+	 * @param scale The scale.
+	 * @return This transform.
+	 */
+	public Transform update(Vector3f position, Quaternionfc orientation, Vector3f scale)
+	{
+		if (this.position.equals(position) && this.orientation.equals(orientation) && this.scale.equals(scale))
+		{
+			return this;
+		}
+		this.position.set(position);
+		this.orientation.set(orientation);
+		this.scale.set(scale);
+
+		// The inverse of the rotation and translation is built before the scale is applied.
+		matrix.translationRotate(position.x, position.y, position.z, this.orientation);
+		snapRotation();
+		matrix.invertAffine(inverse);
+		inverse.scaleLocal(reciprocal(scale.x), reciprocal(scale.y), reciprocal(scale.z));
+		matrix.scale(scale);
+		return this;
+	}
+
+	/**
+	 * Transforms a direction in world space to the direction in local space whose
+	 * furthest point maps to the furthest point in the world direction. This is the
+	 * direction multiplied by the transpose of the matrix, and needs no inverse.
+	 *
+	 * @param direction The world direction, which is set to the local direction.
+	 * @return The direction.
+	 */
+	public Vector3f toLocalDirection(Vector3f direction)
+	{
+		float x = matrix.m00() * direction.x + matrix.m01() * direction.y + matrix.m02() * direction.z;
+		float y = matrix.m10() * direction.x + matrix.m11() * direction.y + matrix.m12() * direction.z;
+		float z = matrix.m20() * direction.x + matrix.m21() * direction.y + matrix.m22() * direction.z;
+		return direction.set(x, y, z);
+	}
+
+	/**
+	 * Removes the rounding error from rotation matrix entries that are within a tiny
+	 * distance of 0, 1 or -1, so that rotations by right angles give exactly axis
+	 * aligned matrices and touching faces of boxes stay touching.
+	 */
+	private void snapRotation()
+	{
+		for (int column = 0; column < 3; column++)
+		{
+			for (int row = 0; row < 3; row++)
+			{
+				float value = matrix.get(column, row);
+				if (Math.abs(value) < SNAP_EPSILON)
+				{
+					matrix.set(column, row, 0);
+				}
+				else if (Math.abs(Math.abs(value) - 1) < SNAP_EPSILON)
+				{
+					matrix.set(column, row, Math.signum(value));
+				}
+			}
+		}
+	}
+
+	/**
+	 * Returns the reciprocal of the scale, or zero for a scale of zero.
+	 *
+	 * @param scale The scale along an axis.
+	 * @return The reciprocal of the scale.
+	 */
+	private static float reciprocal(float scale)
+	{
+		return scale == 0 ? 0 : 1 / scale;
+	}
+}
@@ -0,0 +1,37 @@
+package uk.ac.bham.cs.domct.physicsengine.demo;
+
+import org.joml.Vector2f;
+import org.joml.Vector3f;
+
+import uk.ac.bham.cs.domct.physicsengine.application.HeadlessApplication;
+import uk.ac.bham.cs.domct.physicsengine.component.Collidable;
+import uk.ac.bham.cs.domct.physicsengine.entity.CollidablePlane;
+import uk.ac.bham.cs.domct.physicsengine.entity.MovableCollidableBox;
+
+public class HeadlessBoxStackDemo extends HeadlessApplication
+{
+
+	@Override
+	protected void initScene()
+	{
+		CollidablePlane plane = CollidablePlane.create(new Vector3f(0, -2.5f, -7.5f), new Vector3f(0, 0, 0), new Vector2f(5, 5));
+		plane.getComponent(Collidable.class).restitution = 0.6f;
+
+		for (int i = 0; i < 4; i++)
+		{
+			MovableCollidableBox.create(new Vector3f(0, 2f * i, -7.5f), new Vector3f(0, 0, 0), 1, 1)
+									.getComponent(Collidable.class).restitution = 0.2f;
+		}
+	}
+
+	@Override
+	protected void updateScene(double dt)
+	{
+
+	}
+
+	public static void main(String[] args)
+	{
+		new HeadlessBoxStackDemo().runFor(10000).start();
+	}
+}
@@ -6,6 +6,7 @@ import uk.ac.bham.cs.domct.physicsengine.component.Controllable;
 import uk.ac.bham.cs.domct.physicsengine.component.Movable;
 import uk.ac.bham.cs.domct.physicsengine.component.State;
 import uk.ac.bham.cs.domct.physicsengine.component.View;
+import uk.ac.bham.cs.domct.physicsengine.systems.World;
 import uk.ac.bham.cs.domct.physicsengine.systems.io.output.Window;
 
 /**
@@ -24,13 +25,24 @@ public class Camera extends Entity
 	private float speed = 0.05f;
 	
 	/**
-	 * Construct a Camera taking in the window to use as it's view.
+	 * Construct a Camera in the default world taking in the window to use as it's view.
 	 * 
 	 * @param window The window to use.
 	 */
 	public Camera(Window window)
 	{
-		super();
+		this(World.getDefault(), window);
+	}
+	
+	/**
+	 * Construct a Camera in the given world taking in the window to use as it's view.
+	 * 
+	 * @param world The world of the camera.
+	 * @param window The window to use.
+	 */
+	public Camera(World world, Window window)
+	{
+		super(world);
 		// Create and attach a position component.
 		setStateComponent(new Vector3f(), new Vector3f());
 		// Create and attach a movable component.
@@ -42,8 +54,8 @@ public class Camera extends Entity
 	}
 
 	/**
-	 * Construct a Camera at the given position and rotation, taking in the window
-	 * to use as it's view.
+	 * Construct a Camera in the default world at the given position and rotation,
+	 * taking in the window to use as it's view.
 	 * 
 	 * @param window The window to use.
 	 * @param pos The position of the camera.
@@ -51,7 +63,21 @@ public class Camera extends Entity
 	 */
 	public Camera(Window window, Vector3f pos, Vector3f rot)
 	{
-		super();
+		this(World.getDefault(), window, pos, rot);
+	}
+	
+	/**
+	 * Construct a Camera in the given world at the given position and rotation,
+	 * taking in the window to use as it's view.
+	 * 
+	 * @param world The world of the camera.
+	 * @param window The window to use.
+	 * @param pos The position of the camera.
+	 * @param rot The rotation of the camera.
+	 */
+	public Camera(World world, Window window, Vector3f pos, Vector3f rot)
+	{
+		super(world);
 		// Create and attach a position component
 		setStateComponent(pos, rot);
 		// Create and attach a movable component
@@ -1,14 +1,15 @@
 package uk.ac.bham.cs.domct.physicsengine.entity;
 
 import org.joml.Vector3f;
-import org.joml.Vector4f;
 
 import uk.ac.bham.cs.domct.physicsengine.component.Collidable;
 import uk.ac.bham.cs.domct.physicsengine.component.Material;
 import uk.ac.bham.cs.domct.physicsengine.component.Mesh;
+import uk.ac.bham.cs.domct.physicsengine.systems.World;
 import uk.ac.bham.cs.domct.physicsengine.systems.physics.collision.detection.broadphase.BoundingBox;
+import uk.ac.bham.cs.domct.physicsengine.systems.physics.collision.detection.broadphase.BroadPhaseDetector;
 import uk.ac.bham.cs.domct.physicsengine.systems.physics.collision.detection.narrowphase.ConvexHull;
-import uk.ac.bham.cs.domct.physicsengine.utils.MatrixUtils;
+import uk.ac.bham.cs.domct.physicsengine.systems.physics.collision.detection.narrowphase.SphereHull;
 
 /**
  * A GameObject with the addition of a collidable component which stores data
@@ -20,8 +21,8 @@ import uk.ac.bham.cs.domct.physicsengine.utils.MatrixUtils;
 public class CollidableGameObject extends GameObject
 {
 	/**
-	 * Constructs a CollidableGameObject from a textured mesh and it's position, rotation and
-	 * scale in the scene, generating a bounding box from it's mesh.
+	 * Constructs a CollidableGameObject in the default world from a textured mesh and it's
+	 * position, rotation and scale in the scene, generating a bounding box from it's mesh.
 	 * 
 	 * @param mesh The textured mesh of the entity. 
 	 * @param pos The position of the entity in the scene.
@@ -30,22 +31,53 @@ public class CollidableGameObject extends GameObject
 	 */
 	public CollidableGameObject(Mesh mesh, Material material, Vector3f pos, Vector3f rot, Vector3f scale, float weight)
 	{
-		super(mesh, material, pos, rot, scale, weight);
-		Collidable collidable = new Collidable();
+		this(World.getDefault(), mesh, material, pos, rot, scale, weight);
+	}
+	
+	/**
+	 * Constructs a CollidableGameObject in the given world from a textured mesh and it's
+	 * position, rotation and scale in the scene, generating a bounding box from it's mesh.
+	 * 
+	 * @param world The world of the entity.
+	 * @param mesh The textured mesh of the entity. 
+	 * @param pos The position of the entity in the scene.
+	 * @param rot The rotation of the entity in the scene.
+	 * @param scale The scale of the entity in the scene.
+	 */
+	public CollidableGameObject(World world, Mesh mesh, Material material, Vector3f pos, Vector3f rot, Vector3f scale, float weight)
+	{
+		this(world, mesh, material, pos, rot, scale, weight, new Collidable());
+	}
+	
+	/**
+	 * Constructs a CollidableGameObject in the given world from a textured mesh and it's
+	 * position, rotation and scale in the scene, with the given collidable component. A
+	 * sphere is given an implicit hull and bounding box of the collidable's radius, so its
+	 * mesh is only used to render it, while any other shape has them generated from it's
+	 * mesh.
+	 * 
+	 * @param world The world of the entity.
+	 * @param mesh The textured mesh of the entity. 
+	 * @param pos The position of the entity in the scene.
+	 * @param rot The rotation of the entity in the scene.
+	 * @param scale The scale of the entity in the scene.
+	 * @param collidable The collidable component of the entity, with its shape set.
+	 */
+	protected CollidableGameObject(World world, Mesh mesh, Material material, Vector3f pos, Vector3f rot, Vector3f scale, float weight, 
+			Collidable collidable)
+	{
+		super(world, mesh, material, pos, rot, scale, weight);
 		addComponent(collidable);
-		float[] values = (getComponent(Mesh.class)).vertices;
-		float[] worldCoords = new float[values.length];
-		Vector3f[] vertices = new Vector3f[values.length / 3];
-		for (int i = 0; i < values.length / 3; i++)
+		if (collidable.shape == Collidable.Shape.SPHERE)
+		{
+			collidable.bBox = new BoundingBox(collidable.radius);
+			collidable.hull = new SphereHull(this, collidable.radius);
+		}
+		else
 		{
-			vertices[i] = new Vector3f(values[3 * i], values[3 * i + 1], values[3 * i + 2]);
-			Vector4f v4 = new Vector4f(vertices[i], 1);
-			v4.mul(MatrixUtils.transformMatrix(pos, rot, scale));
-			worldCoords[3 * i] = v4.x;
-			worldCoords[3 * i + 1] = v4.y;
-			worldCoords[3 * i + 2] = v4.z;
+			collidable.hull = new ConvexHull(this);
+			collidable.bBox = new BoundingBox(collidable.hull.getData());
 		}
-		collidable.bBox = new BoundingBox(worldCoords);
-		collidable.hull = new ConvexHull(this);
+		BroadPhaseDetector.updateBBox(this);
 	}
 }
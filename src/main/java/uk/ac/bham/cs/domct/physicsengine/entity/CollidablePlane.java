@@ -3,8 +3,10 @@ package uk.ac.bham.cs.domct.physicsengine.entity;
 import org.joml.Vector2f;
 import org.joml.Vector3f;
 
+import uk.ac.bham.cs.domct.physicsengine.component.Collidable;
 import uk.ac.bham.cs.domct.physicsengine.component.Material;
 import uk.ac.bham.cs.domct.physicsengine.component.Mesh;
+import uk.ac.bham.cs.domct.physicsengine.systems.World;
 import uk.ac.bham.cs.domct.physicsengine.utils.FileUtils;
 
 /**
@@ -35,13 +37,17 @@ public class CollidablePlane extends CollidableGameObject
 	 * Constructs a plane at a given position within the scene that is collidable with a given
 	 * rotation, scale and material.
 	 * 
+	 * @param world The world of the entity.
 	 * @param pos The position in the scene.
 	 * @param rot The rotation of the plane.
 	 * @param scale The scale of the plane.
 	 */
-	private CollidablePlane(Vector3f pos, Vector3f rot, Vector2f scale)
+	private CollidablePlane(World world, Vector3f pos, Vector3f rot, Vector2f scale)
 	{
-		super(mesh, material, pos, rot, new Vector3f(scale.x, 0f, scale.y), Float.POSITIVE_INFINITY);
+		super(world, mesh, material, pos, rot, new Vector3f(scale.x, 0f, scale.y), Float.POSITIVE_INFINITY);
+		Collidable collidable = this.getComponent(Collidable.class);
+		collidable.shape = Collidable.Shape.PLANE;
+		collidable.bBox.getLocalHalfExtents(collidable.halfExtents);
 	}
 	
 	/**
@@ -55,9 +61,25 @@ public class CollidablePlane extends CollidableGameObject
 	 * @return A Plane Object with the given parameters.
 	 */
 	public static CollidablePlane create(Vector3f pos, Vector3f rot, Vector2f scale)
+	{
+		return create(World.getDefault(), pos, rot, scale);
+	}
+	
+	/**
+	 * Constructs a Plane in the given world with the given position, rotation and scale.
+	 * constructor as to ensure that the static create method is used to create a new 
+	 * Plane entity.
+	 * 
+	 * @param world The world to create it in.
+	 * @param pos The position in the scene.
+	 * @param rot The plane's rotation.
+	 * @param scale The scale of the plane.
+	 * @return A Plane Object with the given parameters.
+	 */
+	public static CollidablePlane create(World world, Vector3f pos, Vector3f rot, Vector2f scale)
 	{
 		material.texturePath = texturePath;
-		return new CollidablePlane(pos, rot, scale);
+		return new CollidablePlane(world, pos, rot, scale);
 	}
 
 }
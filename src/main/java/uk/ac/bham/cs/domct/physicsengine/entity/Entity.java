@@ -1,72 +1,96 @@
 package uk.ac.bham.cs.domct.physicsengine.entity;
 
-import java.util.HashMap;
-import java.util.Map;
-
 import uk.ac.bham.cs.domct.physicsengine.component.Component;
-import uk.ac.bham.cs.domct.physicsengine.systems.EngineSystem;
-
-import java.util.UUID;
+import uk.ac.bham.cs.domct.physicsengine.systems.EntityRegistry;
+import uk.ac.bham.cs.domct.physicsengine.systems.World;
 
 /**
- * An entity is an object with a unique id containing a map of all it's components.
+ * An entity is an object with a unique handle, which is a view of the components stored
+ * for that handle in the archetypes of its world. The handle is made of a slot index,
+ * which is reused once the entity is destroyed, and a generation, which is not. An
+ * entity holds no components itself, so a destroyed entity has none.
+ * 
  * @author Dominic Cogan-Tucker
  *
  */
 public class Entity
 {
-	private UUID id;
-	private Map<Class<? extends Component>, Component> components = new HashMap<>();
+	private final World world;
+	private final long handle;
 
 	/**
-	 * Constructs and entity assigning a unique id to it.
+	 * Constructs and entity in the default world assigning a unique handle to it.
 	 */
 	public Entity()
 	{
-		this.id = UUID.randomUUID();
+		this(World.getDefault());
+	}
+	
+	/**
+	 * Constructs and entity in the given world assigning a unique handle to it.
+	 * 
+	 * @param world The world of the entity.
+	 */
+	public Entity(World world)
+	{
+		this.world = world;
+		this.handle = world.register(this);
 	}
 	
 	/**
-	 * Gets the UUID of this entity;
+	 * Gets the world this entity belongs to.
 	 * 
-	 * @return The UUID of the Entity.
+	 * @return The world of the Entity.
 	 */
-	public UUID getID()
+	public World getWorld()
 	{
-		return id;
+		return world;
 	}
 	
 	/**
-	 * Adds the given component to this entity's component map if a component of that class
-	 * type did not already exist.
+	 * Gets the handle of this entity.
+	 * 
+	 * @return The handle of the Entity.
+	 */
+	public long getID()
+	{
+		return handle;
+	}
+	
+	/**
+	 * Gets the slot index of this entity's handle, which is dense across all live
+	 * entities and can index arrays of per entity data.
+	 * 
+	 * @return The index of the Entity.
+	 */
+	public int getIndex()
+	{
+		return EntityRegistry.index(handle);
+	}
+	
+	/**
+	 * Adds the given component to this entity if a component of that class type did not
+	 * already exist.
 	 * 
 	 * @param <T> The type of class, which extends component.
 	 * @param component The component to add.
+	 * @throws IllegalStateException if the entity has been destroyed.
 	 */
 	public <T extends Component> Entity addComponent(T component)
 	{
-		components.putIfAbsent(component.getClass(), component);
-
-		if (EngineSystem.getEntities(component.getClass()) == null)
-		{
-			HashMap<Entity, Component> ec = new HashMap<>();
-			ec.put(this, component);
-			EngineSystem.updateComponentMap(component.getClass(), ec);
-		}
-
-		EngineSystem.getEntities(component.getClass()).putIfAbsent(this, component);
+		world.addComponent(this, component);
 		return this;
 	}
 
 	/**
-	 * Removes the component of the corresponding class from this entity's component map.
+	 * Removes the component of the corresponding class from this entity.
 	 * 
 	 * @param component The class of the component to remove.
+	 * @throws IllegalStateException if the entity has been destroyed.
 	 */
 	public Entity removeComponent(Class<? extends Component> component)
 	{
-		components.remove(component);
-		EngineSystem.getEntities(component).remove(this);
+		world.removeComponent(this, component);
 		return this;
 	}
 
@@ -78,27 +102,20 @@ public class Entity
 	 */
 	public boolean hasComponent(Class<? extends Component> component)
 	{
-		return components.get(component) != null;
+		return world.hasComponent(this, component);
 	}
 
 	/**
-	 * Gets the component of the corresponding class from this entity's component map.
+	 * Gets the component of the corresponding class from this entity.
 	 * 
 	 * @param component The class which extends component of the component to look for.
 	 * @throws IllegalArgumentException when the entity does not have contain the
 	 *                                  component of the given class.
 	 * @return The component corresponding to the given class.
 	 */
-	@SuppressWarnings("unchecked")
 	public <T extends Component> T getComponent(Class<T> component)
 	{
-		Component c = components.get(component);
-		if (c == null)
-		{
-			throw new IllegalArgumentException(
-					"Entity does not contain the " + component.getSimpleName() + " component.");
-		}
-		return (T) c;
+		return world.getComponent(this, component);
 	}
 	
 	/**
@@ -107,18 +124,31 @@ public class Entity
 	 */
 	public Entity removeAllComponents()
 	{
-		if (components != null)
-		{
-			components.clear();
-		}	
+		world.removeAllComponents(this);
 		return this;
 	}
 	
 	/**
-	 * Deletes the entity from the system.
+	 * Deletes the entity from the system, after which its handle is no longer valid.
 	 */
 	public void destroy()
 	{
-		EngineSystem.removeEntity(this);
+		world.removeEntity(this);
+	}
+	
+	/**
+	 * Returns true if the entity has not been destroyed.
+	 * 
+	 * @return true if the entity's handle is still valid.
+	 */
+	public boolean isAlive()
+	{
+		return world.isAlive(this);
+	}
+	
+	@Override
+	public int hashCode()
+	{
+		return Long.hashCode(handle);
 	}
 }
\ No newline at end of file
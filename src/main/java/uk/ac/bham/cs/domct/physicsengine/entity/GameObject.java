@@ -6,6 +6,8 @@ import uk.ac.bham.cs.domct.physicsengine.component.Mass;
 import uk.ac.bham.cs.domct.physicsengine.component.Material;
 import uk.ac.bham.cs.domct.physicsengine.component.Mesh;
 import uk.ac.bham.cs.domct.physicsengine.component.State;
+import uk.ac.bham.cs.domct.physicsengine.component.Transform;
+import uk.ac.bham.cs.domct.physicsengine.systems.World;
 
 /**
  * An an entity with a model component giving it a mesh and texture. Also has a
@@ -17,8 +19,8 @@ import uk.ac.bham.cs.domct.physicsengine.component.State;
 public class GameObject extends Entity
 {
 	/**
-	 * Constructs a GameObject from a textured mesh and it's position, rotation and
-	 * scale in the scene.
+	 * Constructs a GameObject in the default world from a textured mesh and it's
+	 * position, rotation and scale in the scene.
 	 * 
 	 * @param mesh The textured mesh of the entity. 
 	 * @param pos The position of the entity in the scene.
@@ -27,7 +29,22 @@ public class GameObject extends Entity
 	 */
 	public GameObject(Mesh mesh, Material material, Vector3f pos, Vector3f rot, Vector3f scale, float mass)
 	{
-		super();		
+		this(World.getDefault(), mesh, material, pos, rot, scale, mass);
+	}
+	
+	/**
+	 * Constructs a GameObject in the given world from a textured mesh and it's
+	 * position, rotation and scale in the scene.
+	 * 
+	 * @param world The world of the entity.
+	 * @param mesh The textured mesh of the entity. 
+	 * @param pos The position of the entity in the scene.
+	 * @param rot The rotation of the entity in the scene.
+	 * @param scale The scale of the entity in the scene.
+	 */
+	public GameObject(World world, Mesh mesh, Material material, Vector3f pos, Vector3f rot, Vector3f scale, float mass)
+	{
+		super(world);
 		addComponent(mesh);
 		addComponent(material);
 
@@ -36,6 +53,7 @@ public class GameObject extends Entity
 		state.rotation = rot;
 		state.scale = scale;
 		addComponent(state);
+		addComponent(new Transform().update(state));
 		
 		Mass m = new Mass();
 		m.mass = mass;
@@ -2,9 +2,12 @@ package uk.ac.bham.cs.domct.physicsengine.entity;
 
 import org.joml.Vector3f;
 
+import uk.ac.bham.cs.domct.physicsengine.component.Collidable;
 import uk.ac.bham.cs.domct.physicsengine.component.Mass;
 import uk.ac.bham.cs.domct.physicsengine.component.Material;
 import uk.ac.bham.cs.domct.physicsengine.component.Mesh;
+import uk.ac.bham.cs.domct.physicsengine.systems.World;
+import uk.ac.bham.cs.domct.physicsengine.systems.physics.collision.detection.broadphase.BoundingBox;
 import uk.ac.bham.cs.domct.physicsengine.utils.FileUtils;
 
 public class MovableCollidableBall extends MovableCollidableGameObject
@@ -25,22 +28,42 @@ public class MovableCollidableBall extends MovableCollidableGameObject
 	 */
 	private static Material material = new Material();
 	
+	/**
+	 * The radius of the sphere mesh, which the ball collides as an implicit sphere of
+	 * rather than as the hull of its vertices.
+	 */
+	private static float radius = new BoundingBox(mesh).getLocalHalfExtents(new Vector3f()).x;
+	
 	/**
 	 * Constructs a Sphere at a given position within the scene with a given
 	 * rotation, scale and material.
 	 * 
+	 * @param world The world of the entity.
 	 * @param pos The position in the scene.
 	 * @param rot The rotation of the sphere.
 	 * @param scale The scale of the sphere.
 	 * @param mass The weight of the sphere.
 	 */
-	private MovableCollidableBall(Vector3f pos, Vector3f rot, float scale, float mass)
+	private MovableCollidableBall(World world, Vector3f pos, Vector3f rot, float scale, float mass)
 	{
-		super(mesh, material, pos, rot, new Vector3f(scale), mass);
+		super(world, mesh, material, pos, rot, new Vector3f(scale), mass, sphere());
 		Mass m = this.getComponent(Mass.class);
 		m.inertia = (2.0f / 5) * mass * (39.5f * scale) * (39.5f * scale);
 		m.inverseInertia = 1.0f / m.inertia;
 	}
+	
+	/**
+	 * Returns a collidable component for a sphere of the mesh's radius.
+	 * 
+	 * @return The collidable component of a ball.
+	 */
+	private static Collidable sphere()
+	{
+		Collidable collidable = new Collidable();
+		collidable.shape = Collidable.Shape.SPHERE;
+		collidable.radius = radius;
+		return collidable;
+	}
 
 	/**
 	 * Constructs a Sphere with the given position, rotation, scale and weight.
@@ -54,8 +77,25 @@ public class MovableCollidableBall extends MovableCollidableGameObject
 	 * @return A Sphere with the given parameters.
 	 */
 	public static MovableCollidableBall create(Vector3f pos, Vector3f rot, float scale, float mass)
+	{
+		return create(World.getDefault(), pos, rot, scale, mass);
+	}
+	
+	/**
+	 * Constructs a Sphere in the given world with the given position, rotation, scale and weight.
+	 * constructor as to ensure that the static create method is used to create a new 
+	 * Sphere entity.
+	 * 
+	 * @param world The world to create it in.
+	 * @param pos The position in the scene.
+	 * @param rot The sphere's rotation.
+	 * @param scale The scale of the sphere.
+	 * @param mass The weight of the sphere.
+	 * @return A Sphere with the given parameters.
+	 */
+	public static MovableCollidableBall create(World world, Vector3f pos, Vector3f rot, float scale, float mass)
 	{
 		material.texturePath = texturePath;
-		return new MovableCollidableBall(pos, rot, scale, mass);
+		return new MovableCollidableBall(world, pos, rot, scale, mass);
 	}
 }
@@ -2,9 +2,11 @@ package uk.ac.bham.cs.domct.physicsengine.entity;
 
 import org.joml.Vector3f;
 
+import uk.ac.bham.cs.domct.physicsengine.component.Collidable;
 import uk.ac.bham.cs.domct.physicsengine.component.Mass;
 import uk.ac.bham.cs.domct.physicsengine.component.Material;
 import uk.ac.bham.cs.domct.physicsengine.component.Mesh;
+import uk.ac.bham.cs.domct.physicsengine.systems.World;
 import uk.ac.bham.cs.domct.physicsengine.utils.FileUtils;
 
 /**
@@ -34,17 +36,21 @@ public class MovableCollidableBox extends MovableCollidableGameObject
 	 * Constructs a CollidableCube at a given position within the scene with a given
 	 * rotation, scale and material.
 	 * 
+	 * @param world The world of the entity.
 	 * @param pos The position in the scene.
 	 * @param rot The rotation of the cube.
 	 * @param scale The scale of the cube.
 	 * @param weight The weight of the cube.
 	 */
-	private MovableCollidableBox(Vector3f pos, Vector3f rot, float scale, float weight)
+	private MovableCollidableBox(World world, Vector3f pos, Vector3f rot, float scale, float weight)
 	{
-		super(mesh, material, pos, rot, new Vector3f(scale), weight);
+		super(world, mesh, material, pos, rot, new Vector3f(scale), weight);
 		Mass m =  this.getComponent(Mass.class);
 		m.inertia = (1.0f / 6) * weight * scale * scale;
 		m.inverseInertia = 1.0f / m.inertia;
+		Collidable collidable = this.getComponent(Collidable.class);
+		collidable.shape = Collidable.Shape.BOX;
+		collidable.bBox.getLocalHalfExtents(collidable.halfExtents);
 	}
 
 	/**
@@ -59,8 +65,25 @@ public class MovableCollidableBox extends MovableCollidableGameObject
 	 * @return A CollidableCube with the given parameters.
 	 */
 	public static MovableCollidableBox create(Vector3f pos, Vector3f rot, float scale, float weight)
+	{
+		return create(World.getDefault(), pos, rot, scale, weight);
+	}
+	
+	/**
+	 * Constructs a CollidableCube in the given world with the given position, rotation, scale and weight.
+	 * constructor as to ensure that the static create method is used to create a new 
+	 * CollidableCube entity.
+	 * 
+	 * @param world The world to create it in.
+	 * @param pos The position in the scene.
+	 * @param rot The cube's rotation.
+	 * @param scale The scale of the cube.
+	 * @param weight The weight of the cube.
+	 * @return A CollidableCube with the given parameters.
+	 */
+	public static MovableCollidableBox create(World world, Vector3f pos, Vector3f rot, float scale, float weight)
 	{
 		material.texturePath = texturePath;
-		return new MovableCollidableBox(pos, rot, scale, weight);
+		return new MovableCollidableBox(world, pos, rot, scale, weight);
 	}
 }
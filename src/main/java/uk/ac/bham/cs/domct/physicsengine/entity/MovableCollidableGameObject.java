@@ -2,9 +2,11 @@ package uk.ac.bham.cs.domct.physicsengine.entity;
 
 import org.joml.Vector3f;
 
+import uk.ac.bham.cs.domct.physicsengine.component.Collidable;
 import uk.ac.bham.cs.domct.physicsengine.component.Material;
 import uk.ac.bham.cs.domct.physicsengine.component.Mesh;
 import uk.ac.bham.cs.domct.physicsengine.component.Movable;
+import uk.ac.bham.cs.domct.physicsengine.systems.World;
 import uk.ac.bham.cs.domct.physicsengine.systems.physics.collision.response.ImpulseCalculator;
 
 /**
@@ -17,8 +19,8 @@ public class MovableCollidableGameObject extends CollidableGameObject
 {
 
 	/**
-	 * Constructs a MoveableCollidableGameObject with a given mesh, material,
-	 * position, rotation and scale.
+	 * Constructs a MoveableCollidableGameObject in the default world with a given mesh,
+	 * material, position, rotation and scale.
 	 * 
 	 * @param mesh The mesh for the entity.
 	 * @param material The material for the entity.
@@ -28,7 +30,41 @@ public class MovableCollidableGameObject extends CollidableGameObject
 	 */
 	public MovableCollidableGameObject(Mesh mesh, Material material, Vector3f pos, Vector3f rot, Vector3f scale, float mass)
 	{
-		super(mesh, material, pos, rot, scale, mass);
+		this(World.getDefault(), mesh, material, pos, rot, scale, mass);
+	}
+	
+	/**
+	 * Constructs a MoveableCollidableGameObject in the given world with a given mesh,
+	 * material, position, rotation and scale.
+	 * 
+	 * @param world The world of the entity.
+	 * @param mesh The mesh for the entity.
+	 * @param material The material for the entity.
+	 * @param pos The position of the entity.
+	 * @param rot The rotation of the entity.
+	 * @param scale The scale of the entity.
+	 */
+	public MovableCollidableGameObject(World world, Mesh mesh, Material material, Vector3f pos, Vector3f rot, Vector3f scale, float mass)
+	{
+		this(world, mesh, material, pos, rot, scale, mass, new Collidable());
+	}
+	
+	/**
+	 * Constructs a MoveableCollidableGameObject in the given world with a given mesh,
+	 * material, position, rotation and scale, and the given collidable component.
+	 * 
+	 * @param world The world of the entity.
+	 * @param mesh The mesh for the entity.
+	 * @param material The material for the entity.
+	 * @param pos The position of the entity.
+	 * @param rot The rotation of the entity.
+	 * @param scale The scale of the entity.
+	 * @param collidable The collidable component of the entity, with its shape set.
+	 */
+	protected MovableCollidableGameObject(World world, Mesh mesh, Material material, Vector3f pos, Vector3f rot, Vector3f scale, float mass, 
+			Collidable collidable)
+	{
+		super(world, mesh, material, pos, rot, scale, mass, collidable);
 		Movable moveableComponent = new Movable();
 		float gravity = - ImpulseCalculator.GRAVITAIONAL_ACCELERATION * mass;
 		moveableComponent.force = new Vector3f(0, gravity, 0);
@@ -0,0 +1,343 @@
+package uk.ac.bham.cs.domct.physicsengine.systems;
+
+import java.lang.reflect.Array;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.IdentityHashMap;
+import java.util.Map;
+import java.util.Set;
+
+import uk.ac.bham.cs.domct.physicsengine.component.Component;
+import uk.ac.bham.cs.domct.physicsengine.entity.Entity;
+
+/**
+ * The storage for every entity with exactly the same set of component types. The
+ * entities are packed into a dense array, with each component type stored in its
+ * own dense array, or column, in the same order. Systems iterate these arrays
+ * directly rather than looking up each component of each entity in a map.
+ * <p>
+ * Removing an entity moves the last entity into its row, so rows are not stable
+ * across structural changes.
+ * <p>
+ * A column holds references to the components, not their fields. The fields of State
+ * and Movable stay Vector3f objects that the rest of the engine reads and replaces
+ * directly, so they are not packed into primitive arrays. Iterating a column avoids
+ * looking each component up, but still follows a reference to each component and to
+ * each of its vectors.
+ *
+ * @author Dominic Cogan-Tucker
+ *
+ */
+public final class Archetype
+{
+	/**
+	 * The component types held by every entity in the archetype.
+	 */
+	private final Set<Class<? extends Component>> signature;
+
+	/**
+	 * The component type of each column. Archetypes have few types, so a column is
+	 * found by comparing each in turn rather than by hashing the type.
+	 */
+	private final Class<?>[] types;
+
+	/**
+	 * The archetype reached by adding each type to this archetype's signature, or by
+	 * removing it if the signature has it, filled in as entities move between them.
+	 */
+	private final Map<Class<? extends Component>, Archetype> edges = new IdentityHashMap<>();
+
+	/**
+	 * The entities in the archetype, in row order.
+	 */
+	private Entity[] entities = new Entity[16];
+	private int size = 0;
+
+	/**
+	 * Incremented whenever an entity is added or removed.
+	 */
+	private int version = 0;
+
+	/**
+	 * The component columns, each an array of references of the exact component type.
+	 */
+	private Component[][] columns;
+
+	/**
+	 * Constructs an empty archetype for the given set of component types.
+	 *
+	 * @param signature The component types.
+	 */
+	Archetype(Set<Class<? extends Component>> signature)
+	{
+		this.signature = Collections.unmodifiableSet(signature);
+		types = new Class<?>[signature.size()];
+		columns = new Component[signature.size()][];
+		int column = 0;
+		for (Class<? extends Component> type : signature)
+		{
+			types[column] = type;
+			columns[column++] = (Component[]) Array.newInstance(type, entities.length);
+		}
+	}
+
+	/**
+	 * Returns the column of the given component type.
+	 *
+	 * @param type The component type.
+	 * @return The index of the column, or -1 if the archetype doesn't have the type.
+	 */
+	private int indexOf(Class<?> type)
+	{
+		for (int column = 0; column < types.length; column++)
+		{
+			if (types[column] == type)
+			{
+				return column;
+			}
+		}
+		return -1;
+	}
+
+	/**
+	 * Returns the component types held by every entity in the archetype.
+	 *
+	 * @return The signature of the archetype.
+	 */
+	public Set<Class<? extends Component>> getSignature()
+	{
+		return signature;
+	}
+
+	/**
+	 * Returns true if the entities in this archetype have every given component type.
+	 *
+	 * @param types The component types.
+	 * @return true if the archetype has all of the types.
+	 */
+	public boolean has(Class<?>... types)
+	{
+		for (Class<?> type : types)
+		{
+			if (indexOf(type) < 0)
+			{
+				return false;
+			}
+		}
+		return true;
+	}
+
+	/**
+	 * Returns the number of entities in the archetype.
+	 *
+	 * @return The number of entities.
+	 */
+	public int size()
+	{
+		return size;
+	}
+
+	/**
+	 * Returns a number that changes whenever an entity is added or removed.
+	 *
+	 * @return The version of the archetype.
+	 */
+	public int getVersion()
+	{
+		return version;
+	}
+
+	/**
+	 * Returns the entities in the archetype. Only the first size() elements are used.
+	 *
+	 * @return The array of entities.
+	 */
+	public Entity[] getEntities()
+	{
+		return entities;
+	}
+
+	/**
+	 * Returns the column of the given component type, holding the component of the
+	 * entity in the same row. Only the first size() elements are used.
+	 *
+	 * @param <T> The component type.
+	 * @param type The class of the component type.
+	 * @return The column of components.
+	 * @throws IllegalArgumentException if the archetype doesn't have the type.
+	 */
+	@SuppressWarnings("unchecked")
+	public <T extends Component> T[] getColumn(Class<T> type)
+	{
+		int column = indexOf(type);
+		if (column < 0)
+		{
+			throw new IllegalArgumentException(
+					"Archetype does not contain the " + type.getSimpleName() + " component.");
+		}
+		return (T[]) columns[column];
+	}
+
+	/**
+	 * Returns the component of the given type of the entity in the given row.
+	 *
+	 * @param row The row of the entity.
+	 * @param type The component type.
+	 * @return The component, or null if the archetype doesn't have the type.
+	 */
+	Component get(int row, Class<?> type)
+	{
+		int column = indexOf(type);
+		return column < 0 ? null : columns[column][row];
+	}
+
+	/**
+	 * Returns the archetype an entity of this archetype moves to when it gains the given
+	 * component type, or loses it if it has it, if an entity has moved that way before.
+	 *
+	 * @param type The component type.
+	 * @return The archetype, or null.
+	 */
+	Archetype getEdge(Class<? extends Component> type)
+	{
+		return edges.get(type);
+	}
+
+	/**
+	 * Records the archetype an entity of this archetype moves to when it gains the given
+	 * component type, or loses it if it has it.
+	 *
+	 * @param type The component type.
+	 * @param archetype The archetype moved to.
+	 */
+	void setEdge(Class<? extends Component> type, Archetype archetype)
+	{
+		edges.put(type, archetype);
+	}
+
+	/**
+	 * Returns true if the given entity is stored in this archetype.
+	 *
+	 * @param e The entity.
+	 * @return true if the entity is in the archetype.
+	 */
+	public boolean contains(Entity e)
+	{
+		return e.getWorld().getArchetype(e) == this;
+	}
+
+	/**
+	 * Adds an entity to the end of the archetype.
+	 *
+	 * @param e The entity.
+	 * @param components The entity's components, one for each type in the signature.
+	 * @return The row of the entity.
+	 */
+	int add(Entity e, Map<Class<? extends Component>, Component> components)
+	{
+		int row = add(e);
+		for (int column = 0; column < columns.length; column++)
+		{
+			columns[column][row] = components.get(types[column]);
+		}
+		return row;
+	}
+
+	/**
+	 * Adds an entity to the end of the archetype, moving it from another archetype. The
+	 * components of the types both archetypes have are copied from the entity's row of
+	 * the other archetype, and the component of the one type only this archetype has, if
+	 * there is one, is the given component.
+	 *
+	 * @param e The entity.
+	 * @param source The archetype the entity is moving from, or null if it had no
+	 * 		components.
+	 * @param sourceRow The row of the entity in the archetype it is moving from.
+	 * @param added The component added to the entity, or null if one was removed.
+	 * @return The row of the entity.
+	 */
+	int add(Entity e, Archetype source, int sourceRow, Component added)
+	{
+		int row = add(e);
+		for (int column = 0; column < columns.length; column++)
+		{
+			int sourceColumn = source == null ? -1 : source.indexOf(types[column]);
+			columns[column][row] = sourceColumn < 0 ? added : source.columns[sourceColumn][sourceRow];
+		}
+		return row;
+	}
+
+	/**
+	 * Sets the component of the given type of the entity in the given row.
+	 *
+	 * @param row The row of the entity.
+	 * @param component The component, whose type the archetype must have.
+	 */
+	void set(int row, Component component)
+	{
+		columns[indexOf(component.getClass())][row] = component;
+	}
+
+	/**
+	 * Adds an entity to the end of the archetype, with no components.
+	 *
+	 * @param e The entity.
+	 * @return The row of the entity.
+	 */
+	private int add(Entity e)
+	{
+		if (size == entities.length)
+		{
+			entities = Arrays.copyOf(entities, size * 2);
+			for (int c = 0; c < columns.length; c++)
+			{
+				columns[c] = Arrays.copyOf(columns[c], size * 2);
+			}
+		}
+		entities[size] = e;
+		version++;
+		return size++;
+	}
+
+	/**
+	 * Removes the entity in the given row, moving the last entity into the row.
+	 *
+	 * @param row The row of the entity.
+	 * @return The entity moved into the row, or null if the last entity was removed.
+	 */
+	Entity remove(int row)
+	{
+		int last = --size;
+		Entity moved = null;
+		version++;
+		if (row != last)
+		{
+			moved = entities[last];
+			entities[row] = moved;
+			for (Component[] column : columns)
+			{
+				column[row] = column[last];
+			}
+		}
+		entities[last] = null;
+		for (Component[] column : columns)
+		{
+			column[last] = null;
+		}
+		return moved;
+	}
+
+	/**
+	 * Removes every entity.
+	 */
+	void clear()
+	{
+		Arrays.fill(entities, 0, size, null);
+		for (Component[] column : columns)
+		{
+			Arrays.fill(column, 0, size, null);
+		}
+		size = 0;
+		version++;
+	}
+}
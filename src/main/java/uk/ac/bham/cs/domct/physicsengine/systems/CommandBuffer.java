@@ -0,0 +1,182 @@
+package uk.ac.bham.cs.domct.physicsengine.systems;
+
+import java.util.Arrays;
+import java.util.function.Supplier;
+
+import uk.ac.bham.cs.domct.physicsengine.component.Component;
+import uk.ac.bham.cs.domct.physicsengine.entity.Entity;
+
+/**
+ * Records changes to the entities of a world so that they can be made during a step,
+ * while systems may be iterating the world's archetypes, and applied together at the
+ * next sync point. The commands are applied in the order they were recorded, with
+ * each entity only being moved to its new archetype once, however many of its
+ * components were changed.
+ * <p>
+ * A command buffer is not thread safe, so should only be recorded to from the thread
+ * stepping its world.
+ *
+ * @author Dominic Cogan-Tucker
+ *
+ */
+public final class CommandBuffer
+{
+	private static final int CREATE = 0;
+	private static final int ADD_COMPONENT = 1;
+	private static final int REMOVE_COMPONENT = 2;
+	private static final int DESTROY = 3;
+
+	/**
+	 * The world the commands are applied to.
+	 */
+	private final World world;
+
+	/**
+	 * The type, entity and argument of each command, in the order recorded.
+	 */
+	private int[] types = new int[16];
+	private Entity[] entities = new Entity[16];
+	private Object[] arguments = new Object[16];
+	private int size = 0;
+
+	/**
+	 * Constructs an empty command buffer for the given world.
+	 *
+	 * @param world The world of the command buffer.
+	 */
+	CommandBuffer(World world)
+	{
+		this.world = world;
+	}
+
+	/**
+	 * Records the creation of an entity, the factory being called when the commands
+	 * are applied. The factory should create the entity in this buffer's world.
+	 *
+	 * @param factory The factory creating the entity, such as
+	 * 		{@code () -> MovableCollidableBox.create(world, pos, rot, 1, 1)}.
+	 * @return This command buffer.
+	 */
+	public CommandBuffer create(Supplier<? extends Entity> factory)
+	{
+		return record(CREATE, null, factory);
+	}
+
+	/**
+	 * Records adding a component to an entity.
+	 *
+	 * @param e The entity.
+	 * @param component The component to add.
+	 * @return This command buffer.
+	 */
+	public CommandBuffer addComponent(Entity e, Component component)
+	{
+		return record(ADD_COMPONENT, e, component);
+	}
+
+	/**
+	 * Records removing a component from an entity.
+	 *
+	 * @param e The entity.
+	 * @param component The class of the component to remove.
+	 * @return This command buffer.
+	 */
+	public CommandBuffer removeComponent(Entity e, Class<? extends Component> component)
+	{
+		return record(REMOVE_COMPONENT, e, component);
+	}
+
+	/**
+	 * Records destroying an entity.
+	 *
+	 * @param e The entity.
+	 * @return This command buffer.
+	 */
+	public CommandBuffer destroy(Entity e)
+	{
+		return record(DESTROY, e, null);
+	}
+
+	/**
+	 * Returns the number of commands recorded since they were last applied.
+	 *
+	 * @return The number of commands.
+	 */
+	public int size()
+	{
+		return size;
+	}
+
+	/**
+	 * Records a command.
+	 *
+	 * @param type The type of command.
+	 * @param e The entity of the command.
+	 * @param argument The argument of the command.
+	 * @return This command buffer.
+	 * @throws IllegalArgumentException if the entity belongs to another world.
+	 */
+	private CommandBuffer record(int type, Entity e, Object argument)
+	{
+		if (e != null && e.getWorld() != world)
+		{
+			throw new IllegalArgumentException("Entity belongs to another world.");
+		}
+		if (size == types.length)
+		{
+			types = Arrays.copyOf(types, size * 2);
+			entities = Arrays.copyOf(entities, size * 2);
+			arguments = Arrays.copyOf(arguments, size * 2);
+		}
+		types[size] = type;
+		entities[size] = e;
+		arguments[size] = argument;
+		size++;
+		return this;
+	}
+
+	/**
+	 * Applies every command in the order recorded, then empties the buffer. Commands
+	 * on entities destroyed before they are applied are ignored. Commands recorded
+	 * while applying, such as by a factory, are applied in the same pass. If a command
+	 * throws, the commands after it are discarded and the buffer is still emptied.
+	 */
+	@SuppressWarnings("unchecked")
+	void apply()
+	{
+		try
+		{
+			for (int i = 0; i < size; i++)
+			{
+				Entity e = entities[i];
+				Object argument = arguments[i];
+				entities[i] = null;
+				arguments[i] = null;
+				if (types[i] == CREATE)
+				{
+					((Supplier<? extends Entity>) argument).get();
+				}
+				else if (e.isAlive())
+				{
+					switch (types[i])
+					{
+						case ADD_COMPONENT:
+							e.addComponent((Component) argument);
+							break;
+						case REMOVE_COMPONENT:
+							e.removeComponent((Class<? extends Component>) argument);
+							break;
+						default:
+							e.destroy();
+					}
+				}
+			}
+		}
+		finally
+		{
+			Arrays.fill(entities, 0, size, null);
+			Arrays.fill(arguments, 0, size, null);
+			size = 0;
+		}
+	}
+}
@@ -1,57 +1,130 @@
 package uk.ac.bham.cs.domct.physicsengine.systems;
 
-import java.util.HashMap;
+import java.util.List;
 import java.util.Map;
 
 import uk.ac.bham.cs.domct.physicsengine.component.Component;
 import uk.ac.bham.cs.domct.physicsengine.entity.Entity;
 
+/**
+ * The base class for all systems. Each system updates the entities of one world,
+ * with the static methods acting on the default world.
+ * 
+ * @author Dominic Cogan-Tucker
+ *
+ */
 public abstract class EngineSystem
 {
 	/**
-	 * A Map of each component type and all the entities that contain that component.
+	 * The world whose entities the system updates.
 	 */
-	private static Map<Class<? extends Component>, Map<Entity, Component>> componentMap = new HashMap<>();
+	protected final World world;
 	
 	/**
-	 * Static method to return a Map of all entities that contain the given component class.
+	 * Constructs a system updating the entities of the default world.
+	 */
+	protected EngineSystem()
+	{
+		this(World.getDefault());
+	}
+	
+	/**
+	 * Constructs a system updating the entities of the given world.
+	 * 
+	 * @param world The world of the system.
+	 */
+	protected EngineSystem(World world)
+	{
+		this.world = world;
+	}
+	
+	/**
+	 * Returns the world whose entities the system updates.
+	 * 
+	 * @return The world of the system.
+	 */
+	public World getWorld()
+	{
+		return world;
+	}
+	
+	/**
+	 * Static method to return a Map of all entities in the default world that contain
+	 * the given component class.
 	 * 
 	 * @param component The class of component to base the entity retrevial off.
 	 * @return Map of entity and their component matching to the given class.
 	 */
 	public static Map<Entity, Component> getEntities(Class<? extends Component> component)
 	{
-		return componentMap.get(component);
+		return World.getDefault().getEntities(component);
+	}
+	
+	/**
+	 * Returns every archetype of the default world whose entities have all of the
+	 * given component types.
+	 * 
+	 * @param types The component types.
+	 * @return The list of matching archetypes.
+	 */
+	@SafeVarargs
+	public static List<Archetype> getArchetypes(Class<? extends Component>... types)
+	{
+		return World.getDefault().getArchetypes(types);
+	}
+	
+	/**
+	 * Returns the query of every entity in the default world with all of the given
+	 * component types.
+	 * 
+	 * @param with The component types every matching entity has.
+	 * @return The query.
+	 */
+	@SafeVarargs
+	public static Query query(Class<? extends Component>... with)
+	{
+		return World.getDefault().query(with);
+	}
+	
+	/**
+	 * Returns the entity of the default world with the given handle, or null if it
+	 * has been removed.
+	 * 
+	 * @param handle The handle of the entity.
+	 * @return The entity, or null.
+	 */
+	public static Entity getEntity(long handle)
+	{
+		return World.getDefault().getEntity(handle);
 	}
 	
 	/**
-	 * Updates the component map adding a new component and corresponding entity-component map.
+	 * Returns the structure version of the default world, which changes whenever an
+	 * entity gains or loses a component.
 	 * 
-	 * @param componentType The type of component to be added.
-	 * @param ec The entity-component map for that component type.
+	 * @return The current structure version.
 	 */
-	public static void updateComponentMap(Class<? extends Component> componentType, Map<Entity, Component> ec)
+	public static int getStructureVersion()
 	{
-		componentMap.put(componentType, ec);
+		return World.getDefault().getStructureVersion();
 	}
 	
 	/**
-	 * Removes the entity from the system.
+	 * Removes the entity from its world.
 	 * 
 	 * @param e The entity to remove.
 	 */
 	public static void removeEntity(Entity e)
 	{
-		componentMap.forEach((clazz, ec) ->
-				ec.remove(e));
+		e.getWorld().removeEntity(e);
 	}
 	
 	/**
-	 * Clears all entities from the system.
+	 * Clears all entities from the default world.
 	 */
 	public static void clear()
 	{
-		componentMap.clear();
+		World.getDefault().clear();
 	}
 	
 	/**
@@ -0,0 +1,177 @@
+package uk.ac.bham.cs.domct.physicsengine.systems;
+
+import java.util.Arrays;
+
+import uk.ac.bham.cs.domct.physicsengine.entity.Entity;
+
+/**
+ * Allocates the handle identifying each entity. A handle is a long made of the index
+ * of a slot, in the low 32 bits, and the generation of that slot, in the high 32 bits.
+ * The slots of destroyed entities are reused, with the generation of the slot being
+ * incremented so that the handles of destroyed entities are never valid again.
+ * <p>
+ * As the indices of live entities are dense, they can be used to index arrays of
+ * per entity data.
+ *
+ * @author Dominic Cogan-Tucker
+ *
+ */
+public final class EntityRegistry
+{
+	/**
+	 * The current generation of each slot, and the entity in it if it is in use.
+	 */
+	private int[] generations = new int[64];
+	private Entity[] entities = new Entity[64];
+
+	/**
+	 * The number of slots ever used.
+	 */
+	private int slotCount = 0;
+
+	/**
+	 * The stack of slots free to be reused.
+	 */
+	private int[] free = new int[64];
+	private int freeCount = 0;
+
+	/**
+	 * Allocates a handle for the given entity, reusing a free slot if there is one.
+	 *
+	 * @param e The entity.
+	 * @return The handle of the entity.
+	 */
+	public long create(Entity e)
+	{
+		int index;
+		if (freeCount > 0)
+		{
+			index = free[--freeCount];
+		}
+		else
+		{
+			if (slotCount == entities.length)
+			{
+				generations = Arrays.copyOf(generations, slotCount * 2);
+				entities = Arrays.copyOf(entities, slotCount * 2);
+			}
+			index = slotCount++;
+		}
+		entities[index] = e;
+		return handle(index, generations[index]);
+	}
+
+	/**
+	 * Frees the slot of the given handle for reuse, invalidating the handle.
+	 *
+	 * @param handle The handle to release.
+	 * @return true if the handle was valid and has been released.
+	 */
+	public boolean release(long handle)
+	{
+		if (!isAlive(handle))
+		{
+			return false;
+		}
+		int index = index(handle);
+		generations[index]++;
+		entities[index] = null;
+		if (freeCount == free.length)
+		{
+			free = Arrays.copyOf(free, freeCount * 2);
+		}
+		free[freeCount++] = index;
+		return true;
+	}
+
+	/**
+	 * Releases every handle.
+	 */
+	public void clear()
+	{
+		for (int i = 0; i < slotCount; i++)
+		{
+			if (entities[i] != null)
+			{
+				release(handle(i, generations[i]));
+			}
+		}
+	}
+
+	/**
+	 * Returns true if the handle belongs to an entity that has not been released.
+	 *
+	 * @param handle The handle.
+	 * @return true if the handle is valid.
+	 */
+	public boolean isAlive(long handle)
+	{
+		int index = index(handle);
+		return index >= 0 && index < slotCount && entities[index] != null && generations[index] == generation(handle);
+	}
+
+	/**
+	 * Returns the entity of the given handle, or null if the handle has been released.
+	 *
+	 * @param handle The handle.
+	 * @return The entity, or null.
+	 */
+	public Entity get(long handle)
+	{
+		return isAlive(handle) ? entities[index(handle)] : null;
+	}
+
+	/**
+	 * Returns the number of slots ever used, which bounds every index in use.
+	 *
+	 * @return The number of slots.
+	 */
+	public int capacity()
+	{
+		return slotCount;
+	}
+
+	/**
+	 * Returns the number of entities with a valid handle.
+	 *
+	 * @return The number of live entities.
+	 */
+	public int size()
+	{
+		return slotCount - freeCount;
+	}
+
+	/**
+	 * Returns the slot index of a handle.
+	 *
+	 * @param handle The handle.
+	 * @return The index.
+	 */
+	public static int index(long handle)
+	{
+		return (int) handle;
+	}
+
+	/**
+	 * Returns the generation of a handle.
+	 *
+	 * @param handle The handle.
+	 * @return The generation.
+	 */
+	public static int generation(long handle)
+	{
+		return (int) (handle >>> 32);
+	}
+
+	/**
+	 * Combines a slot index and generation into a handle.
+	 *
+	 * @param index The slot index.
+	 * @param generation The generation of the slot.
+	 * @return The handle.
+	 */
+	private static long handle(int index, int generation)
+	{
+		return ((long) generation << 32) | (index & 0xFFFFFFFFL);
+	}
+}
@@ -0,0 +1,178 @@
+package uk.ac.bham.cs.domct.physicsengine.systems;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+import uk.ac.bham.cs.domct.physicsengine.component.Component;
+import uk.ac.bham.cs.domct.physicsengine.entity.Entity;
+
+/**
+ * A view of every entity that has all of one set of component types and none of
+ * another. The query holds the archetypes that match, with a new archetype being
+ * added to every query it matches when it is created, so the matching entities are
+ * never searched for again. As entities move between archetypes when they gain or
+ * lose components, iterating the archetypes of a query always gives the entities
+ * that currently match it.
+ * <p>
+ * Queries are obtained from {@link World#query(Class...)}, which returns the same
+ * query for the same sets of component types, for example
+ * {@code query(Movable.class, State.class).without(View.class)}.
+ *
+ * @author Dominic Cogan-Tucker
+ *
+ */
+public final class Query
+{
+	/**
+	 * The world of the query.
+	 */
+	private final World world;
+
+	/**
+	 * The component types every matching entity has.
+	 */
+	private final Set<Class<? extends Component>> with;
+
+	/**
+	 * The component types no matching entity has.
+	 */
+	private final Set<Class<? extends Component>> without;
+
+	/**
+	 * The archetypes that match the query.
+	 */
+	private final List<Archetype> archetypes = new ArrayList<>();
+	private final List<Archetype> view = Collections.unmodifiableList(archetypes);
+
+	/**
+	 * Constructs a query with no archetypes.
+	 *
+	 * @param world The world of the query.
+	 * @param with The component types every matching entity has.
+	 * @param without The component types no matching entity has.
+	 */
+	Query(World world, Set<Class<? extends Component>> with, Set<Class<? extends Component>> without)
+	{
+		this.world = world;
+		this.with = with;
+		this.without = without;
+	}
+
+	/**
+	 * Returns the query of the entities matching this query that also have none of
+	 * the given component types.
+	 *
+	 * @param types The component types to exclude.
+	 * @return The narrower query.
+	 */
+	@SafeVarargs
+	public final Query without(Class<? extends Component>... types)
+	{
+		Set<Class<? extends Component>> excluded = new HashSet<>(without);
+		for (Class<? extends Component> type : types)
+		{
+			excluded.add(type);
+		}
+		return world.query(with, excluded);
+	}
+
+	/**
+	 * Returns true if the entities of the archetype match the query.
+	 *
+	 * @param archetype The archetype.
+	 * @return true if the archetype has every required type and no excluded type.
+	 */
+	public boolean matches(Archetype archetype)
+	{
+		Set<Class<? extends Component>> signature = archetype.getSignature();
+		if (!signature.containsAll(with))
+		{
+			return false;
+		}
+		for (Class<? extends Component> type : without)
+		{
+			if (signature.contains(type))
+			{
+				return false;
+			}
+		}
+		return true;
+	}
+
+	/**
+	 * Adds the archetype to the query if it matches.
+	 *
+	 * @param archetype The new archetype.
+	 */
+	void offer(Archetype archetype)
+	{
+		if (matches(archetype))
+		{
+			archetypes.add(archetype);
+		}
+	}
+
+	/**
+	 * Returns the archetypes matching the query, whose columns hold the components of
+	 * every matching entity.
+	 *
+	 * @return The unmodifiable list of archetypes.
+	 */
+	public List<Archetype> getArchetypes()
+	{
+		return view;
+	}
+
+	/**
+	 * Returns the number of entities matching the query.
+	 *
+	 * @return The number of entities.
+	 */
+	public int size()
+	{
+		int size = 0;
+		for (int i = 0; i < archetypes.size(); i++)
+		{
+			size += archetypes.get(i).size();
+		}
+		return size;
+	}
+
+	/**
+	 * Returns a number that changes whenever an entity starts or stops matching the
+	 * query, or the order of the matching entities changes.
+	 *
+	 * @return The version of the query.
+	 */
+	public long getVersion()
+	{
+		long version = archetypes.size();
+		for (int i = 0; i < archetypes.size(); i++)
+		{
+			version += archetypes.get(i).getVersion();
+		}
+		return version;
+	}
+
+	/**
+	 * Adds every entity matching the query to the given collection.
+	 *
+	 * @param entities The collection to add the entities to.
+	 */
+	public void addEntitiesTo(Collection<? super Entity> entities)
+	{
+		for (int i = 0; i < archetypes.size(); i++)
+		{
+			Archetype archetype = archetypes.get(i);
+			Entity[] e = archetype.getEntities();
+			for (int j = 0; j < archetype.size(); j++)
+			{
+				entities.add(e[j]);
+			}
+		}
+	}
+}
@@ -0,0 +1,684 @@
+package uk.ac.bham.cs.domct.physicsengine.systems;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import uk.ac.bham.cs.domct.physicsengine.component.Component;
+import uk.ac.bham.cs.domct.physicsengine.entity.Entity;
+
+/**
+ * A world holds every entity of one simulation, storing their components in
+ * archetypes, along with the systems that update them. Worlds share no state, so
+ * separate worlds can be stepped independently, each on its own thread.
+ * <p>
+ * Entities and systems created without a world belong to the default world, which
+ * is the world the static methods of {@link EngineSystem} act on.
+ * 
+ * @author Dominic Cogan-Tucker
+ *
+ */
+public final class World
+{
+	/**
+	 * The world used by entities and systems created without one.
+	 */
+	private static final World DEFAULT = new World();
+	
+	/**
+	 * The systems updated each step, in order.
+	 */
+	private final List<EngineSystem> systems = new ArrayList<>();
+	
+	/**
+	 * The archetype of each set of component types.
+	 */
+	private final Map<Set<Class<? extends Component>>, Archetype> archetypes = new HashMap<>();
+	private final List<Archetype> archetypeList = new ArrayList<>();
+	
+	/**
+	 * The queries made by systems, each kept up to date as archetypes are created.
+	 */
+	private final Map<List<Set<Class<? extends Component>>>, Query> queries = new HashMap<>();
+	
+	/**
+	 * The registry allocating the handle of every entity.
+	 */
+	private final EntityRegistry registry = new EntityRegistry();
+	
+	/**
+	 * The archetype each entity is stored in and its row, indexed by the index of
+	 * the entity's handle.
+	 */
+	private Archetype[] locations = new Archetype[64];
+	private int[] rows = new int[64];
+	
+	/**
+	 * Incremented whenever an entity gains or loses a component, so that systems caching
+	 * groups of entities know when those groups need to be rebuilt.
+	 */
+	private int structureVersion = 0;
+	
+	/**
+	 * The commands recorded during a step, to be applied at the next sync point.
+	 */
+	private final CommandBuffer commands = new CommandBuffer(this);
+	
+	/**
+	 * Whether archetype moves are deferred until the end of a batch, with the entities
+	 * to move, and the components each entity will have once moved, indexed by the
+	 * index of its handle, or null if it isn't waiting to move.
+	 */
+	private boolean batching = false;
+	private Entity[] batchEntities = new Entity[16];
+	private int batchSize = 0;
+	private Object[] pending = new Object[64];
+	
+	/**
+	 * Returns a Map of all entities in the world that contain the given component class.
+	 * The map is a copy, built from every archetype holding the component.
+	 * 
+	 * @param component The class of component to base the entity retrevial off.
+	 * @return Map of entity and their component matching to the given class.
+	 */
+	public Map<Entity, Component> getEntities(Class<? extends Component> component)
+	{
+		Map<Entity, Component> entities = new LinkedHashMap<>();
+		for (Archetype archetype : archetypeList)
+		{
+			if (archetype.has(component))
+			{
+				Entity[] e = archetype.getEntities();
+				Component[] column = archetype.getColumn(component);
+				for (int i = 0; i < archetype.size(); i++)
+				{
+					entities.put(e[i], column[i]);
+				}
+			}
+		}
+		return entities;
+	}
+	
+	/**
+	 * Returns every archetype whose entities have all of the given component types.
+	 * 
+	 * @param types The component types.
+	 * @return The list of matching archetypes.
+	 */
+	@SafeVarargs
+	public final List<Archetype> getArchetypes(Class<? extends Component>... types)
+	{
+		List<Archetype> matching = new ArrayList<>();
+		for (Archetype archetype : archetypeList)
+		{
+			if (archetype.has(types))
+			{
+				matching.add(archetype);
+			}
+		}
+		return matching;
+	}
+	
+	/**
+	 * Returns the query of every entity with all of the given component types.
+	 * 
+	 * @param with The component types every matching entity has.
+	 * @return The query.
+	 */
+	@SafeVarargs
+	public final Query query(Class<? extends Component>... with)
+	{
+		Set<Class<? extends Component>> types = new HashSet<>();
+		for (Class<? extends Component> type : with)
+		{
+			types.add(type);
+		}
+		return query(types, Collections.emptySet());
+	}
+	
+	/**
+	 * Returns the query of every entity with all of one set of component types and
+	 * none of another. The query is created on first use and then kept up to date,
+	 * with the same query being returned for the same sets of types.
+	 * 
+	 * @param with The component types every matching entity has.
+	 * @param without The component types no matching entity has.
+	 * @return The query.
+	 */
+	public Query query(Set<Class<? extends Component>> with, Set<Class<? extends Component>> without)
+	{
+		List<Set<Class<? extends Component>>> key = Arrays.asList(new HashSet<>(with), new HashSet<>(without));
+		Query query = queries.get(key);
+		if (query == null)
+		{
+			query = new Query(this, key.get(0), key.get(1));
+			archetypeList.forEach(query::offer);
+			queries.put(key, query);
+		}
+		return query;
+	}
+	
+	/**
+	 * Allocates the handle of a new entity.
+	 * 
+	 * @param e The new entity.
+	 * @return The handle of the entity.
+	 */
+	public long register(Entity e)
+	{
+		long handle = registry.create(e);
+		int index = EntityRegistry.index(handle);
+		if (index >= locations.length)
+		{
+			locations = Arrays.copyOf(locations, Math.max(index + 1, locations.length * 2));
+			rows = Arrays.copyOf(rows, locations.length);
+			pending = Arrays.copyOf(pending, locations.length);
+		}
+		return handle;
+	}
+	
+	/**
+	 * Returns true if the entity has not been removed from the world.
+	 * 
+	 * @param e The entity.
+	 * @return true if the entity's handle is still valid.
+	 */
+	public boolean isAlive(Entity e)
+	{
+		return e.getWorld() == this && registry.isAlive(e.getID());
+	}
+	
+	/**
+	 * Returns the entity with the given handle, or null if it has been removed.
+	 * 
+	 * @param handle The handle of the entity.
+	 * @return The entity, or null.
+	 */
+	public Entity getEntity(long handle)
+	{
+		return registry.get(handle);
+	}
+	
+	/**
+	 * Returns the archetype the entity is stored in, or null if it has no components.
+	 * 
+	 * @param e The entity.
+	 * @return The entity's archetype.
+	 */
+	public Archetype getArchetype(Entity e)
+	{
+		return isAlive(e) ? locations[e.getIndex()] : null;
+	}
+	
+	/**
+	 * Returns the component of the given type of an entity.
+	 * 
+	 * @param <T> The component type.
+	 * @param e The entity.
+	 * @param type The class of the component type.
+	 * @return The component.
+	 * @throws IllegalArgumentException if the entity has no component of the type, or
+	 * 		has been removed from the world.
+	 */
+	@SuppressWarnings("unchecked")
+	public <T extends Component> T getComponent(Entity e, Class<T> type)
+	{
+		Component c = find(e, type);
+		if (c == null)
+		{
+			throw new IllegalArgumentException(
+					"Entity does not contain the " + type.getSimpleName() + " component.");
+		}
+		return (T) c;
+	}
+	
+	/**
+	 * Returns true if an entity has a component of the given type. An entity removed
+	 * from the world has no components.
+	 * 
+	 * @param e The entity.
+	 * @param type The class of the component type.
+	 * @return true if the entity has a component of the type.
+	 */
+	public boolean hasComponent(Entity e, Class<? extends Component> type)
+	{
+		return find(e, type) != null;
+	}
+	
+	/**
+	 * Returns the component of the given type of an entity, reading it from the row of
+	 * the entity's archetype, or from the components it will have once moved if it is
+	 * waiting to move.
+	 * 
+	 * @param e The entity.
+	 * @param type The class of the component type.
+	 * @return The component, or null if the entity has none of the type.
+	 */
+	@SuppressWarnings("unchecked")
+	private Component find(Entity e, Class<?> type)
+	{
+		if (!isAlive(e))
+		{
+			return null;
+		}
+		int index = e.getIndex();
+		if (pending[index] != null)
+		{
+			return ((Map<Class<?>, Component>) pending[index]).get(type);
+		}
+		Archetype archetype = locations[index];
+		return archetype == null ? null : archetype.get(rows[index], type);
+	}
+	
+	/**
+	 * Adds a component to an entity, moving the entity to the archetype of its new set
+	 * of component types, unless it already has a component of the same type.
+	 * 
+	 * @param e The entity.
+	 * @param component The component to add.
+	 * @throws IllegalStateException if the entity has been removed from the world.
+	 */
+	public void addComponent(Entity e, Component component)
+	{
+		checkAlive(e);
+		Class<? extends Component> type = component.getClass();
+		if (batching)
+		{
+			pendingComponents(e).putIfAbsent(type, component);
+			return;
+		}
+		int index = e.getIndex();
+		Archetype current = locations[index];
+		if (current != null && current.has(type))
+		{
+			return;
+		}
+		move(e, current, neighbour(current, type), component);
+	}
+	
+	/**
+	 * Removes the component of the given type from an entity, moving the entity to the
+	 * archetype of its new set of component types.
+	 * 
+	 * @param e The entity.
+	 * @param type The class of the component type to remove.
+	 * @throws IllegalStateException if the entity has been removed from the world.
+	 */
+	public void removeComponent(Entity e, Class<? extends Component> type)
+	{
+		checkAlive(e);
+		if (batching)
+		{
+			pendingComponents(e).remove(type);
+			return;
+		}
+		Archetype current = locations[e.getIndex()];
+		if (current != null && current.has(type))
+		{
+			move(e, current, neighbour(current, type), null);
+		}
+	}
+	
+	/**
+	 * Removes every component from an entity. Does nothing if the entity has been
+	 * removed from the world.
+	 * 
+	 * @param e The entity.
+	 */
+	public void removeAllComponents(Entity e)
+	{
+		if (!isAlive(e))
+		{
+			return;
+		}
+		if (batching)
+		{
+			pendingComponents(e).clear();
+			return;
+		}
+		Archetype current = locations[e.getIndex()];
+		if (current != null)
+		{
+			move(e, current, null, null);
+		}
+	}
+	
+	/**
+	 * Checks that an entity can be changed.
+	 * 
+	 * @param e The entity.
+	 * @throws IllegalStateException if the entity has been removed from the world.
+	 */
+	private void checkAlive(Entity e)
+	{
+		if (!isAlive(e))
+		{
+			throw new IllegalStateException("Entity has been removed from the world.");
+		}
+	}
+	
+	/**
+	 * Returns the archetype an entity of the given archetype moves to when it gains the
+	 * given component type, or loses it if it has it, creating the archetype if it
+	 * doesn't exist.
+	 * 
+	 * @param archetype The archetype, or null for an entity with no components.
+	 * @param type The component type gained or lost.
+	 * @return The archetype moved to, or null if the entity is left with no components.
+	 */
+	private Archetype neighbour(Archetype archetype, Class<? extends Component> type)
+	{
+		Archetype neighbour = archetype == null ? null : archetype.getEdge(type);
+		if (neighbour == null)
+		{
+			Set<Class<? extends Component>> signature = new HashSet<>();
+			if (archetype != null)
+			{
+				signature.addAll(archetype.getSignature());
+			}
+			if (!signature.remove(type))
+			{
+				signature.add(type);
+			}
+			neighbour = archetype(signature);
+			if (archetype != null)
+			{
+				archetype.setEdge(type, neighbour);
+			}
+		}
+		return neighbour;
+	}
+	
+	/**
+	 * Returns the archetype of the given set of component types, creating it and adding
+	 * it to every query it matches if it doesn't exist.
+	 * 
+	 * @param signature The component types.
+	 * @return The archetype, or null if the set is empty.
+	 */
+	private Archetype archetype(Set<Class<? extends Component>> signature)
+	{
+		if (signature.isEmpty())
+		{
+			return null;
+		}
+		Archetype archetype = archetypes.get(signature);
+		if (archetype == null)
+		{
+			archetype = new Archetype(new HashSet<>(signature));
+			archetypes.put(archetype.getSignature(), archetype);
+			archetypeList.add(archetype);
+			for (Query query : queries.values())
+			{
+				query.offer(archetype);
+			}
+		}
+		return archetype;
+	}
+	
+	/**
+	 * Moves an entity from one archetype to another, copying the components of the
+	 * types both have.
+	 * 
+	 * @param e The entity.
+	 * @param from The archetype of the entity, or null if it has no components.
+	 * @param to The archetype to move to, or null if it is left with no components.
+	 * @param added The component gained, or null if one was lost.
+	 */
+	private void move(Entity e, Archetype from, Archetype to, Component added)
+	{
+		int index = e.getIndex();
+		if (to != null)
+		{
+			int row = to.add(e, from, rows[index], added);
+			if (from != null)
+			{
+				unlocate(from, index);
+			}
+			locations[index] = to;
+			rows[index] = row;
+		}
+		else if (from != null)
+		{
+			unlocate(from, index);
+		}
+		structureChanged();
+	}
+	
+	/**
+	 * Returns the components an entity will have once the batch it was changed in has
+	 * ended, starting from its current components the first time it is changed in the
+	 * batch.
+	 * 
+	 * @param e The entity.
+	 * @return The map of the entity's components by type.
+	 */
+	@SuppressWarnings("unchecked")
+	private Map<Class<? extends Component>, Component> pendingComponents(Entity e)
+	{
+		int index = e.getIndex();
+		if (pending[index] == null)
+		{
+			Map<Class<? extends Component>, Component> components = new HashMap<>();
+			Archetype archetype = locations[index];
+			if (archetype != null)
+			{
+				for (Class<? extends Component> type : archetype.getSignature())
+				{
+					components.put(type, archetype.get(rows[index], type));
+				}
+			}
+			pending[index] = components;
+			if (batchSize == batchEntities.length)
+			{
+				batchEntities = Arrays.copyOf(batchEntities, batchSize * 2);
+			}
+			batchEntities[batchSize++] = e;
+		}
+		return (Map<Class<? extends Component>, Component>) pending[index];
+	}
+	
+	/**
+	 * Moves an entity into the archetype of the given components, or replaces its
+	 * components if it is already in that archetype.
+	 * 
+	 * @param e The entity.
+	 * @param components The entity's components.
+	 */
+	private void relocate(Entity e, Map<Class<? extends Component>, Component> components)
+	{
+		int index = e.getIndex();
+		Archetype current = locations[index];
+		Archetype target = archetype(components.keySet());
+		if (current == target)
+		{
+			for (Component component : components.values())
+			{
+				current.set(rows[index], component);
+			}
+			return;
+		}
+		if (current != null)
+		{
+			unlocate(current, index);
+		}
+		if (target != null)
+		{
+			locations[index] = target;
+			rows[index] = target.add(e, components);
+		}
+		structureChanged();
+	}
+	
+	/**
+	 * Removes the entity at the given index from its archetype, updating the row of
+	 * the entity moved into its place.
+	 * 
+	 * @param archetype The archetype of the entity.
+	 * @param index The index of the entity's handle.
+	 */
+	private void unlocate(Archetype archetype, int index)
+	{
+		Entity moved = archetype.remove(rows[index]);
+		if (moved != null)
+		{
+			rows[moved.getIndex()] = rows[index];
+		}
+		locations[index] = null;
+	}
+	
+	/**
+	 * Returns the structure version, which changes whenever an entity gains or loses
+	 * a component.
+	 * 
+	 * @return The current structure version.
+	 */
+	public int getStructureVersion()
+	{
+		return structureVersion;
+	}
+	
+	/**
+	 * Marks that an entity has gained or lost a component.
+	 */
+	public void structureChanged()
+	{
+		structureVersion++;
+	}
+	
+	/**
+	 * Removes the entity from the world, invalidating its handle.
+	 * 
+	 * @param e The entity to remove.
+	 */
+	public void removeEntity(Entity e)
+	{
+		if (!isAlive(e))
+		{
+			return;
+		}
+		int index = e.getIndex();
+		if (locations[index] != null)
+		{
+			unlocate(locations[index], index);
+		}
+		pending[index] = null;
+		registry.release(e.getID());
+		structureChanged();
+	}
+	
+	/**
+	 * Clears all entities from the world.
+	 */
+	public void clear()
+	{
+		archetypeList.forEach(Archetype::clear);
+		Arrays.fill(locations, null);
+		Arrays.fill(pending, null);
+		registry.clear();
+		structureChanged();
+	}
+	
+	/**
+	 * Returns the command buffer of the world, recording changes to be applied at the
+	 * next sync point.
+	 * 
+	 * @return The command buffer.
+	 */
+	public CommandBuffer getCommandBuffer()
+	{
+		return commands;
+	}
+	
+	/**
+	 * Applies every command recorded in the command buffer. This is the sync point at
+	 * which structural changes made during a step take effect, and must not be called
+	 * while a system is iterating the world. Every entity changed by the commands is
+	 * moved to its new archetype once, after all the commands have been applied.
+	 */
+	public void applyCommands()
+	{
+		if (commands.size() == 0)
+		{
+			return;
+		}
+		batching = true;
+		try
+		{
+			commands.apply();
+		}
+		finally
+		{
+			batching = false;
+			moveBatchedEntities();
+		}
+	}
+	
+	/**
+	 * Moves every entity changed during a batch to the archetype matching its
+	 * components.
+	 */
+	@SuppressWarnings("unchecked")
+	private void moveBatchedEntities()
+	{
+		for (int i = 0; i < batchSize; i++)
+		{
+			Entity e = batchEntities[i];
+			batchEntities[i] = null;
+			if (isAlive(e) && pending[e.getIndex()] != null)
+			{
+				Map<Class<? extends Component>, Component> components = 
+						(Map<Class<? extends Component>, Component>) pending[e.getIndex()];
+				pending[e.getIndex()] = null;
+				relocate(e, components);
+			}
+		}
+		batchSize = 0;
+	}
+	
+	/**
+	 * Adds a system to be updated every step, after those already added.
+	 * 
+	 * @param system The system, which must belong to this world.
+	 * @return This world.
+	 * @throws IllegalArgumentException if the system belongs to another world.
+	 */
+	public World addSystem(EngineSystem system)
+	{
+		if (system.getWorld() != this)
+		{
+			throw new IllegalArgumentException("System belongs to another world.");
+		}
+		systems.add(system);
+		return this;
+	}
+	
+	/**
+	 * Steps the world, updating every system in the order they were added, then
+	 * applies the commands recorded during the step.
+	 */
+	public void update()
+	{
+		for (int i = 0; i < systems.size(); i++)
+		{
+			systems.get(i).update();
+		}
+		applyCommands();
+	}
+	
+	/**
+	 * Returns the world used by entities and systems created without one.
+	 * 
+	 * @return The default world.
+	 */
+	public static World getDefault()
+	{
+		return DEFAULT;
+	}
+}
@@ -59,6 +59,7 @@ public final class CameraSystem extends EngineSystem
 	 */
 	public CameraSystem(Camera cam)
 	{
+		super(cam.getWorld());
 		cameraState = cam.getComponent(State.class);
 		cameraMovable = cam.getComponent(Movable.class);
 		cameraControlable = cam.getComponent(Controllable.class);
@@ -6,9 +6,9 @@ import uk.ac.bham.cs.domct.physicsengine.systems.physics.collision.contactGenera
 import uk.ac.bham.cs.domct.physicsengine.systems.physics.collision.detection.narrowphase.Simplex;
 
 /**
- * Stores all the information about the collision between two entities. Implements
- * comparable and and override equals method to ensure the correct behaviour when
- * added to sets.
+ * Stores all the information about the collision between two entities. Two collisions
+ * are equal if they are between the same pair of entities, and are ordered by the
+ * handles of their entities, so that they behave correctly when added to sets.
  * 
  * @author Dominic Cogan-Tucker
  *
@@ -42,6 +42,18 @@ public class Collision implements Comparable<Collision>
 	 * @param b The second entity in the collision.
 	 */
 	public Collision(Entity a, Entity b)
+	{
+		set(a, b);
+	}
+	
+	/**
+	 * Sets the entities of the collision, so that a collision can be reused for
+	 * another pair of entities.
+	 * 
+	 * @param a The first entity in the collision.
+	 * @param b The second entity in the collision.
+	 */
+	void set(Entity a, Entity b)
 	{
 		// If one of the entities isn't movable it is set as the
 		// second entity in the collision.
@@ -124,31 +136,41 @@ public class Collision implements Comparable<Collision>
 		{
 			return false;
 		}
-		return (a.equals(((Collision) o).a) && b.equals(((Collision) o).b)) || 
-				(a.equals(((Collision) o).b) && b.equals(((Collision) o).a));
+		return isBetween(((Collision) o).a, ((Collision) o).b);
+	}
+	
+	/**
+	 * Returns true if the collision is between the given entities, in either order.
+	 * 
+	 * @param a One entity.
+	 * @param b The other entity.
+	 * @return true if the collision is between the two entities.
+	 */
+	public boolean isBetween(Entity a, Entity b)
+	{
+		return (this.a.equals(a) && this.b.equals(b)) || (this.a.equals(b) && this.b.equals(a));
 	}
 	
 
 	/**
-	 * Returns 1 if the collisions aren't the same, and 0 otherwise. There is no return
-	 * of -1 as the collisions don't need to be ordered but as they are mutable they can't
-	 * be used reliably in a hash set, so need a compareTo method to be insetred into a tree
-	 * set.
+	 * Orders collisions by the smaller of the handles of their entities, then by the
+	 * larger, which is consistent with equals for the collisions of one world. As
+	 * collisions are mutable they can't be used reliably in a hash set, but can be
+	 * inserted into a tree set.
 	 * 
-	 * @return 1 if the collision being compared aren't equal, 0 if
-	 * they are.
+	 * @return A negative number, zero or a positive number as this collision is ordered
+	 * before, with or after the other collision.
 	 */
 	@Override
 	public int compareTo(Collision col)
 	{
-		if (this.equals(col))
-		{
-			return 0;
-		}
-		else
+		long first = Math.min(a.getID(), b.getID());
+		long otherFirst = Math.min(col.a.getID(), col.b.getID());
+		if (first != otherFirst)
 		{
-			return 1;
+			return Long.compare(first, otherFirst);
 		}
+		return Long.compare(Math.max(a.getID(), b.getID()), Math.max(col.a.getID(), col.b.getID()));
 	}
 
 	/*
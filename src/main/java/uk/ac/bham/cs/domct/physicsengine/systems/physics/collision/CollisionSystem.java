@@ -1,37 +1,220 @@
 package uk.ac.bham.cs.domct.physicsengine.systems.physics.collision;
 
-import java.util.Iterator;
-import java.util.Set;
-import java.util.TreeSet;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
 
 import uk.ac.bham.cs.domct.physicsengine.component.Collidable;
-import uk.ac.bham.cs.domct.physicsengine.component.State;
+import uk.ac.bham.cs.domct.physicsengine.component.Movable;
 import uk.ac.bham.cs.domct.physicsengine.entity.Entity;
 import uk.ac.bham.cs.domct.physicsengine.systems.EngineSystem;
-import uk.ac.bham.cs.domct.physicsengine.systems.physics.collision.contactGeneration.ContactPointGenerator;
+import uk.ac.bham.cs.domct.physicsengine.systems.Query;
+import uk.ac.bham.cs.domct.physicsengine.systems.World;
+import uk.ac.bham.cs.domct.physicsengine.systems.physics.collision.detection.broadphase.BroadPhase;
 import uk.ac.bham.cs.domct.physicsengine.systems.physics.collision.detection.broadphase.BroadPhaseDetector;
-import uk.ac.bham.cs.domct.physicsengine.systems.physics.collision.detection.narrowphase.NarrowPhaseDetector;
+import uk.ac.bham.cs.domct.physicsengine.systems.physics.collision.detection.broadphase.DynamicAabbTree;
+import uk.ac.bham.cs.domct.physicsengine.systems.physics.collision.detection.broadphase.PairBuffer;
+import uk.ac.bham.cs.domct.physicsengine.systems.physics.collision.detection.broadphase.ParallelSweepAndPrune;
+import uk.ac.bham.cs.domct.physicsengine.systems.physics.collision.detection.broadphase.SweepAndPrune;
 import uk.ac.bham.cs.domct.physicsengine.systems.physics.collision.response.ImpulseCalculator;
 import uk.ac.bham.cs.domct.physicsengine.systems.physics.dynamics.EulerIntegrator;
 
 /**
  * Class that holds collision detection method.
+ * <p>
+ * Collidable entities without a Movable component are treated as static. Static
+ * entities are kept in their own tree, which is only rebuilt when the set of static
+ * entities changes, and their bounding boxes are not updated every frame, so a
+ * static entity should not be moved once it has been created. The broad phase only
+ * finds pairs between dynamic entities, with each dynamic entity then querying the
+ * static tree, so pairs of two static entities are never generated.
+ * <p>
+ * Once every list and pool has grown to the size the scene needs, a step allocates
+ * nothing. The collision of each pair is kept in a pair cache from one frame to the
+ * next, with those that have ended being kept to be reused for new pairs, and the
+ * contact generator and impulse calculator are reused for every collision.
+ * <p>
+ * The narrow phase and contact generation of the pairs can be run on several threads,
+ * giving the same collisions as on one thread. The impulses are then applied to the
+ * colliding entities in order on the calling thread. The broad and narrow phases of a
+ * parallel collision system share one pool, whose threads are only released once the
+ * system is closed.
  * 
  * @author Dominic Cogan-Tucker
  *
  */
 public final class CollisionSystem extends EngineSystem
 {
-	private Set<Collision> collisions = new TreeSet<>();
-	private Set<Collision> previous = new TreeSet<>();
+	private List<Collision> collisions = new ArrayList<>();
+	private List<Collision> colliding = Collections.unmodifiableList(collisions);
+	private PairCache pairCache = new PairCache();
+	
+	private NarrowPhase narrowPhase;
+	private ForkJoinPool pool;
+	private ImpulseCalculator impulseCalculator = new ImpulseCalculator();
+	
+	private BroadPhase broadPhase;
+	private PairBuffer pairs = new PairBuffer();
+	
+	private DynamicAabbTree staticTree = new DynamicAabbTree(0);
+	private Query staticQuery = world.query(Collidable.class).without(Movable.class);
+	private Query dynamicQuery = world.query(Collidable.class, Movable.class);
+	private List<Entity> staticEntities = new ArrayList<>();
+	private List<Entity> dynamicEntities = new ArrayList<>();
+	private long staticVersion = -1;
+	private long dynamicVersion = -1;
 	
 	private float dt;
 	
 	private static boolean collisionDebugging = false;
 	
+	/**
+	 * Constructs a collision system for the default world, with a given frame time,
+	 * using a sweep and prune broad phase.
+	 * 
+	 * @param dt The frame time for calculations.
+	 */
 	public CollisionSystem(double dt)
 	{
+		this(dt, new SweepAndPrune());
+	}
+	
+	/**
+	 * Constructs a collision system for the given world, with a given frame time,
+	 * using a sweep and prune broad phase.
+	 * 
+	 * @param world The world of the system.
+	 * @param dt The frame time for calculations.
+	 */
+	public CollisionSystem(World world, double dt)
+	{
+		this(world, dt, new SweepAndPrune());
+	}
+	
+	/**
+	 * Constructs a collision system, with a given frame time, using a sweep and
+	 * prune broad phase that finds pairs on the given number of threads, and 
+	 * testing the pairs in the narrow phase on the same number of threads.
+	 * 
+	 * @param dt The frame time for calculations.
+	 * @param parallelism The number of threads for the broad and narrow phases, 
+	 * 		with 1 using the single threaded sweep and prune and narrow phase.
+	 * @throws IllegalArgumentException if the parallelism is less than 1.
+	 */
+	public CollisionSystem(double dt, int parallelism)
+	{
+		this(World.getDefault(), dt, parallelism);
+	}
+	
+	/**
+	 * Constructs a collision system for the given world, with a given frame time,
+	 * using a sweep and prune broad phase that finds pairs on the given number of
+	 * threads, and testing the pairs in the narrow phase on the same threads.
+	 * 
+	 * @param world The world of the system.
+	 * @param dt The frame time for calculations.
+	 * @param parallelism The number of threads for the broad and narrow phases, 
+	 * 		with 1 using the single threaded sweep and prune and narrow phase.
+	 * @throws IllegalArgumentException if the parallelism is less than 1.
+	 */
+	public CollisionSystem(World world, double dt, int parallelism)
+	{
+		this(world, dt, newPool(parallelism));
+	}
+	
+	/**
+	 * Constructs a collision system for the given world, with a given frame time,
+	 * finding and testing pairs on the given pool.
+	 * 
+	 * @param world The world of the system.
+	 * @param dt The frame time for calculations.
+	 * @param pool The pool of the system, or null to use one thread.
+	 */
+	private CollisionSystem(World world, double dt, ForkJoinPool pool)
+	{
+		this(world, dt, pool != null ? new ParallelSweepAndPrune(pool) : new SweepAndPrune(), pool);
+	}
+	
+	/**
+	 * Constructs a collision system for the default world, with a given frame time,
+	 * using the given broad phase to find pairs of entities with intersecting
+	 * bounding boxes.
+	 * 
+	 * @param dt The frame time for calculations.
+	 * @param broadPhase The broad phase to use.
+	 */
+	public CollisionSystem(double dt, BroadPhase broadPhase)
+	{
+		this(World.getDefault(), dt, broadPhase);
+	}
+	
+	/**
+	 * Constructs a collision system for the given world, with a given frame time,
+	 * using the given broad phase to find pairs of entities with intersecting
+	 * bounding boxes. The broad phase should not be shared with another system.
+	 * 
+	 * @param world The world of the system.
+	 * @param dt The frame time for calculations.
+	 * @param broadPhase The broad phase to use.
+	 */
+	public CollisionSystem(World world, double dt, BroadPhase broadPhase)
+	{
+		this(world, dt, broadPhase, 1);
+	}
+	
+	/**
+	 * Constructs a collision system for the given world, with a given frame time,
+	 * using the given broad phase to find pairs of entities with intersecting
+	 * bounding boxes, and testing the pairs in the narrow phase on the given number
+	 * of threads. The broad phase should not be shared with another system.
+	 * 
+	 * @param world The world of the system.
+	 * @param dt The frame time for calculations.
+	 * @param broadPhase The broad phase to use.
+	 * @param parallelism The number of threads for the narrow phase, with 1 testing
+	 * 		every pair on the calling thread.
+	 * @throws IllegalArgumentException if the parallelism is less than 1.
+	 */
+	public CollisionSystem(World world, double dt, BroadPhase broadPhase, int parallelism)
+	{
+		this(world, dt, broadPhase, newPool(parallelism));
+	}
+	
+	/**
+	 * Constructs a collision system for the given world, with a given frame time,
+	 * using the given broad phase, and testing the pairs in the narrow phase on the
+	 * given pool, which the system shuts down when it is closed.
+	 * 
+	 * @param world The world of the system.
+	 * @param dt The frame time for calculations.
+	 * @param broadPhase The broad phase to use.
+	 * @param pool The pool of the system, or null to test every pair on the calling
+	 * 		thread.
+	 */
+	private CollisionSystem(World world, double dt, BroadPhase broadPhase, ForkJoinPool pool)
+	{
+		super(world);
 		this.dt = (float) dt;
+		this.broadPhase = broadPhase;
+		this.pool = pool;
+		this.narrowPhase = new NarrowPhase(pool);
+	}
+	
+	/**
+	 * Creates the pool shared by the broad and narrow phases of a collision system.
+	 * 
+	 * @param parallelism The number of threads.
+	 * @return The pool, or null if there is only one thread.
+	 * @throws IllegalArgumentException if the parallelism is less than 1.
+	 */
+	private static ForkJoinPool newPool(int parallelism)
+	{
+		if (parallelism < 1)
+		{
+			throw new IllegalArgumentException("Parallelism must be at least 1.");
+		}
+		return parallelism > 1 ? new ForkJoinPool(parallelism) : null;
 	}
 	
 	/**
@@ -56,101 +239,135 @@ public final class CollisionSystem extends EngineSystem
 	}
 	
 	/**
-	 * Resolves any collisions remaining on the collisions list. Generating contact
-	 * data and the impulse to apply to entities involved in collisions.
+	 * Resolves any collisions remaining on the collisions list, applying the impulse 
+	 * calculated from the contact data of each collision to the entities involved,
+	 * in the order the collisions were found.
 	 * 
 	 * @param dt The time taken for a frame.
 	 */
 	private void collisionResolution(float dt)
 	{
-		for (Iterator<Collision> i = collisions.iterator(); i.hasNext();)
+		for (int i = 0; i < collisions.size(); i++)
+		{
+			Collision col = collisions.get(i);
+			EulerIntegrator.stepBack(col.a);
+			EulerIntegrator.stepBack(col.b);
+			impulseCalculator.calculate(col, dt);
+		}
+	}
+	
+	/**
+	 * Broad phase of collision detection. The bounding box of every dynamic entity is
+	 * updated once for this frame and the broad phase finds all the pairs of dynamic
+	 * entities whose bounding boxes intersect, before each dynamic entity is checked
+	 * against the static tree. The Collision object of each of these pairs is taken
+	 * from the pair cache and added to a list which is passed onto the next phase.
+	 */
+	private void broadPhase()
+	{
+		updateEntities();
+		// Update the bounding boxes of every dynamic entity for this frame.
+		dynamicEntities.forEach(BroadPhaseDetector::updateBBox);
+		broadPhase.update(dynamicEntities);
+		broadPhase.findPairs(pairs);
+		for (int i = 0; i < dynamicEntities.size(); i++)
 		{
-			Collision col = i.next();
-			ContactPointGenerator cpg = new ContactPointGenerator(col.sim);
-			if (cpg.generateCollisionData())
-			{
-				EulerIntegrator.stepBack(col.a, col.b);
-				try
-				{
-					col.contact = cpg.getContactPoint();
-				} catch (Exception e)
-				{	
-					e.printStackTrace();
-				}
-				ImpulseCalculator.calculate(col, dt);
-			}
-			else
-			{
-				i.remove();
-			}
+			Entity e = dynamicEntities.get(i);
+			staticTree.query(e, e.getComponent(Collidable.class).bBox, pairs);
 		}
 		
-		previous.addAll(collisions);
 		collisions.clear();
+		for (int i = 0; i < pairs.size(); i++)
+		{
+			collisions.add(pairCache.get(pairs.getEntityA(i), pairs.getEntityB(i)));
+		}
+		pairs.clear();
+		// The pairs whose bounding boxes have stopped intersecting are removed.
+		pairCache.removeStale();
 	}
 	
 	/**
-	 * Broad phase of collision detection. All entity pairs within a certain distance
-	 * to eachother are checked to see if their bounding boxes intersect. If the
-	 * bounding boxes of two entities collide a Collision object is created with these
-	 * entities added to a list which is passed onto the next phase.
+	 * Refreshes the lists of static and dynamic entities from their queries if an
+	 * entity has started or stopped matching them. The static tree is only rebuilt
+	 * if the static entities have changed.
 	 */
-	private void broadPhase()
+	private void updateEntities()
 	{
-		// Get all the entities created with the Collidable component.
-		Object[] entitiesArray = getEntities(Collidable.class).keySet().toArray();
-		// Check every entity against every other.
-		for (int i = 0; i < entitiesArray.length; i++)
+		if (dynamicVersion != dynamicQuery.getVersion())
+		{
+			dynamicVersion = dynamicQuery.getVersion();
+			dynamicEntities.clear();
+			dynamicQuery.addEntitiesTo(dynamicEntities);
+		}
+		if (staticVersion != staticQuery.getVersion())
 		{
-			Entity a = (Entity) entitiesArray[i];
-			for (int j = i + 1; j < entitiesArray.length; j++)
-			{
-				Entity b = (Entity) entitiesArray[j];
-				// Only proceed if the pair of entities are within a given distance of eachother.
-				if (a.getComponent(State.class).position.distance(b.getComponent(State.class).position) < 10)
-				{
-					// Update the bounding boxes for these entities this frame and check if they are intersecting.
-					if (BroadPhaseDetector.areIntersecting(a, b))
-					{
-						Collision collision = new Collision(a, b);
-						// Check if these entities were colliding in the previous frame.
-						for (Collision c :  previous)
-						{
-							if (c.equals(collision))
-							{
-								collision.sim = c.sim;
-								break;
-							}
-						}
-						collisions.add(collision);
-					}
-				}
-			}
+			staticVersion = staticQuery.getVersion();
+			staticEntities.clear();
+			staticQuery.addEntitiesTo(staticEntities);
+			staticEntities.forEach(BroadPhaseDetector::updateBBox);
+			staticTree.update(staticEntities);
 		}
-		// Clear all previous frame collisions.
-		previous.clear();
 	}
 	
 	/**
 	 * Narrow phase of collision detection. Checks every collision detected in the broad 
 	 * phase and applies the GJK distance algorithm to the entities involved to determine
-	 * if their meshes are colliding. If there is no mesh collision detection detected then
-	 * the Collision object is removed from the list.
+	 * if their meshes are colliding, generating the contact data of those that are with
+	 * EPA. If there is no mesh collision detected, or its contact data can't be
+	 * generated, then the Collision object is removed from the list.
 	 */
 	private void narrowPhase()
 	{
-		// Cycle through every broad phase collision.
-		collisions.removeIf(col -> !NarrowPhaseDetector.areIntersecting(col));
+		narrowPhase.process(collisions);
+	}
+	
+	/**
+	 * Closes the collision system, closing its broad phase and shutting down the pool
+	 * its pairs are found and tested on, so that its threads are released. The system
+	 * should not be updated once closed.
+	 */
+	@Override
+	public void close()
+	{
+		broadPhase.close();
+		if (pool != null)
+		{
+			pool.shutdown();
+		}
+	}
+	
+	/**
+	 * Returns the collisions between entities found in the last step.
+	 * 
+	 * @return The unmodifiable list of collisions.
+	 */
+	public List<Collision> getCollidingPairs()
+	{
+		return colliding;
+	}
+	
+	/**
+	 * Returns the average number of GJK iterations, each generating one support point,
+	 * made for each pair tested in the last step.
+	 * 
+	 * @return The average number of iterations per pair, or 0 if no pairs were tested.
+	 */
+	public float getAverageGjkIterations()
+	{
+		int tests = narrowPhase.getTests();
+		return tests == 0 ? 0 : (float) narrowPhase.getIterations() / tests;
 	}
 	
 	/**
-	 * Returns the set of entities that are colliding.
+	 * Returns the number of pairs tested in the last step that were found to be
+	 * separated by the direction kept from their previous test, after a single GJK
+	 * iteration.
 	 * 
-	 * @return The set of entities that are colliding.
+	 * @return The number of early outs.
 	 */
-	public Set<Collision> getCollidingPairs()
+	public int getGjkEarlyOuts()
 	{
-		return previous;
+		return narrowPhase.getEarlyOuts();
 	}
 	
 	/**
@@ -159,7 +376,7 @@ public final class CollisionSystem extends EngineSystem
 	public void collisionDebugPrint()
 	{
 		System.out.println("Current Collisions:");
-		previous.forEach(System.out::println);
+		collisions.forEach(System.out::println);
 	}
 	
 	/**
@@ -0,0 +1,270 @@
+package uk.ac.bham.cs.domct.physicsengine.systems.physics.collision;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+import java.util.concurrent.RecursiveAction;
+
+import uk.ac.bham.cs.domct.physicsengine.component.State;
+import uk.ac.bham.cs.domct.physicsengine.component.Transform;
+import uk.ac.bham.cs.domct.physicsengine.entity.Entity;
+import uk.ac.bham.cs.domct.physicsengine.systems.physics.collision.contactGeneration.ContactPoint;
+import uk.ac.bham.cs.domct.physicsengine.systems.physics.collision.contactGeneration.ContactPointGenerator;
+import uk.ac.bham.cs.domct.physicsengine.systems.physics.collision.contactGeneration.PrimitiveContactGenerator;
+import uk.ac.bham.cs.domct.physicsengine.systems.physics.collision.detection.narrowphase.NarrowPhaseDetector;
+
+/**
+ * Runs the narrow phase on every pair found by the broad phase. Pairs of primitive
+ * shapes have their contact data generated in closed form, while every other pair is
+ * tested with GJK and has the contact data of an intersection generated with EPA.
+ * <p>
+ * The transform of every entity in a pair is updated on the calling thread before any
+ * pair is tested, as updating it rewrites the transform and the entity's orientation,
+ * and an entity can be in several pairs. Testing a pair then only reads the transforms
+ * of its entities and writes to its own collision, including the vertices its hulls'
+ * searches start from, so the pairs can be tested on several threads, with the list of
+ * pairs being split into chunks that are tested in parallel on a fork/join pool. Each
+ * chunk has its own detector and contact generators, so no state is shared between
+ * threads.
+ * <p>
+ * Whether each pair is colliding is recorded by position in the list, and the list is
+ * only compacted once every chunk has finished, so the collisions kept are in the same
+ * order and have the same contact data whatever the number of threads.
+ *
+ * @author Dominic Cogan-Tucker
+ *
+ */
+final class NarrowPhase
+{
+	/**
+	 * The number of chunks per thread, more chunks balancing uneven work at the cost
+	 * of more tasks.
+	 */
+	private static final int CHUNKS_PER_THREAD = 4;
+
+	/**
+	 * The number of pairs below which the pairs are tested on the calling thread.
+	 */
+	private static final int PARALLEL_THRESHOLD = 64;
+
+	/**
+	 * The pool the chunks are tested on, owned by the collision system, or null if the
+	 * pairs are always tested on the calling thread.
+	 */
+	private final ForkJoinPool pool;
+
+	/**
+	 * The chunks of the list, each with its own detector and contact generators.
+	 */
+	private final Chunk[] chunks;
+
+	/**
+	 * The task that tests every chunk.
+	 */
+	private final RecursiveAction testChunks = new RecursiveAction()
+	{
+		private static final long serialVersionUID = 1L;
+
+		@Override
+		protected void compute()
+		{
+			ForkJoinTask.invokeAll(chunks);
+		}
+	};
+
+	/**
+	 * The pairs being tested, and whether each has been found to be colliding.
+	 */
+	private List<Collision> collisions;
+	private boolean[] colliding = new boolean[16];
+
+	/**
+	 * Constructs a narrow phase testing pairs on the given pool, which is owned by the
+	 * caller and shut down by it.
+	 * 
+	 * @param pool The pool to test pairs on, or null to test every pair on the calling
+	 * 		thread.
+	 */
+	NarrowPhase(ForkJoinPool pool)
+	{
+		this.pool = pool;
+		chunks = new Chunk[pool != null ? pool.getParallelism() * CHUNKS_PER_THREAD : 1];
+		for (int i = 0; i < chunks.length; i++)
+		{
+			chunks[i] = new Chunk();
+		}
+	}
+
+	/**
+	 * Returns the number of threads pairs are tested on.
+	 *
+	 * @return The parallelism of the narrow phase.
+	 */
+	int getParallelism()
+	{
+		return pool == null ? 1 : pool.getParallelism();
+	}
+
+	/**
+	 * Returns the number of pairs tested in the last call to process.
+	 *
+	 * @return The number of GJK tests.
+	 */
+	int getTests()
+	{
+		int tests = 0;
+		for (Chunk chunk : chunks)
+		{
+			tests += chunk.detector.getTests();
+		}
+		return tests;
+	}
+
+	/**
+	 * Returns the number of GJK iterations made in the last call to process.
+	 *
+	 * @return The number of GJK iterations.
+	 */
+	int getIterations()
+	{
+		int iterations = 0;
+		for (Chunk chunk : chunks)
+		{
+			iterations += chunk.detector.getIterations();
+		}
+		return iterations;
+	}
+
+	/**
+	 * Returns the number of pairs in the last call to process found to be separated by
+	 * the direction kept from their previous test.
+	 *
+	 * @return The number of early outs.
+	 */
+	int getEarlyOuts()
+	{
+		int earlyOuts = 0;
+		for (Chunk chunk : chunks)
+		{
+			earlyOuts += chunk.detector.getEarlyOuts();
+		}
+		return earlyOuts;
+	}
+
+	/**
+	 * Tests every pair in the list, generating the contact data of those colliding and
+	 * removing those that are not.
+	 *
+	 * @param collisions The pairs found by the broad phase.
+	 */
+	void process(List<Collision> collisions)
+	{
+		int size = collisions.size();
+		for (Chunk chunk : chunks)
+		{
+			chunk.detector.resetStatistics();
+		}
+		if (colliding.length < size)
+		{
+			colliding = Arrays.copyOf(colliding, Math.max(size, colliding.length * 2));
+		}
+		this.collisions = collisions;
+		for (int i = 0; i < size; i++)
+		{
+			Collision col = collisions.get(i);
+			updateTransform(col.getEntityA());
+			updateTransform(col.getEntityB());
+		}
+		if (pool == null || size < PARALLEL_THRESHOLD)
+		{
+			chunks[0].test(0, size);
+		}
+		else
+		{
+			// Split the list into chunks of an equal number of pairs.
+			for (int i = 0; i < chunks.length; i++)
+			{
+				Chunk chunk = chunks[i];
+				chunk.reinitialize();
+				chunk.start = (int) ((long) size * i / chunks.length);
+				chunk.end = (int) ((long) size * (i + 1) / chunks.length);
+			}
+			testChunks.reinitialize();
+			pool.invoke(testChunks);
+		}
+		this.collisions = null;
+
+		int kept = 0;
+		for (int i = 0; i < size; i++)
+		{
+			if (colliding[i])
+			{
+				collisions.set(kept++, collisions.get(i));
+			}
+		}
+		while (collisions.size() > kept)
+		{
+			collisions.remove(collisions.size() - 1);
+		}
+	}
+
+	/**
+	 * Updates the transform of an entity from its state, which is only rebuilt if the
+	 * entity has moved since it was last updated.
+	 *
+	 * @param entity The entity.
+	 */
+	private static void updateTransform(Entity entity)
+	{
+		entity.getComponent(Transform.class).update(entity.getComponent(State.class));
+	}
+
+	/**
+	 * A range of the list of pairs tested as one task.
+	 */
+	private class Chunk extends RecursiveAction
+	{
+		private static final long serialVersionUID = 1L;
+
+		private final NarrowPhaseDetector detector = new NarrowPhaseDetector();
+		private final ContactPointGenerator contactGenerator = new ContactPointGenerator();
+		private final PrimitiveContactGenerator primitiveGenerator = new PrimitiveContactGenerator();
+		private int start;
+		private int end;
+
+		@Override
+		protected void compute()
+		{
+			test(start, end);
+		}
+
+		/**
+		 * Tests the pairs in the given range of the list, generating the contact data of
+		 * each that is intersecting.
+		 *
+		 * @param from The first position in the list to test.
+		 * @param to The position after the last to test.
+		 */
+		private void test(int from, int to)
+		{
+			for (int i = from; i < to; i++)
+			{
+				Collision col = collisions.get(i);
+				if (col.contact == null)
+				{
+					col.contact = new ContactPoint();
+				}
+				if (primitiveGenerator.handles(col))
+				{
+					colliding[i] = primitiveGenerator.generateCollisionData(col, col.contact);
+				}
+				else
+				{
+					colliding[i] = detector.intersects(col) 
+							&& contactGenerator.generateCollisionData(col, col.contact);
+				}
+			}
+		}
+	}
+}
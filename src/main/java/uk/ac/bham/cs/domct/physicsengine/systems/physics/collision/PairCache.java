@@ -0,0 +1,296 @@
+package uk.ac.bham.cs.domct.physicsengine.systems.physics.collision;
+
+import java.util.Arrays;
+
+import uk.ac.bham.cs.domct.physicsengine.entity.Entity;
+
+/**
+ * Keeps the collision of every pair of entities found by the broad phase from one frame
+ * to the next, so that the simplex of a pair that was colliding in the previous frame is
+ * found in constant time. Pairs are stored in an open addressing hash table keyed on a
+ * 64 bit pair id, made of the smaller entity index in the high 32 bits and the larger in
+ * the low 32 bits, so the id doesn't depend on the order the broad phase gives the pair.
+ * <p>
+ * The order of the entities of a collision is set when the pair is added, and is kept
+ * for as long as the pair stays cached, whichever order the broad phase gives it in
+ * later frames. Everything kept for the pair, its simplex, the direction GJK last
+ * searched in and the vertices its hulls' searches start from, belongs to the first or
+ * second entity, so it would be wrong for the other order.
+ * <p>
+ * A pair keeps the same slot for as long as it is found every frame, with removed pairs
+ * leaving a marker that is reused by later pairs. The table is only rebuilt when these
+ * markers fill it, into a second set of arrays kept for the purpose, so the cache
+ * allocates nothing once it has grown to the number of pairs in the scene.
+ *
+ * @author Dominic Cogan-Tucker
+ *
+ */
+public final class PairCache
+{
+	private static final long EMPTY = -1L;
+	private static final long REMOVED = -2L;
+
+	/**
+	 * The pair id, collision and the frame it was last found of each slot.
+	 */
+	private long[] keys;
+	private Collision[] collisions;
+	private int[] found;
+	private int mask;
+
+	/**
+	 * The arrays the table is rebuilt into, kept between rebuilds.
+	 */
+	private long[] spareKeys;
+	private Collision[] spareCollisions;
+	private int[] spareFound;
+
+	/**
+	 * The slots holding a pair, in the order the pairs were added.
+	 */
+	private int[] slots;
+	private int size = 0;
+
+	/**
+	 * The number of slots holding a pair or a removed marker.
+	 */
+	private int used = 0;
+
+	/**
+	 * Collisions of removed pairs, kept to be reused for new pairs.
+	 */
+	private Collision[] spare = new Collision[16];
+	private int spareCount = 0;
+
+	/**
+	 * The current frame.
+	 */
+	private int frame = 0;
+
+	/**
+	 * Constructs an empty pair cache.
+	 */
+	public PairCache()
+	{
+		allocateTable(64);
+	}
+
+	/**
+	 * Returns the collision of the given pair of entities, marking the pair as found this
+	 * frame. If the pair was in the cache its collision is returned as it was, keeping its
+	 * simplex and the order of its entities, otherwise the pair is added with a collision
+	 * whose simplex is empty.
+	 *
+	 * @param a The first entity of the pair.
+	 * @param b The second entity of the pair.
+	 * @return The collision of the pair.
+	 */
+	public Collision get(Entity a, Entity b)
+	{
+		long key = pairId(a, b);
+		int slot = hash(key) & mask;
+		int free = -1;
+		while (keys[slot] != EMPTY)
+		{
+			if (keys[slot] == key)
+			{
+				Collision collision = collisions[slot];
+				if (!collision.isBetween(a, b))
+				{
+					// The indices have been reused by other entities.
+					reset(collision);
+					collision.set(a, b);
+				}
+				found[slot] = frame;
+				return collision;
+			}
+			if (free == -1 && keys[slot] == REMOVED)
+			{
+				free = slot;
+			}
+			slot = (slot + 1) & mask;
+		}
+		if (free == -1)
+		{
+			if (2 * (used + 1) > keys.length)
+			{
+				// Rebuilding may move every pair, so search for a slot again.
+				rehash(4 * (size + 1) > keys.length ? keys.length * 2 : keys.length);
+				return get(a, b);
+			}
+			free = slot;
+			used++;
+		}
+		Collision collision;
+		if (spareCount > 0)
+		{
+			collision = spare[--spareCount];
+			spare[spareCount] = null;
+			reset(collision);
+			collision.set(a, b);
+		}
+		else
+		{
+			collision = new Collision(a, b);
+		}
+		keys[free] = key;
+		collisions[free] = collision;
+		found[free] = frame;
+		slots[size++] = free;
+		return collision;
+	}
+
+	/**
+	 * Removes every pair that hasn't been found since the last call, then starts a new
+	 * frame. Called once the broad phase has found every pair for a frame.
+	 */
+	public void removeStale()
+	{
+		int kept = 0;
+		for (int i = 0; i < size; i++)
+		{
+			int slot = slots[i];
+			if (found[slot] == frame)
+			{
+				slots[kept++] = slot;
+			}
+			else
+			{
+				if (spareCount == spare.length)
+				{
+					spare = Arrays.copyOf(spare, spareCount * 2);
+				}
+				spare[spareCount++] = collisions[slot];
+				keys[slot] = REMOVED;
+				collisions[slot] = null;
+			}
+		}
+		size = kept;
+		frame++;
+	}
+
+	/**
+	 * Removes every pair from the cache.
+	 */
+	public void clear()
+	{
+		frame++;
+		removeStale();
+	}
+
+	/**
+	 * Returns the number of pairs in the cache.
+	 *
+	 * @return The number of pairs.
+	 */
+	public int size()
+	{
+		return size;
+	}
+
+	/**
+	 * Returns the id of a pair of entities, which is the same whichever order they are
+	 * given in.
+	 *
+	 * @param a The first entity of the pair.
+	 * @param b The second entity of the pair.
+	 * @return The 64 bit id of the pair.
+	 */
+	public static long pairId(Entity a, Entity b)
+	{
+		long i = a.getIndex() & 0xFFFFFFFFL;
+		long j = b.getIndex() & 0xFFFFFFFFL;
+		return i < j ? (i << 32) | j : (j << 32) | i;
+	}
+
+	/**
+	 * Empties the simplex of a collision that is being used for a new pair, along
+	 * with the direction cached for the old pair.
+	 *
+	 * @param collision The collision.
+	 */
+	private static void reset(Collision collision)
+	{
+		if (collision.getSimplex() != null)
+		{
+			collision.getSimplex().reset();
+		}
+	}
+
+	/**
+	 * Moves every pair into a table with the given number of slots, dropping the removed
+	 * markers. A table of the same size is rebuilt into the spare arrays.
+	 *
+	 * @param capacity The new number of slots, a power of two.
+	 */
+	private void rehash(int capacity)
+	{
+		long[] oldKeys = keys;
+		Collision[] oldCollisions = collisions;
+		int[] oldFound = found;
+		if (capacity == keys.length && spareKeys != null)
+		{
+			keys = spareKeys;
+			collisions = spareCollisions;
+			found = spareFound;
+			Arrays.fill(keys, EMPTY);
+		}
+		else
+		{
+			allocateTable(capacity);
+		}
+		spareKeys = oldKeys;
+		spareCollisions = oldCollisions;
+		spareFound = oldFound;
+		if (spareKeys.length != keys.length)
+		{
+			spareKeys = null;
+			spareCollisions = null;
+			spareFound = null;
+		}
+
+		used = size;
+		for (int i = 0; i < size; i++)
+		{
+			int old = slots[i];
+			int slot = hash(oldKeys[old]) & mask;
+			while (keys[slot] != EMPTY)
+			{
+				slot = (slot + 1) & mask;
+			}
+			keys[slot] = oldKeys[old];
+			collisions[slot] = oldCollisions[old];
+			found[slot] = oldFound[old];
+			oldCollisions[old] = null;
+			slots[i] = slot;
+		}
+	}
+
+	/**
+	 * Allocates an empty table with the given number of slots.
+	 *
+	 * @param capacity The number of slots, a power of two.
+	 */
+	private void allocateTable(int capacity)
+	{
+		keys = new long[capacity];
+		Arrays.fill(keys, EMPTY);
+		collisions = new Collision[capacity];
+		found = new int[capacity];
+		slots = slots == null ? new int[capacity / 2 + 1] : Arrays.copyOf(slots, capacity / 2 + 1);
+		mask = capacity - 1;
+	}
+
+	/**
+	 * Mixes the bits of the pair id to spread the pairs of neighbouring entities across
+	 * the table.
+	 *
+	 * @param key The pair id.
+	 * @return The hash of the id.
+	 */
+	private static int hash(long key)
+	{
+		key *= 0x9E3779B97F4A7C15L;
+		return (int) (key ^ (key >>> 32));
+	}
+}
@@ -1,54 +1,88 @@
 package uk.ac.bham.cs.domct.physicsengine.systems.physics.collision.contactGeneration;
 
-import java.util.ArrayList;
-import java.util.Iterator;
-import java.util.List;
+import java.util.Arrays;
 
 import org.joml.Vector3f;
 
+import uk.ac.bham.cs.domct.physicsengine.component.Collidable;
+import uk.ac.bham.cs.domct.physicsengine.systems.physics.collision.Collision;
+import uk.ac.bham.cs.domct.physicsengine.systems.physics.collision.detection.narrowphase.ConvexHull;
 import uk.ac.bham.cs.domct.physicsengine.systems.physics.collision.detection.narrowphase.NarrowPhaseDetector;
 import uk.ac.bham.cs.domct.physicsengine.systems.physics.collision.detection.narrowphase.Simplex;
 import uk.ac.bham.cs.domct.physicsengine.systems.physics.collision.detection.narrowphase.SupportPoint;
 
 /**
  * Generates the contact data of a collision using the Expanding Polytope algorithm.
+ * <p>
+ * A generator is reused for every collision, keeping the triangles, edges and support
+ * points of the polytope between collisions so that none are allocated once it has
+ * grown to the size of the largest polytope. As a generator holds the polytope it is
+ * expanding, each thread generating contact data needs its own generator.
  * 
  * @author Dominic Cogan-Tucker
  *
  */
 public class ContactPointGenerator
 {
-	private ContactPoint data;
-	private List<Triangle> triangles = new ArrayList<>();
-	private List<Edge> edges = new ArrayList<>();
-	private int currentIteration = 0;
+	/**
+	 * The triangles of the polytope, followed by those free to be reused.
+	 */
+	private Triangle[] triangles = new Triangle[16];
+	private int triangleCount = 0;
 	
-	private static final float EXIT_THRESHOLD = 0.001f;
-	private static final int ITERATION_LIMIT = 50;
+	/**
+	 * The edges of the hole left by removing triangles, followed by those free to be reused.
+	 */
+	private Edge[] edges = new Edge[16];
+	private int edgeCount = 0;
 	
 	/**
-	 * Constructs a generator for the given simplex, setting the initial
-	 * triangles of the polytope.
-	 * 
-	 * @param sim The simplex of the collision to generate contact data for.
+	 * The support points added to the polytope, followed by those free to be reused.
 	 */
-	public ContactPointGenerator(Simplex sim)
-	{
-		triangles.add(new Triangle(sim.a, sim.b, sim.c));
-		triangles.add(new Triangle(sim.a, sim.c, sim.d));
-		triangles.add(new Triangle(sim.a, sim.d, sim.b));
-		triangles.add(new Triangle(sim.b, sim.d, sim.c));
-	}
+	private SupportPoint[] supports = new SupportPoint[ITERATION_LIMIT];
+	private int supportCount = 0;
+	
+	private int currentIteration = 0;
+	
+	/**
+	 * Scratch values reused for every collision.
+	 */
+	private final Vector3f direction = new Vector3f();
+	private final Vector3f scratch = new Vector3f();
+	private final Vector3f v0 = new Vector3f();
+	private final Vector3f v1 = new Vector3f();
+	private final Vector3f v2 = new Vector3f();
+	private final float[] barycentric = new float[3];
+	
+	private static final float EXIT_THRESHOLD = 0.001f;
+	private static final int ITERATION_LIMIT = 50;
 	
 	/**
-	 * Attempts to generate collision data and returns true if the collision
-	 * data was successfully generated.
+	 * Attempts to generate the contact data of the given collision, expanding the
+	 * simplex found by GJK using the hulls of the collision's entities, writing it
+	 * into the given contact point, and returns true if the contact data was 
+	 * successfully generated.
 	 * 
+	 * @param col The collision to generate contact data for.
+	 * @param data The contact point to hold the contact data.
 	 * @return true if collision data was successfully generated.
 	 */
-	public boolean generateCollisionData()
+	public boolean generateCollisionData(Collision col, ContactPoint data)
 	{
-		data = new ContactPoint();
+		Simplex sim = col.getSimplex();
+		ConvexHull hullA = col.getEntityA().getComponent(Collidable.class).hull;
+		ConvexHull hullB = col.getEntityB().getComponent(Collidable.class).hull;
+		triangleCount = 0;
+		edgeCount = 0;
+		supportCount = 0;
+		currentIteration = 0;
+		data.worldPoint.zero();
+		data.worldNormal.zero();
+		data.penDepth = 0;
+		addTriangle(sim.a, sim.b, sim.c);
+		addTriangle(sim.a, sim.c, sim.d);
+		addTriangle(sim.a, sim.d, sim.b);
+		addTriangle(sim.b, sim.d, sim.c);
 		while (true)
 		{
 			if (currentIteration++ >= ITERATION_LIMIT)
@@ -58,9 +92,10 @@ public class ContactPointGenerator
 			
 			float currentDistance = Float.POSITIVE_INFINITY;
 			Triangle closestTriangle = null;
-			for (Triangle triangle : triangles)
+			for (int i = 0; i < triangleCount; i++)
 			{
-				float distance = Math.abs(new Vector3f(triangle.getNormal()).dot(triangle.getPointA().v));
+				Triangle triangle = triangles[i];
+				float distance = Math.abs(triangle.getNormal().dot(triangle.getPointA().v));
 				if (distance < currentDistance)
 				{
 					currentDistance = distance;
@@ -71,49 +106,84 @@ public class ContactPointGenerator
 			{
 				break;
 			}
-			SupportPoint sup = NarrowPhaseDetector.generateSupport(new Vector3f(closestTriangle.getNormal()));
+			SupportPoint sup = NarrowPhaseDetector.generateSupport(hullA, hullB, 
+					direction.set(closestTriangle.getNormal()), sim.supportStarts, nextSupport());
 			
-			if((new Vector3f(closestTriangle.getNormal()).dot(sup.v) - currentDistance < EXIT_THRESHOLD))
+			if((closestTriangle.getNormal().dot(sup.v) - currentDistance < EXIT_THRESHOLD))
 			{
-				generateContactInformation(closestTriangle);
+				generateContactInformation(closestTriangle, data);
 				break;
 			}
 			
-			for (Iterator<Triangle> iter = triangles.iterator(); iter.hasNext();)
+			// Removed triangles are swapped behind the kept ones, which stay in order.
+			int kept = 0;
+			for (int i = 0; i < triangleCount; i++)
 			{
-				Triangle triangle  = iter.next();
-				if (new Vector3f(triangle.getNormal()).dot(new Vector3f(sup.v).sub(triangle.getPointA().v)) > 0)
+				Triangle triangle = triangles[i];
+				if (triangle.getNormal().dot(scratch.set(sup.v).sub(triangle.getPointA().v)) > 0)
 				{
 					processEdge(triangle.getPointA(), triangle.getPointB());
 					processEdge(triangle.getPointB(), triangle.getPointC());
 					processEdge(triangle.getPointC(), triangle.getPointA());
-					iter.remove();
+				}
+				else
+				{
+					triangles[i] = triangles[kept];
+					triangles[kept++] = triangle;
 				}
 			}
+			triangleCount = kept;
 			
-			for (Edge edge : edges)
+			for (int i = 0; i < edgeCount; i++)
 			{
-				 triangles.add(new Triangle(sup, edge.getPointA(), edge.getPointB()));
+				addTriangle(sup, edges[i].getPointA(), edges[i].getPointB());
 			}
 			
-			edges.clear();
+			edgeCount = 0;
 		}
 		return true;
 	}
-
+	
 	/**
-	 * Returns the generated contact point data.
+	 * Adds a triangle to the polytope, reusing a free triangle if there is one.
 	 * 
-	 * @return The contatc point data generated.
-	 * @throws Exception Exception thrown if no collision data generated.
+	 * @param a Point A of the triangle.
+	 * @param b Point B of the triangle.
+	 * @param c Point C of the triangle.
 	 */
-	public ContactPoint getContactPoint() throws Exception
+	private void addTriangle(SupportPoint a, SupportPoint b, SupportPoint c)
 	{
-		if (data == null)
+		if (triangleCount == triangles.length)
+		{
+			triangles = Arrays.copyOf(triangles, triangleCount * 2);
+		}
+		if (triangles[triangleCount] == null)
 		{
-			throw new Exception("Please ensure data is generated first by calling generateCollisionData().");
+			triangles[triangleCount] = new Triangle(a, b, c);
 		}
-		return data;
+		else
+		{
+			triangles[triangleCount].update(a, b, c);
+		}
+		triangleCount++;
+	}
+	
+	/**
+	 * Returns a support point free to be filled in and added to the polytope.
+	 * 
+	 * @return A free support point.
+	 */
+	private SupportPoint nextSupport()
+	{
+		if (supportCount == supports.length)
+		{
+			supports = Arrays.copyOf(supports, supportCount * 2);
+		}
+		if (supports[supportCount] == null)
+		{
+			supports[supportCount] = new SupportPoint();
+		}
+		return supports[supportCount++];
 	}
 	
 	/**
@@ -127,60 +197,74 @@ public class ContactPointGenerator
 	 */
 	private void processEdge(SupportPoint a, SupportPoint b)
 	{
-		for (Iterator<Edge> iter = edges.iterator(); iter.hasNext();)
+		for (int i = 0; i < edgeCount; i++)
 		{
-			Edge edge = iter.next();
+			Edge edge = edges[i];
 			if (edge.getPointA() == b && edge.getPointB() == a)
 			{
-				iter.remove();
+				// Shift the later edges down to keep them in order, freeing this one.
+				System.arraycopy(edges, i + 1, edges, i, edgeCount - i - 1);
+				edges[--edgeCount] = edge;
 				return;
 			}
 		}
-		edges.add(new Edge(a, b));
+		if (edgeCount == edges.length)
+		{
+			edges = Arrays.copyOf(edges, edgeCount * 2);
+		}
+		if (edges[edgeCount] == null)
+		{
+			edges[edgeCount] = new Edge(a, b);
+		}
+		else
+		{
+			edges[edgeCount].update(a, b);
+		}
+		edgeCount++;
 	}
 	
 	/**
 	 * Generates the contact information from the contact triangle.
 	 * 
 	 * @param triangle The triangle where the contact is taking place.
+	 * @param data The contact point to hold the contact information.
 	 */
-	private void generateContactInformation(Triangle triangle)
+	private void generateContactInformation(Triangle triangle, ContactPoint data)
 	{
-		float distanceFromO = new Vector3f(triangle.getNormal()).dot(triangle.getPointA().v);
-		float[] barycentric = barycentric(new Vector3f(triangle.getNormal()).mul(distanceFromO), 
+		float distanceFromO = triangle.getNormal().dot(triangle.getPointA().v);
+		barycentric(scratch.set(triangle.getNormal()).mul(distanceFromO), 
 				triangle.getPointA().v, triangle.getPointB().v, triangle.getPointC().v);
 		// Position in the scene where the point of contact is.
-		data.worldPoint = new Vector3f(triangle.getPointA().a).mul(barycentric[0])
-								.add(new Vector3f(triangle.getPointB().a).mul(barycentric[1]))
-								.add(new Vector3f(triangle.getPointC().a).mul(barycentric[2]));
+		data.worldPoint.set(triangle.getPointA().a).mul(barycentric[0])
+								.add(scratch.set(triangle.getPointB().a).mul(barycentric[1]))
+								.add(scratch.set(triangle.getPointC().a).mul(barycentric[2]));
 		// The normal direction to this contact point.
-		data.worldNormal = new Vector3f(triangle.getNormal()).negate();
+		data.worldNormal.set(triangle.getNormal()).negate();
 		// The depth of penetration between the two entities in contact.
-		data.penDepth = Math.abs(new Vector3f(triangle.getNormal()).dot(triangle.getPointA().v));
+		data.penDepth = Math.abs(triangle.getNormal().dot(triangle.getPointA().v));
 	}
 	
 	/*
-	 * Calculates barycentric coordinates of the origin projected onto closest triangle.
+	 * Calculates barycentric coordinates of the origin projected onto closest triangle,
+	 * storing them in the barycentric array.
 	 */
-	private float[] barycentric(Vector3f p, Vector3f a, Vector3f b, Vector3f c)
+	private void barycentric(Vector3f p, Vector3f a, Vector3f b, Vector3f c)
 	{
 		// Adapted from Jacob Tynall's use of Crister Erickson's code from his
 		// Real-Time Collision Detection.
-		Vector3f v0 = new Vector3f(b).sub(a);
-		Vector3f v1 = new Vector3f(c).sub(a);
-		Vector3f v2 = new Vector3f(p).sub(a);
+		Vector3f v0 = this.v0.set(b).sub(a);
+		Vector3f v1 = this.v1.set(c).sub(a);
+		Vector3f v2 = this.v2.set(p).sub(a);
 		
-		float d00 = new Vector3f(v0).dot(v0);
-		float d01 = new Vector3f(v0).dot(v1);
-		float d11 = new Vector3f(v1).dot(v1);
-		float d20 = new Vector3f(v2).dot(v0);
-		float d21 = new Vector3f(v2).dot(v1);
+		float d00 = v0.dot(v0);
+		float d01 = v0.dot(v1);
+		float d11 = v1.dot(v1);
+		float d20 = v2.dot(v0);
+		float d21 = v2.dot(v1);
 		float denom = d00 * d11 - d01 * d01;
 		
-		float[] barycentric = new float[3];
 		barycentric[0] = (d11 * d20 - d01 * d21) / denom;
 		barycentric[1] = (d00 * d21 - d01 * d20) / denom;
 		barycentric[2] = 1.0f - barycentric[0] - barycentric[1];
-		return barycentric;
 	}
 }
@@ -16,6 +16,17 @@ public class Edge
 	private SupportPoint[] points = new SupportPoint[2];
 
 	public Edge(SupportPoint a, SupportPoint b)
+	{
+		update(a, b);
+	}
+	
+	/**
+	 * Updates the points of the edge.
+	 * 
+	 * @param a The start of the edge.
+	 * @param b The end of the edge.
+	 */
+	public void update(SupportPoint a, SupportPoint b)
 	{
 		points[0] = a;
 		points[1] = b;
@@ -0,0 +1,551 @@
+package uk.ac.bham.cs.domct.physicsengine.systems.physics.collision.contactGeneration;
+
+import org.joml.Matrix4f;
+import org.joml.Vector3f;
+
+import uk.ac.bham.cs.domct.physicsengine.component.Collidable;
+import uk.ac.bham.cs.domct.physicsengine.component.Collidable.Shape;
+import uk.ac.bham.cs.domct.physicsengine.component.Transform;
+import uk.ac.bham.cs.domct.physicsengine.entity.Entity;
+import uk.ac.bham.cs.domct.physicsengine.systems.physics.collision.Collision;
+
+/**
+ * Generates the contact data of collisions between primitive shapes in closed form,
+ * without the iterations GJK and EPA need for general convex hulls. The routine for a
+ * pair is looked up in a table indexed by the shapes of its two entities, pairs with
+ * no routine, such as any pair involving a hull, being left to GJK and EPA.
+ * <ul>
+ * <li>Sphere-sphere compares the distance between the centres with the sum of the radii.</li>
+ * <li>Sphere-box and sphere-plane find the closest point of the box to the centre of
+ * the sphere, a plane being a box with no height.</li>
+ * <li>Box-plane tests the corners of the box against the plane, if they are all over
+ * the plane, and otherwise falls back to box-box.</li>
+ * <li>Box-box finds the axis of least overlap among the 15 separating axes.</li>
+ * </ul>
+ * As with the EPA generator, the normal found points from entity B towards entity A.
+ * A generator keeps the frames of the shapes it is testing, so each thread generating
+ * contact data needs its own generator.
+ *
+ * @author Dominic Cogan-Tucker
+ *
+ */
+public class PrimitiveContactGenerator
+{
+	private static final int SHAPES = Shape.values().length;
+
+	/**
+	 * The squared length of the cross product of two edge directions below which the
+	 * edges are treated as parallel, giving no separating axis.
+	 */
+	private static final float PARALLEL_EPSILON = 1E-6f;
+
+	/**
+	 * The distance from zero within which a component of the normal is treated as zero,
+	 * so that the contact point of touching faces is the centre of the face.
+	 */
+	private static final float AXIS_EPSILON = 1E-3f;
+
+	/**
+	 * The fraction of the least face overlap an edge overlap must be below to be used,
+	 * so that face contacts are preferred when the overlaps are nearly equal.
+	 */
+	private static final float EDGE_BIAS = 0.95f;
+
+	/**
+	 * The routine for each pair of shapes, indexed by the shapes of entity A then B.
+	 */
+	private final ContactRoutine[][] routines = new ContactRoutine[SHAPES][SHAPES];
+
+	/**
+	 * The centre, unit axes and half extents in world space of the shapes of entity A
+	 * and B of the pair being tested.
+	 */
+	private final Vector3f centreA = new Vector3f();
+	private final Vector3f centreB = new Vector3f();
+	private final Vector3f[] axesA = {new Vector3f(), new Vector3f(), new Vector3f()};
+	private final Vector3f[] axesB = {new Vector3f(), new Vector3f(), new Vector3f()};
+	private final Vector3f extentsA = new Vector3f();
+	private final Vector3f extentsB = new Vector3f();
+	private final float[] lengths = new float[3];
+
+	/**
+	 * The rotation from the frame of box B to box A by row, its absolute values, the
+	 * offset from the centre of B to A along the axes of each box, and the half extents
+	 * of each box.
+	 */
+	private final float[] rotation = new float[9];
+	private final float[] absRotation = new float[9];
+	private final float[] offsetA = new float[3];
+	private final float[] offsetB = new float[3];
+	private final float[] halfA = new float[3];
+	private final float[] halfB = new float[3];
+
+	/**
+	 * The least overlap found by the separating axis test, whether it is a face of A,
+	 * a face of B or a pair of edges, and the sign that makes its axis point from B
+	 * towards A, which is then the normal.
+	 */
+	private float overlap;
+	private int overlapType;
+	private int overlapIndex;
+	private float overlapSign;
+	private final Vector3f normal = new Vector3f();
+	private static final int FACE_A = 0;
+	private static final int FACE_B = 1;
+	private static final int EDGES = 2;
+
+	/**
+	 * Scratch vectors reused for every collision.
+	 */
+	private final Vector3f delta = new Vector3f();
+	private final Vector3f point = new Vector3f();
+	private final Vector3f edgeA = new Vector3f();
+	private final Vector3f edgeB = new Vector3f();
+
+	/**
+	 * Constructs a generator with a routine for each pair of primitive shapes.
+	 */
+	public PrimitiveContactGenerator()
+	{
+		register(Shape.SPHERE, Shape.SPHERE, this::sphereSphere);
+		register(Shape.SPHERE, Shape.BOX, this::sphereBox);
+		register(Shape.SPHERE, Shape.PLANE, this::sphereBox);
+		register(Shape.BOX, Shape.PLANE, this::boxPlane);
+		register(Shape.BOX, Shape.BOX, this::boxBox);
+	}
+
+	/**
+	 * Returns true if the contact data of the collision can be generated in closed form.
+	 *
+	 * @param col The collision.
+	 * @return true if there is a routine for the shapes of the collision's entities.
+	 */
+	public boolean handles(Collision col)
+	{
+		return routine(col) != null;
+	}
+
+	/**
+	 * Attempts to generate the contact data of the given collision, writing it into the
+	 * given contact point, and returns true if the entities are colliding.
+	 *
+	 * @param col The collision to generate contact data for.
+	 * @param data The contact point to hold the contact data.
+	 * @return true if the entities are colliding.
+	 * @throws IllegalArgumentException if there is no routine for the shapes of the
+	 * 		collision's entities.
+	 */
+	public boolean generateCollisionData(Collision col, ContactPoint data)
+	{
+		ContactRoutine routine = routine(col);
+		if (routine == null)
+		{
+			throw new IllegalArgumentException("No closed form routine for the shapes of the collision.");
+		}
+		data.worldPoint.zero();
+		data.worldNormal.zero();
+		data.penDepth = 0;
+		return routine.generate(col.getEntityA(), col.getEntityB(), data);
+	}
+
+	/**
+	 * Returns the routine for the shapes of the collision's entities.
+	 *
+	 * @param col The collision.
+	 * @return The routine, or null if there is none.
+	 */
+	private ContactRoutine routine(Collision col)
+	{
+		Shape a = col.getEntityA().getComponent(Collidable.class).shape;
+		Shape b = col.getEntityB().getComponent(Collidable.class).shape;
+		return routines[a.ordinal()][b.ordinal()];
+	}
+
+	/**
+	 * Adds a routine to the table for a pair of shapes, along with one for the shapes
+	 * the other way round, which swaps the entities and reverses the normal.
+	 *
+	 * @param a The shape of entity A.
+	 * @param b The shape of entity B.
+	 * @param routine The routine for the pair.
+	 */
+	private void register(Shape a, Shape b, ContactRoutine routine)
+	{
+		routines[a.ordinal()][b.ordinal()] = routine;
+		if (a != b)
+		{
+			routines[b.ordinal()][a.ordinal()] = (x, y, data) -> swapped(routine, x, y, data);
+		}
+	}
+
+	/**
+	 * Runs a routine with the entities swapped, reversing the normal found and moving the
+	 * contact point from the surface of B across the penetration onto the surface of A.
+	 *
+	 * @param routine The routine.
+	 * @param a Entity A.
+	 * @param b Entity B.
+	 * @param data The contact point to hold the contact data.
+	 * @return true if the entities are colliding.
+	 */
+	private static boolean swapped(ContactRoutine routine, Entity a, Entity b, ContactPoint data)
+	{
+		if (!routine.generate(b, a, data))
+		{
+			return false;
+		}
+		data.worldNormal.negate();
+		data.worldPoint.fma(-data.penDepth, data.worldNormal);
+		return true;
+	}
+
+	/**
+	 * Generates the contact data of two spheres.
+	 */
+	private boolean sphereSphere(Entity a, Entity b, ContactPoint data)
+	{
+		float radiusA = a.getComponent(Collidable.class).radius * frame(a, centreA, axesA, extentsA);
+		float radiusB = b.getComponent(Collidable.class).radius * frame(b, centreB, axesB, extentsB);
+		float radii = radiusA + radiusB;
+		delta.set(centreA).sub(centreB);
+		float distanceSquared = delta.lengthSquared();
+		if (distanceSquared > radii * radii)
+		{
+			return false;
+		}
+		float distance = (float) Math.sqrt(distanceSquared);
+		if (distance > 0)
+		{
+			data.worldNormal.set(delta).div(distance);
+		}
+		else
+		{
+			data.worldNormal.set(0, 1, 0);
+		}
+		data.penDepth = radii - distance;
+		data.worldPoint.set(data.worldNormal).mul(-radiusA).add(centreA);
+		return true;
+	}
+
+	/**
+	 * Generates the contact data of a sphere, entity A, and a box or plane, entity B.
+	 */
+	private boolean sphereBox(Entity a, Entity b, ContactPoint data)
+	{
+		float radius = a.getComponent(Collidable.class).radius * frame(a, centreA, axesA, extentsA);
+		frame(b, centreB, axesB, extentsB);
+		delta.set(centreA).sub(centreB);
+		boolean inside = true;
+		int nearest = 0;
+		float nearestDepth = Float.POSITIVE_INFINITY;
+		point.set(centreB);
+		for (int i = 0; i < 3; i++)
+		{
+			float p = delta.dot(axesB[i]);
+			float extent = extentsB.get(i);
+			float clamped = Math.max(-extent, Math.min(extent, p));
+			if (clamped != p)
+			{
+				inside = false;
+			}
+			point.fma(clamped, axesB[i]);
+			if (extent - Math.abs(p) < nearestDepth)
+			{
+				nearestDepth = extent - Math.abs(p);
+				nearest = i;
+			}
+		}
+
+		if (inside)
+		{
+			// The centre is inside the box, so is pushed out through the nearest face.
+			float side = delta.dot(axesB[nearest]) < 0 ? -1 : 1;
+			data.worldNormal.set(axesB[nearest]).mul(side);
+			data.penDepth = radius + nearestDepth;
+		}
+		else
+		{
+			// The normal is from the closest point of the box to the centre.
+			data.worldNormal.set(centreA).sub(point);
+			float distanceSquared = data.worldNormal.lengthSquared();
+			if (distanceSquared > radius * radius)
+			{
+				return false;
+			}
+			float distance = (float) Math.sqrt(distanceSquared);
+			data.worldNormal.div(distance);
+			data.penDepth = radius - distance;
+		}
+		data.worldPoint.set(data.worldNormal).mul(-radius).add(centreA);
+		return true;
+	}
+
+	/**
+	 * Generates the contact data of a box, entity A, and a plane, entity B. The corners
+	 * of the box below the plane, on the opposite side to the centre of the box, give
+	 * the contact point. If any corner isn't over the plane the box may be touching
+	 * its edge, so the box-box test is used.
+	 */
+	private boolean boxPlane(Entity a, Entity b, ContactPoint data)
+	{
+		frame(a, centreA, axesA, extentsA);
+		frame(b, centreB, axesB, extentsB);
+		float side = delta.set(centreA).sub(centreB).dot(axesB[1]) < 0 ? -1 : 1;
+		float depth = Float.NEGATIVE_INFINITY;
+		int below = 0;
+		point.zero();
+		for (int corner = 0; corner < 8; corner++)
+		{
+			delta.set(centreA).sub(centreB)
+				.fma((corner & 1) == 0 ? -extentsA.x : extentsA.x, axesA[0])
+				.fma((corner & 2) == 0 ? -extentsA.y : extentsA.y, axesA[1])
+				.fma((corner & 4) == 0 ? -extentsA.z : extentsA.z, axesA[2]);
+			if (Math.abs(delta.dot(axesB[0])) > extentsB.x || Math.abs(delta.dot(axesB[2])) > extentsB.z)
+			{
+				return boxBox(a, b, data);
+			}
+			float cornerDepth = -side * delta.dot(axesB[1]);
+			depth = Math.max(depth, cornerDepth);
+			if (cornerDepth >= 0)
+			{
+				point.add(delta);
+				below++;
+			}
+		}
+		if (below == 0)
+		{
+			return false;
+		}
+		data.worldPoint.set(point).div(below).add(centreB);
+		data.worldNormal.set(axesB[1]).mul(side);
+		data.penDepth = depth;
+		return true;
+	}
+
+	/**
+	 * Generates the contact data of two boxes, or a box and a plane, by testing the
+	 * three face axes of each box and the nine axes perpendicular to an edge of each.
+	 * If the boxes overlap on every axis, the axis of least overlap gives the normal.
+	 * Every axis is tested in the frame of box A, using the rotation from box B to A,
+	 * so the axes themselves are only built for the axis of least overlap.
+	 */
+	private boolean boxBox(Entity a, Entity b, ContactPoint data)
+	{
+		frame(a, centreA, axesA, extentsA);
+		frame(b, centreB, axesB, extentsB);
+		delta.set(centreA).sub(centreB);
+		for (int i = 0; i < 3; i++)
+		{
+			for (int j = 0; j < 3; j++)
+			{
+				rotation[3 * i + j] = axesA[i].dot(axesB[j]);
+				absRotation[3 * i + j] = Math.abs(rotation[3 * i + j]);
+			}
+			offsetA[i] = delta.dot(axesA[i]);
+			offsetB[i] = delta.dot(axesB[i]);
+			halfA[i] = extentsA.get(i);
+			halfB[i] = extentsB.get(i);
+		}
+		
+		overlap = Float.POSITIVE_INFINITY;
+		for (int i = 0; i < 3; i++)
+		{
+			float extent = halfA[i] + halfB[0] * absRotation[3 * i]
+					+ halfB[1] * absRotation[3 * i + 1] + halfB[2] * absRotation[3 * i + 2];
+			if (!testAxis(extent, offsetA[i], 1, FACE_A, i))
+			{
+				return false;
+			}
+		}
+		for (int j = 0; j < 3; j++)
+		{
+			float extent = halfB[j] + halfA[0] * absRotation[j]
+					+ halfA[1] * absRotation[3 + j] + halfA[2] * absRotation[6 + j];
+			if (!testAxis(extent, offsetB[j], 1, FACE_B, j))
+			{
+				return false;
+			}
+		}
+		for (int i = 0; i < 3; i++)
+		{
+			int i1 = (i + 1) % 3;
+			int i2 = (i + 2) % 3;
+			for (int j = 0; j < 3; j++)
+			{
+				// The axis is the cross product of the edges, whose length is the sine
+				// of the angle between them.
+				float lengthSquared = 1 - rotation[3 * i + j] * rotation[3 * i + j];
+				if (lengthSquared <= PARALLEL_EPSILON)
+				{
+					continue;
+				}
+				int j1 = (j + 1) % 3;
+				int j2 = (j + 2) % 3;
+				float extent = halfA[i1] * absRotation[3 * i2 + j] + halfA[i2] * absRotation[3 * i1 + j]
+						+ halfB[j1] * absRotation[3 * i + j2] + halfB[j2] * absRotation[3 * i + j1];
+				float distance = offsetA[i2] * rotation[3 * i1 + j] - offsetA[i1] * rotation[3 * i2 + j];
+				if (!testAxis(extent, distance, (float) Math.sqrt(lengthSquared), EDGES, 3 * i + j))
+				{
+					return false;
+				}
+			}
+		}
+
+		data.penDepth = overlap;
+		if (overlapType == FACE_A)
+		{
+			// The face of B deepest inside the face of A.
+			normal.set(axesA[overlapIndex]).mul(overlapSign);
+			support(centreB, axesB, extentsB, 1, -1, data.worldPoint);
+		}
+		else if (overlapType == FACE_B)
+		{
+			// The face of A deepest inside the face of B.
+			normal.set(axesB[overlapIndex]).mul(overlapSign);
+			support(centreA, axesA, extentsA, -1, -1, data.worldPoint);
+		}
+		else
+		{
+			// The point between the closest points of the two edges.
+			int i = overlapIndex / 3;
+			int j = overlapIndex % 3;
+			normal.set(axesA[i]).cross(axesB[j]).normalize().mul(overlapSign);
+			support(centreA, axesA, extentsA, -1, i, edgeA);
+			support(centreB, axesB, extentsB, 1, j, edgeB);
+			closestBetweenEdges(edgeA, axesA[i], extentsA.get(i), edgeB, axesB[j], extentsB.get(j), data.worldPoint);
+		}
+		data.worldNormal.set(normal);
+		return true;
+	}
+
+	/**
+	 * Tests the boxes for overlap along an axis, keeping the axis if the overlap is the
+	 * least found so far.
+	 *
+	 * @param extent The sum of the projected half extents of the boxes along the axis.
+	 * @param distance The distance between the centres along the axis, from B to A.
+	 * @param length The length of the axis, which the extent and distance are scaled by.
+	 * @param type Whether the axis is a face of A, a face of B or a pair of edges.
+	 * @param index The index of the face or pair of edges.
+	 * @return false if the axis separates the boxes.
+	 */
+	private boolean testAxis(float extent, float distance, float length, int type, int index)
+	{
+		float axisOverlap = (extent - Math.abs(distance)) / length;
+		if (axisOverlap < 0)
+		{
+			return false;
+		}
+		if (type == EDGES ? axisOverlap < overlap * EDGE_BIAS : axisOverlap < overlap)
+		{
+			overlap = axisOverlap;
+			overlapType = type;
+			overlapIndex = index;
+			overlapSign = distance < 0 ? -1 : 1;
+		}
+		return true;
+	}
+
+	/**
+	 * Finds the point of a box furthest along the normal, or against it. Axes nearly
+	 * perpendicular to the normal are left at the centre, giving the centre of a face or
+	 * edge rather than a corner, as is the axis of the given edge.
+	 *
+	 * @param centre The centre of the box.
+	 * @param axes The unit axes of the box.
+	 * @param extents The half extents of the box.
+	 * @param direction 1 to go along the normal, -1 to go against it.
+	 * @param edge The axis to leave at the centre, or -1 for none.
+	 * @param dest The vector to hold the point.
+	 */
+	private void support(Vector3f centre, Vector3f[] axes, Vector3f extents, float direction, int edge, Vector3f dest)
+	{
+		dest.set(centre);
+		for (int i = 0; i < 3; i++)
+		{
+			float component = direction * normal.dot(axes[i]);
+			if (i != edge && Math.abs(component) > AXIS_EPSILON)
+			{
+				dest.fma(Math.signum(component) * extents.get(i), axes[i]);
+			}
+		}
+	}
+
+	/**
+	 * Finds the point halfway between the closest points of two edges.
+	 *
+	 * @param middleA The middle of the first edge.
+	 * @param directionA The unit direction of the first edge.
+	 * @param extentA Half the length of the first edge.
+	 * @param middleB The middle of the second edge.
+	 * @param directionB The unit direction of the second edge.
+	 * @param extentB Half the length of the second edge.
+	 * @param dest The vector to hold the point.
+	 */
+	private void closestBetweenEdges(Vector3f middleA, Vector3f directionA, float extentA,
+			Vector3f middleB, Vector3f directionB, float extentB, Vector3f dest)
+	{
+		// Adapted from Christer Ericson's closest points of two segments in his
+		// Real-Time Collision Detection, for unit directions.
+		Vector3f r = delta.set(middleA).sub(middleB);
+		float b = directionA.dot(directionB);
+		float c = directionA.dot(r);
+		float f = directionB.dot(r);
+		float denom = 1 - b * b;
+		float s = denom > PARALLEL_EPSILON ? (b * f - c) / denom : 0;
+		s = Math.max(-extentA, Math.min(extentA, s));
+		float t = Math.max(-extentB, Math.min(extentB, b * s + f));
+		dest.set(middleA).fma(s, directionA).add(middleB).fma(t, directionB).mul(0.5f);
+	}
+
+	/**
+	 * Reads the centre, unit axes and half extents in world space of an entity's shape
+	 * from its transform, which must have been updated since the entity last moved. An
+	 * axis with no scale, such as the height of a plane, is found from the other two.
+	 *
+	 * @param e The entity.
+	 * @param centre The vector to hold the centre.
+	 * @param axes The vectors to hold the unit axes.
+	 * @param extents The vector to hold the half extents.
+	 * @return The largest scale of the axes, which scales the radius of a sphere.
+	 */
+	private float frame(Entity e, Vector3f centre, Vector3f[] axes, Vector3f extents)
+	{
+		Matrix4f m = e.getComponent(Transform.class).matrix;
+		centre.set(m.m30(), m.m31(), m.m32());
+		axes[0].set(m.m00(), m.m01(), m.m02());
+		axes[1].set(m.m10(), m.m11(), m.m12());
+		axes[2].set(m.m20(), m.m21(), m.m22());
+		float scale = 0;
+		for (int i = 0; i < 3; i++)
+		{
+			lengths[i] = axes[i].length();
+			if (lengths[i] > 0)
+			{
+				axes[i].div(lengths[i]);
+			}
+			scale = Math.max(scale, lengths[i]);
+		}
+		for (int i = 0; i < 3; i++)
+		{
+			if (lengths[i] == 0)
+			{
+				axes[i].set(axes[(i + 1) % 3]).cross(axes[(i + 2) % 3]).normalize();
+			}
+		}
+		extents.set(e.getComponent(Collidable.class).halfExtents).mul(lengths[0], lengths[1], lengths[2]);
+		return scale;
+	}
+
+	/**
+	 * Generates the contact data of a pair of shapes.
+	 */
+	@FunctionalInterface
+	private interface ContactRoutine
+	{
+		/**
+		 * Generates the contact data of entity A and B, returning true if they are colliding.
+		 */
+		boolean generate(Entity a, Entity b, ContactPoint data);
+	}
+}
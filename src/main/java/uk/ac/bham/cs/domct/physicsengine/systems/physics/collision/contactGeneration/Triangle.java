@@ -20,7 +20,7 @@ public class Triangle
 	/**
 	 * The normal to the edges AB and AC.
 	 */
-	private Vector3f normal;
+	private final Vector3f normal = new Vector3f();
 	
 	/**
 	 * Constructs a triangle with the points a, b and c. Calculating the normal
@@ -47,7 +47,7 @@ public class Triangle
 		points[0] = a;
 		points[1] = b;
 		points[2] = c;
-		normal = (new Vector3f(b.v).sub(a.v)).cross(new Vector3f(c.v).sub(a.v)).normalize();
+		normal.set(b.v).sub(a.v).cross(c.v.x - a.v.x, c.v.y - a.v.y, c.v.z - a.v.z).normalize();
 	}
 	
 	/**
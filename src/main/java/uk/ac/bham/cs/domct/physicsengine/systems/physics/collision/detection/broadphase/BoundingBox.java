@@ -1,9 +1,23 @@
 package uk.ac.bham.cs.domct.physicsengine.systems.physics.collision.detection.broadphase;
 
+import org.joml.Matrix4f;
+import org.joml.Vector3f;
+
+import uk.ac.bham.cs.domct.physicsengine.component.Mesh;
+import uk.ac.bham.cs.domct.physicsengine.systems.physics.collision.detection.narrowphase.HullData;
+
 /**
  * Axis-aligned bounding box. The bounding box is used for collision detection
  * between two collidable objects. If two boxes are overlapping they are
  * considered to have collided.
+ * <p>
+ * A box created from a hull keeps the local-space bounds of its vertices, which are
+ * found once when the hull of a mesh is built and are dropped along with it. Updating
+ * the box then only transforms those bounds rather than every vertex of the mesh, so the
+ * cost of an update doesn't depend on the size of the mesh and nothing is allocated. A
+ * box can also be created from the bounds of a mesh's vertices directly. A box created
+ * for a sphere instead keeps its radius, and is updated to the tightest box around the
+ * transformed sphere however it is rotated.
  * 
  * @author Dominic Cogan-Tucker
  *
@@ -19,6 +33,62 @@ public class BoundingBox
 	 * The min x, y and z values of the bounding box.
 	 */
 	public float minX, minY, minZ;
+	
+	/**
+	 * The local-space bounds of the hull or mesh this box was created from, stored as the
+	 * min then max x, y and z values.
+	 */
+	private float[] local;
+	
+	/**
+	 * The radius of the sphere this box was created for, or 0 if it wasn't.
+	 */
+	private float radius = 0;
+
+	/**
+	 * Generates a bounding box from the local-space bounds of a hull. The box must be
+	 * updated with the entity's transform before it is used.
+	 * 
+	 * @param hull The hull of the object to generate a bounding box for.
+	 */
+	public BoundingBox(HullData hull)
+	{
+		Vector3f min = hull.getMin(new Vector3f());
+		Vector3f max = hull.getMax(new Vector3f());
+		local = new float[] {min.x, min.y, min.z, max.x, max.y, max.z};
+		setBoxMinAndMaxValues(local[0], local[1], local[2], local[3], local[4], local[5]);
+	}
+	
+	/**
+	 * Generates a bounding box from the local-space bounds of a mesh, found from every
+	 * vertex of the mesh. The box must be updated with the entity's transform before it
+	 * is used.
+	 * 
+	 * @param mesh The mesh of the object to generate a bounding box for.
+	 */
+	public BoundingBox(Mesh mesh)
+	{
+		local = calculateBounds(mesh.vertices);
+		setBoxMinAndMaxValues(local[0], local[1], local[2], local[3], local[4], local[5]);
+	}
+
+	/**
+	 * Generates a bounding box for a sphere centred on the origin of its entity. The box
+	 * must be updated with the entity's transform before it is used.
+	 * 
+	 * @param radius The radius of the sphere in local space.
+	 * @throws IllegalArgumentException if the radius isn't positive.
+	 */
+	public BoundingBox(float radius)
+	{
+		if (!(radius > 0))
+		{
+			throw new IllegalArgumentException("Radius of a sphere must be positive.");
+		}
+		this.radius = radius;
+		local = new float[] {-radius, -radius, -radius, radius, radius, radius};
+		setBoxMinAndMaxValues(local[0], local[1], local[2], local[3], local[4], local[5]);
+	}
 
 	/**
 	 * Generates a bounding box from an array of vertex values.
@@ -40,6 +110,57 @@ public class BoundingBox
 		setBoxMinAndMaxValues(vertices);
 	}
 	
+	/**
+	 * Updates the bounding box to enclose the local-space bounds of its mesh after they
+	 * are transformed by the given matrix. The centre of the bounds is transformed as a
+	 * point, and the half extents through the absolute values of the matrix, giving the
+	 * tightest box around the transformed bounds. The box of a sphere extends from the
+	 * transformed centre by the radius times the length of each row of the matrix, which
+	 * is the tightest box around the sphere whatever its rotation.
+	 * 
+	 * @param m The local to world transformation matrix of the entity.
+	 */
+	public void update(Matrix4f m)
+	{
+		if (local == null)
+		{
+			throw new IllegalStateException("Only a bounding box created from a mesh or sphere can be transformed.");
+		}
+		if (radius > 0)
+		{
+			float ex = radius * (float) Math.sqrt(m.m00() * m.m00() + m.m10() * m.m10() + m.m20() * m.m20());
+			float ey = radius * (float) Math.sqrt(m.m01() * m.m01() + m.m11() * m.m11() + m.m21() * m.m21());
+			float ez = radius * (float) Math.sqrt(m.m02() * m.m02() + m.m12() * m.m12() + m.m22() * m.m22());
+			setBoxMinAndMaxValues(m.m30() - ex, m.m31() - ey, m.m32() - ez, m.m30() + ex, m.m31() + ey, m.m32() + ez);
+			return;
+		}
+		float cx = (local[0] + local[3]) / 2, cy = (local[1] + local[4]) / 2, cz = (local[2] + local[5]) / 2;
+		float hx = (local[3] - local[0]) / 2, hy = (local[4] - local[1]) / 2, hz = (local[5] - local[2]) / 2;
+		float x = m.m00() * cx + m.m10() * cy + m.m20() * cz + m.m30();
+		float y = m.m01() * cx + m.m11() * cy + m.m21() * cz + m.m31();
+		float z = m.m02() * cx + m.m12() * cy + m.m22() * cz + m.m32();
+		float ex = Math.abs(m.m00()) * hx + Math.abs(m.m10()) * hy + Math.abs(m.m20()) * hz;
+		float ey = Math.abs(m.m01()) * hx + Math.abs(m.m11()) * hy + Math.abs(m.m21()) * hz;
+		float ez = Math.abs(m.m02()) * hx + Math.abs(m.m12()) * hy + Math.abs(m.m22()) * hz;
+		setBoxMinAndMaxValues(x - ex, y - ey, z - ez, x + ex, y + ey, z + ez);
+	}
+	
+	/**
+	 * Returns the half extents of the local-space bounds of the mesh or sphere this box
+	 * was created from.
+	 * 
+	 * @param dest The vector to hold the half extents.
+	 * @return dest, holding the half extents.
+	 */
+	public Vector3f getLocalHalfExtents(Vector3f dest)
+	{
+		if (local == null)
+		{
+			throw new IllegalStateException("Only a bounding box created from a mesh or sphere has local bounds.");
+		}
+		return dest.set(local[3] - local[0], local[4] - local[1], local[5] - local[2]).mul(0.5f);
+	}
+	
 	/**
 	 * Returns true if this bounding box is intersecting with the one give.
 	 * 
@@ -53,6 +174,44 @@ public class BoundingBox
 				(minZ <= other.maxZ && maxZ >= other.minZ);
 	}
 
+	/**
+	 * Sets the bounding box minimum and maximum x, y and z values.
+	 * 
+	 * @param minX The minimum x value.
+	 * @param minY The minimum y value.
+	 * @param minZ The minimum z value.
+	 * @param maxX The maximum x value.
+	 * @param maxY The maximum y value.
+	 * @param maxZ The maximum z value.
+	 */
+	private void setBoxMinAndMaxValues(float minX, float minY, float minZ, float maxX, float maxY, float maxZ)
+	{
+		this.minX = minX;
+		this.minY = minY;
+		this.minZ = minZ;
+		this.maxX = maxX;
+		this.maxY = maxY;
+		this.maxZ = maxZ;
+	}
+	
+	/**
+	 * Calculates the local-space bounds of an array of vertex values.
+	 * 
+	 * @param vertices The vertices of the mesh.
+	 * @return The min then max x, y and z values of the vertices.
+	 */
+	private static float[] calculateBounds(float[] vertices)
+	{
+		float[] bounds = {Float.POSITIVE_INFINITY, Float.POSITIVE_INFINITY, Float.POSITIVE_INFINITY,
+				Float.NEGATIVE_INFINITY, Float.NEGATIVE_INFINITY, Float.NEGATIVE_INFINITY};
+		for (int i = 0; i < vertices.length; i++)
+		{
+			bounds[i % 3] = Math.min(bounds[i % 3], vertices[i]);
+			bounds[3 + i % 3] = Math.max(bounds[3 + i % 3], vertices[i]);
+		}
+		return bounds;
+	}
+
 	/**
 	 * Sets the bounding box minimum and maximum x, y and z values.
 	 * 
@@ -0,0 +1,48 @@
+package uk.ac.bham.cs.domct.physicsengine.systems.physics.collision.detection.broadphase;
+
+import java.util.List;
+
+import uk.ac.bham.cs.domct.physicsengine.entity.Entity;
+
+/**
+ * A broad phase collision detection strategy. Given the collidable entities in the scene,
+ * with their bounding boxes already updated for this frame, a broad phase finds every pair
+ * of entities whose bounding boxes are overlapping. These pairs are then passed on to the
+ * narrow phase.
+ * <p>
+ * A broad phase holding threads releases them when it is closed, which its collision
+ * system does when the system is closed.
+ *
+ * @author Dominic Cogan-Tucker
+ *
+ */
+public interface BroadPhase extends AutoCloseable
+{
+	/**
+	 * Updates the broad phase with the collidable entities for this frame. Entities that
+	 * haven't been seen before are added, entities that are no longer given are removed and
+	 * any structure kept between frames is updated to the entities' current bounding boxes.
+	 * The entities are given as a list so that they can be walked without an iterator.
+	 *
+	 * @param entities The collidable entities in the scene.
+	 */
+	void update(List<Entity> entities);
+
+	/**
+	 * Adds every pair of entities whose bounding boxes are overlapping to the given buffer.
+	 * Each pair is only added once.
+	 *
+	 * @param pairs The buffer to add the overlapping pairs to.
+	 */
+	void findPairs(PairBuffer pairs);
+
+	/**
+	 * Releases any resources held by the broad phase, such as the threads it finds pairs
+	 * on. Does nothing unless overridden.
+	 */
+	@Override
+	default void close()
+	{
+
+	}
+}
@@ -0,0 +1,61 @@
+package uk.ac.bham.cs.domct.physicsengine.systems.physics.collision.detection.broadphase;
+
+import java.util.Arrays;
+import java.util.List;
+
+import uk.ac.bham.cs.domct.physicsengine.component.Collidable;
+import uk.ac.bham.cs.domct.physicsengine.entity.Entity;
+
+/**
+ * Broad phase that checks every entity against every other entity. This is O(n^2) so is
+ * only suitable for small scenes, but as it is trivially correct it is kept as the
+ * reference the other broad phases are checked against.
+ *
+ * @author Dominic Cogan-Tucker
+ *
+ */
+public class BruteForceBroadPhase implements BroadPhase
+{
+	/**
+	 * The entities and their bounding boxes for this frame.
+	 */
+	private Entity[] entities = new Entity[16];
+	private BoundingBox[] boxes = new BoundingBox[16];
+	private int count = 0;
+
+	@Override
+	public void update(List<Entity> entities)
+	{
+		Arrays.fill(this.entities, 0, count, null);
+		Arrays.fill(boxes, 0, count, null);
+		if (this.entities.length < entities.size())
+		{
+			this.entities = new Entity[entities.size()];
+			boxes = new BoundingBox[entities.size()];
+		}
+		count = 0;
+		for (int i = 0; i < entities.size(); i++)
+		{
+			Entity e = entities.get(i);
+			this.entities[count] = e;
+			boxes[count++] = e.getComponent(Collidable.class).bBox;
+		}
+	}
+
+	@Override
+	public void findPairs(PairBuffer pairs)
+	{
+		// Check every entity against every other.
+		for (int i = 0; i < count; i++)
+		{
+			BoundingBox a = boxes[i];
+			for (int j = i + 1; j < count; j++)
+			{
+				if (a.isIntersecting(boxes[j]))
+				{
+					pairs.add(entities[i], entities[j]);
+				}
+			}
+		}
+	}
+}
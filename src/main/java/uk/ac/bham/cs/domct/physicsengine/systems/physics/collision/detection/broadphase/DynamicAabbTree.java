@@ -0,0 +1,645 @@
+package uk.ac.bham.cs.domct.physicsengine.systems.physics.collision.detection.broadphase;
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+
+import uk.ac.bham.cs.domct.physicsengine.component.Collidable;
+import uk.ac.bham.cs.domct.physicsengine.entity.Entity;
+
+/**
+ * Dynamic bounding volume hierarchy broad phase. Every entity is stored as a leaf of a
+ * balanced binary tree of axis-aligned boxes, where the box of each leaf is the entity's
+ * bounding box fattened by a margin. An entity is only removed and reinserted once its
+ * bounding box has moved outside of its fat box, so slow moving and resting entities leave
+ * the tree untouched and only the few fast moving entities cause it to restructure. Pairs and
+ * overlaps are found by descending the tree, in O(log n) per entity.
+ *
+ * @author Dominic Cogan-Tucker
+ *
+ */
+public class DynamicAabbTree implements BroadPhase
+{
+	private static final int NULL = -1;
+
+	/**
+	 * The distance each leaf's box is fattened by in every direction.
+	 */
+	private final float margin;
+
+	/**
+	 * The proxy of each entity in the tree.
+	 */
+	private Map<Entity, Proxy> proxies = new HashMap<>();
+	private Proxy[] proxyArray = new Proxy[16];
+	private int proxyCount = 0;
+
+	/**
+	 * The nodes of the tree. The box of node n is stored at boxes[6n] to boxes[6n + 5] as
+	 * min x, y, z then max x, y, z. Leaves have no children and a height of 0, and free nodes
+	 * are linked through their parent index.
+	 */
+	private float[] boxes;
+	private int[] parent;
+	private int[] child1;
+	private int[] child2;
+	private int[] height;
+	private Proxy[] leafProxy;
+	private int capacity = 0;
+	private int root = NULL;
+	private int freeList = NULL;
+
+	/**
+	 * The stack used when descending the tree.
+	 */
+	private int[] stack = new int[64];
+
+	/**
+	 * The current frame, used to find entities that have been removed.
+	 */
+	private int frame = 0;
+
+	/**
+	 * Constructs a tree with a fat box margin of 0.1.
+	 */
+	public DynamicAabbTree()
+	{
+		this(0.1f);
+	}
+
+	/**
+	 * Constructs a tree with the given fat box margin. Larger margins mean entities have
+	 * to move further before being reinserted, at the cost of more overlapping nodes.
+	 *
+	 * @param margin The distance to fatten the bounding boxes by.
+	 */
+	public DynamicAabbTree(float margin)
+	{
+		this.margin = margin;
+		grow(16);
+	}
+
+	@Override
+	public void update(List<Entity> entities)
+	{
+		frame++;
+		for (int i = 0; i < entities.size(); i++)
+		{
+			Entity e = entities.get(i);
+			Proxy p = proxies.get(e);
+			if (p == null)
+			{
+				p = addProxy(e);
+			}
+			else if (!fatBoxContains(p.node, p.box))
+			{
+				// Only entities that have left their fat box need to move in the tree.
+				removeLeaf(p.node);
+				setFatBox(p.node, p.box);
+				insertLeaf(p.node);
+			}
+			p.frame = frame;
+		}
+		if (proxies.size() != entities.size())
+		{
+			removeStaleProxies();
+		}
+	}
+
+	@Override
+	public void findPairs(PairBuffer pairs)
+	{
+		for (int i = 0; i < proxyCount; i++)
+		{
+			Proxy p = proxyArray[i];
+			// Only pairs with leaves at a higher node are added so each pair is found once.
+			query(p.box, p.node, p.entity, pairs);
+		}
+	}
+
+	/**
+	 * Adds a pair for the given entity and every entity in the tree whose bounding box is
+	 * intersecting the given box. The entity itself does not need to be in the tree.
+	 *
+	 * @param entity The entity to pair with the overlapping entities.
+	 * @param box The box to check for overlaps with.
+	 * @param pairs The buffer to add the pairs to.
+	 */
+	public void query(Entity entity, BoundingBox box, PairBuffer pairs)
+	{
+		query(box, NULL, entity, pairs);
+	}
+
+	/**
+	 * Returns the number of entities in the tree.
+	 *
+	 * @return The number of entities.
+	 */
+	public int size()
+	{
+		return proxyCount;
+	}
+
+	/**
+	 * Returns the height of the tree, with an empty tree or a single leaf
+	 * having a height of 0.
+	 *
+	 * @return The height of the tree.
+	 */
+	public int getHeight()
+	{
+		return root == NULL ? 0 : height[root];
+	}
+
+	/**
+	 * Descends the tree adding a pair for every leaf whose entity's bounding box is
+	 * intersecting the given box.
+	 *
+	 * @param box The box to check for overlaps with.
+	 * @param minNode Only leaves at a node index above this are paired.
+	 * @param entity The entity to pair with.
+	 * @param pairs The buffer to add the pairs to.
+	 */
+	private void query(BoundingBox box, int minNode, Entity entity, PairBuffer pairs)
+	{
+		if (root == NULL)
+		{
+			return;
+		}
+		int top = 0;
+		stack[top++] = root;
+		while (top > 0)
+		{
+			int node = stack[--top];
+			if (!nodeOverlaps(node, box))
+			{
+				continue;
+			}
+			if (child1[node] == NULL)
+			{
+				Proxy q = leafProxy[node];
+				if (node > minNode && q.entity != entity && q.box.isIntersecting(box))
+				{
+					pairs.add(entity, q.entity);
+				}
+			}
+			else
+			{
+				if (top + 2 > stack.length)
+				{
+					stack = Arrays.copyOf(stack, stack.length * 2);
+				}
+				stack[top++] = child1[node];
+				stack[top++] = child2[node];
+			}
+		}
+	}
+
+	/**
+	 * Adds a leaf for the given entity to the tree.
+	 *
+	 * @param e The entity to add.
+	 * @return The proxy of the entity.
+	 */
+	private Proxy addProxy(Entity e)
+	{
+		Proxy p = new Proxy();
+		p.entity = e;
+		p.box = e.getComponent(Collidable.class).bBox;
+		p.node = allocateNode();
+		p.index = proxyCount;
+		leafProxy[p.node] = p;
+		setFatBox(p.node, p.box);
+		insertLeaf(p.node);
+		proxies.put(e, p);
+
+		if (proxyCount == proxyArray.length)
+		{
+			proxyArray = Arrays.copyOf(proxyArray, proxyCount * 2);
+		}
+		proxyArray[proxyCount++] = p;
+		return p;
+	}
+
+	/**
+	 * Removes the leaves of all entities that weren't updated this frame.
+	 */
+	private void removeStaleProxies()
+	{
+		for (Iterator<Proxy> i = proxies.values().iterator(); i.hasNext();)
+		{
+			Proxy p = i.next();
+			if (p.frame != frame)
+			{
+				i.remove();
+				removeLeaf(p.node);
+				freeNode(p.node);
+				Proxy last = proxyArray[--proxyCount];
+				proxyArray[p.index] = last;
+				last.index = p.index;
+				proxyArray[proxyCount] = null;
+			}
+		}
+	}
+
+	/**
+	 * Inserts the leaf into the tree, next to the node that increases the surface area of
+	 * the tree the least, then rebalances the tree from the leaf up to the root.
+	 *
+	 * @param leaf The leaf node to insert.
+	 */
+	private void insertLeaf(int leaf)
+	{
+		if (root == NULL)
+		{
+			root = leaf;
+			parent[root] = NULL;
+			return;
+		}
+
+		// Find the best sibling for the new leaf.
+		int index = root;
+		while (child1[index] != NULL)
+		{
+			int c1 = child1[index];
+			int c2 = child2[index];
+			float area = area(index, NULL);
+			float combinedArea = area(index, leaf);
+			// Cost of creating a new parent for this node and the new leaf.
+			float cost = 2 * combinedArea;
+			// Minimum cost of pushing the leaf further down the tree.
+			float inheritanceCost = 2 * (combinedArea - area);
+			float cost1 = descendCost(c1, leaf) + inheritanceCost;
+			float cost2 = descendCost(c2, leaf) + inheritanceCost;
+			if (cost < cost1 && cost < cost2)
+			{
+				break;
+			}
+			index = cost1 < cost2 ? c1 : c2;
+		}
+		int sibling = index;
+
+		// Create a new parent for the sibling and the leaf.
+		int oldParent = parent[sibling];
+		int newParent = allocateNode();
+		parent[newParent] = oldParent;
+		union(newParent, sibling, leaf);
+		height[newParent] = height[sibling] + 1;
+		child1[newParent] = sibling;
+		child2[newParent] = leaf;
+		parent[sibling] = newParent;
+		parent[leaf] = newParent;
+		if (oldParent == NULL)
+		{
+			root = newParent;
+		}
+		else if (child1[oldParent] == sibling)
+		{
+			child1[oldParent] = newParent;
+		}
+		else
+		{
+			child2[oldParent] = newParent;
+		}
+
+		refit(parent[leaf]);
+	}
+
+	/**
+	 * Removes the leaf from the tree, replacing its parent with its sibling. The leaf node
+	 * itself is kept so it can be reinserted.
+	 *
+	 * @param leaf The leaf node to remove.
+	 */
+	private void removeLeaf(int leaf)
+	{
+		if (leaf == root)
+		{
+			root = NULL;
+			return;
+		}
+		int p = parent[leaf];
+		int grandParent = parent[p];
+		int sibling = child1[p] == leaf ? child2[p] : child1[p];
+		if (grandParent == NULL)
+		{
+			root = sibling;
+			parent[sibling] = NULL;
+			freeNode(p);
+			return;
+		}
+		if (child1[grandParent] == p)
+		{
+			child1[grandParent] = sibling;
+		}
+		else
+		{
+			child2[grandParent] = sibling;
+		}
+		parent[sibling] = grandParent;
+		freeNode(p);
+		refit(grandParent);
+	}
+
+	/**
+	 * Walks from the given node up to the root, balancing each node and updating its box
+	 * and height from its children.
+	 *
+	 * @param index The node to start from.
+	 */
+	private void refit(int index)
+	{
+		while (index != NULL)
+		{
+			index = balance(index);
+			int c1 = child1[index];
+			int c2 = child2[index];
+			height[index] = 1 + Math.max(height[c1], height[c2]);
+			union(index, c1, c2);
+			index = parent[index];
+		}
+	}
+
+	/**
+	 * Performs a left or right rotation if node A is imbalanced.
+	 *
+	 * @param iA The node to balance.
+	 * @return The node now in the position of node A.
+	 */
+	private int balance(int iA)
+	{
+		if (child1[iA] == NULL || height[iA] < 2)
+		{
+			return iA;
+		}
+		int iB = child1[iA];
+		int iC = child2[iA];
+		int balance = height[iC] - height[iB];
+
+		// Rotate C up.
+		if (balance > 1)
+		{
+			int iF = child1[iC];
+			int iG = child2[iC];
+			child1[iC] = iA;
+			parent[iC] = parent[iA];
+			parent[iA] = iC;
+			replaceChild(parent[iC], iA, iC);
+			if (height[iF] > height[iG])
+			{
+				child2[iC] = iF;
+				child2[iA] = iG;
+				parent[iG] = iA;
+				union(iA, iB, iG);
+				union(iC, iA, iF);
+				height[iA] = 1 + Math.max(height[iB], height[iG]);
+				height[iC] = 1 + Math.max(height[iA], height[iF]);
+			}
+			else
+			{
+				child2[iC] = iG;
+				child2[iA] = iF;
+				parent[iF] = iA;
+				union(iA, iB, iF);
+				union(iC, iA, iG);
+				height[iA] = 1 + Math.max(height[iB], height[iF]);
+				height[iC] = 1 + Math.max(height[iA], height[iG]);
+			}
+			return iC;
+		}
+
+		// Rotate B up.
+		if (balance < -1)
+		{
+			int iD = child1[iB];
+			int iE = child2[iB];
+			child1[iB] = iA;
+			parent[iB] = parent[iA];
+			parent[iA] = iB;
+			replaceChild(parent[iB], iA, iB);
+			if (height[iD] > height[iE])
+			{
+				child2[iB] = iD;
+				child1[iA] = iE;
+				parent[iE] = iA;
+				union(iA, iC, iE);
+				union(iB, iA, iD);
+				height[iA] = 1 + Math.max(height[iC], height[iE]);
+				height[iB] = 1 + Math.max(height[iA], height[iD]);
+			}
+			else
+			{
+				child2[iB] = iE;
+				child1[iA] = iD;
+				parent[iD] = iA;
+				union(iA, iC, iD);
+				union(iB, iA, iE);
+				height[iA] = 1 + Math.max(height[iC], height[iD]);
+				height[iB] = 1 + Math.max(height[iA], height[iE]);
+			}
+			return iB;
+		}
+		return iA;
+	}
+
+	/**
+	 * Replaces a child of the given parent node, or the root if there is no parent.
+	 *
+	 * @param p The parent node.
+	 * @param oldChild The child to replace.
+	 * @param newChild The new child.
+	 */
+	private void replaceChild(int p, int oldChild, int newChild)
+	{
+		if (p == NULL)
+		{
+			root = newChild;
+		}
+		else if (child1[p] == oldChild)
+		{
+			child1[p] = newChild;
+		}
+		else
+		{
+			child2[p] = newChild;
+		}
+	}
+
+	/**
+	 * Returns the cost of descending into the given child when inserting the leaf.
+	 *
+	 * @param child The child node.
+	 * @param leaf The leaf being inserted.
+	 * @return The increase in surface area caused by descending into the child.
+	 */
+	private float descendCost(int child, int leaf)
+	{
+		if (child1[child] == NULL)
+		{
+			return area(child, leaf);
+		}
+		return area(child, leaf) - area(child, NULL);
+	}
+
+	/**
+	 * Returns the surface area of the box of node a, or of the union of the boxes of node
+	 * a and node b if b is not null.
+	 *
+	 * @param a The first node.
+	 * @param b The second node, or null.
+	 * @return The surface area.
+	 */
+	private float area(int a, int b)
+	{
+		int i = 6 * a;
+		float dx, dy, dz;
+		if (b == NULL)
+		{
+			dx = boxes[i + 3] - boxes[i];
+			dy = boxes[i + 4] - boxes[i + 1];
+			dz = boxes[i + 5] - boxes[i + 2];
+		}
+		else
+		{
+			int j = 6 * b;
+			dx = Math.max(boxes[i + 3], boxes[j + 3]) - Math.min(boxes[i], boxes[j]);
+			dy = Math.max(boxes[i + 4], boxes[j + 4]) - Math.min(boxes[i + 1], boxes[j + 1]);
+			dz = Math.max(boxes[i + 5], boxes[j + 5]) - Math.min(boxes[i + 2], boxes[j + 2]);
+		}
+		return 2 * (dx * dy + dy * dz + dz * dx);
+	}
+
+	/**
+	 * Sets the box of the given node to the union of the boxes of nodes a and b.
+	 *
+	 * @param node The node to set.
+	 * @param a The first node.
+	 * @param b The second node.
+	 */
+	private void union(int node, int a, int b)
+	{
+		int n = 6 * node;
+		int i = 6 * a;
+		int j = 6 * b;
+		for (int k = 0; k < 3; k++)
+		{
+			boxes[n + k] = Math.min(boxes[i + k], boxes[j + k]);
+			boxes[n + k + 3] = Math.max(boxes[i + k + 3], boxes[j + k + 3]);
+		}
+	}
+
+	/**
+	 * Sets the box of the node to the given bounding box fattened by the margin.
+	 *
+	 * @param node The leaf node.
+	 * @param box The bounding box.
+	 */
+	private void setFatBox(int node, BoundingBox box)
+	{
+		int n = 6 * node;
+		boxes[n] = box.minX - margin;
+		boxes[n + 1] = box.minY - margin;
+		boxes[n + 2] = box.minZ - margin;
+		boxes[n + 3] = box.maxX + margin;
+		boxes[n + 4] = box.maxY + margin;
+		boxes[n + 5] = box.maxZ + margin;
+	}
+
+	/**
+	 * Returns true if the box of the node fully contains the given bounding box.
+	 *
+	 * @param node The node.
+	 * @param box The bounding box.
+	 * @return true if the bounding box is inside the node's box.
+	 */
+	private boolean fatBoxContains(int node, BoundingBox box)
+	{
+		int n = 6 * node;
+		return boxes[n] <= box.minX && boxes[n + 1] <= box.minY && boxes[n + 2] <= box.minZ
+				&& boxes[n + 3] >= box.maxX && boxes[n + 4] >= box.maxY && boxes[n + 5] >= box.maxZ;
+	}
+
+	/**
+	 * Returns true if the box of the node is intersecting the given bounding box.
+	 *
+	 * @param node The node.
+	 * @param box The bounding box.
+	 * @return true if the boxes are intersecting.
+	 */
+	private boolean nodeOverlaps(int node, BoundingBox box)
+	{
+		int n = 6 * node;
+		return boxes[n] <= box.maxX && boxes[n + 3] >= box.minX
+				&& boxes[n + 1] <= box.maxY && boxes[n + 4] >= box.minY
+				&& boxes[n + 2] <= box.maxZ && boxes[n + 5] >= box.minZ;
+	}
+
+	/**
+	 * Takes a node from the free list, growing the node arrays if there are none left.
+	 *
+	 * @return The index of the new node.
+	 */
+	private int allocateNode()
+	{
+		if (freeList == NULL)
+		{
+			grow(capacity * 2);
+		}
+		int node = freeList;
+		freeList = parent[node];
+		parent[node] = NULL;
+		child1[node] = NULL;
+		child2[node] = NULL;
+		height[node] = 0;
+		return node;
+	}
+
+	/**
+	 * Returns the node to the free list.
+	 *
+	 * @param node The node to free.
+	 */
+	private void freeNode(int node)
+	{
+		parent[node] = freeList;
+		height[node] = -1;
+		leafProxy[node] = null;
+		freeList = node;
+	}
+
+	/**
+	 * Grows the node arrays to the new capacity, adding the new nodes to the free list.
+	 *
+	 * @param newCapacity The new number of nodes.
+	 */
+	private void grow(int newCapacity)
+	{
+		boxes = boxes == null ? new float[6 * newCapacity] : Arrays.copyOf(boxes, 6 * newCapacity);
+		parent = parent == null ? new int[newCapacity] : Arrays.copyOf(parent, newCapacity);
+		child1 = child1 == null ? new int[newCapacity] : Arrays.copyOf(child1, newCapacity);
+		child2 = child2 == null ? new int[newCapacity] : Arrays.copyOf(child2, newCapacity);
+		height = height == null ? new int[newCapacity] : Arrays.copyOf(height, newCapacity);
+		leafProxy = leafProxy == null ? new Proxy[newCapacity] : Arrays.copyOf(leafProxy, newCapacity);
+		for (int i = newCapacity - 1; i >= capacity; i--)
+		{
+			parent[i] = freeList;
+			height[i] = -1;
+			freeList = i;
+		}
+		capacity = newCapacity;
+	}
+
+	/**
+	 * An entity's entry in the tree.
+	 */
+	private static class Proxy
+	{
+		private Entity entity;
+		private BoundingBox box;
+		private int node;
+		private int index;
+		private int frame;
+	}
+}
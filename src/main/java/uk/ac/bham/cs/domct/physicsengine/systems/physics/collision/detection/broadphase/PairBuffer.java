@@ -0,0 +1,105 @@
+package uk.ac.bham.cs.domct.physicsengine.systems.physics.collision.detection.broadphase;
+
+import java.util.Arrays;
+
+import uk.ac.bham.cs.domct.physicsengine.entity.Entity;
+
+/**
+ * A growable buffer of entity pairs found by a broad phase. The buffer is kept between
+ * frames and cleared rather than reallocated, so once it has grown to the number of pairs
+ * in a scene no more memory is allocated.
+ *
+ * @author Dominic Cogan-Tucker
+ *
+ */
+public class PairBuffer
+{
+	/**
+	 * The first and second entity of each pair.
+	 */
+	private Entity[] a, b;
+
+	/**
+	 * The number of pairs in the buffer.
+	 */
+	private int size = 0;
+
+	/**
+	 * Constructs an empty pair buffer.
+	 */
+	public PairBuffer()
+	{
+		this(64);
+	}
+
+	/**
+	 * Constructs an empty pair buffer with room for the given number of pairs.
+	 *
+	 * @param capacity The initial capacity of the buffer.
+	 */
+	public PairBuffer(int capacity)
+	{
+		a = new Entity[Math.max(capacity, 1)];
+		b = new Entity[Math.max(capacity, 1)];
+	}
+
+	/**
+	 * Adds the pair of entities to the buffer.
+	 *
+	 * @param first The first entity of the pair.
+	 * @param second The second entity of the pair.
+	 */
+	public void add(Entity first, Entity second)
+	{
+		if (size == a.length)
+		{
+			a = Arrays.copyOf(a, size * 2);
+			b = Arrays.copyOf(b, size * 2);
+		}
+		a[size] = first;
+		b[size] = second;
+		size++;
+	}
+
+	/**
+	 * Returns the first entity of the pair at the given index.
+	 *
+	 * @param index The index of the pair.
+	 * @return The first entity of the pair.
+	 */
+	public Entity getEntityA(int index)
+	{
+		return a[index];
+	}
+
+	/**
+	 * Returns the second entity of the pair at the given index.
+	 *
+	 * @param index The index of the pair.
+	 * @return The second entity of the pair.
+	 */
+	public Entity getEntityB(int index)
+	{
+		return b[index];
+	}
+
+	/**
+	 * Returns the number of pairs in the buffer.
+	 *
+	 * @return The number of pairs.
+	 */
+	public int size()
+	{
+		return size;
+	}
+
+	/**
+	 * Removes all pairs from the buffer.
+	 */
+	public void clear()
+	{
+		Arrays.fill(a, 0, size, null);
+		Arrays.fill(b, 0, size, null);
+		size = 0;
+	}
+}
@@ -0,0 +1,277 @@
+package uk.ac.bham.cs.domct.physicsengine.systems.physics.collision.detection.broadphase;
+
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+import java.util.concurrent.RecursiveAction;
+
+/**
+ * Sweep and prune broad phase that finds pairs on several threads. The endpoints are
+ * kept sorted on one thread as in the single threaded version, after which the entities
+ * are listed in order of the start of their interval. Each entity only needs testing
+ * against the entities after it in that list that start before it ends, so the list is
+ * split into chunks that are swept in parallel on a fork/join pool.
+ * <p>
+ * Every chunk writes its pairs into its own buffer, and the buffers are merged in chunk
+ * order, so the pairs found are in the same order whatever the number of threads.
+ * <p>
+ * The pool is either given by the caller, who then owns it, or created by the broad
+ * phase, in which case it is shut down when the broad phase is closed.
+ *
+ * @author Dominic Cogan-Tucker
+ *
+ */
+public class ParallelSweepAndPrune extends SweepAndPrune
+{
+	/**
+	 * The number of chunks per thread, more chunks balancing uneven work at the cost
+	 * of more tasks.
+	 */
+	private static final int CHUNKS_PER_THREAD = 4;
+
+	/**
+	 * The number of entities below which the pairs are found on the calling thread.
+	 */
+	private static final int PARALLEL_THRESHOLD = 1024;
+
+	/**
+	 * The pool the chunks are swept on, and whether it was created by this broad phase.
+	 */
+	private final ForkJoinPool pool;
+	private final boolean ownsPool;
+
+	/**
+	 * The chunks of the list, each with its own pair buffer.
+	 */
+	private final Chunk[] chunks;
+
+	/**
+	 * The task that sweeps every chunk.
+	 */
+	private final RecursiveAction sweepChunks = new RecursiveAction()
+	{
+		private static final long serialVersionUID = 1L;
+
+		@Override
+		protected void compute()
+		{
+			ForkJoinTask.invokeAll(chunks);
+		}
+	};
+
+	/**
+	 * The proxy indices in order of the start of their interval, and the start and end
+	 * of each interval along the sorted axis.
+	 */
+	private int[] order = new int[16];
+	private float[] starts = new float[16];
+	private float[] ends = new float[16];
+
+	/**
+	 * Constructs a parallel sweep and prune broad phase sorting along the x axis, with
+	 * a pool of its own.
+	 *
+	 * @param parallelism The number of threads to find pairs on.
+	 * @throws IllegalArgumentException if the parallelism is less than 1.
+	 */
+	public ParallelSweepAndPrune(int parallelism)
+	{
+		this(0, parallelism);
+	}
+
+	/**
+	 * Constructs a parallel sweep and prune broad phase sorting along the given axis,
+	 * with a pool of its own.
+	 *
+	 * @param axis The axis to sort along, 0, 1 and 2 being x, y and z.
+	 * @param parallelism The number of threads to find pairs on.
+	 * @throws IllegalArgumentException if the parallelism is less than 1.
+	 */
+	public ParallelSweepAndPrune(int axis, int parallelism)
+	{
+		this(axis, newPool(parallelism), true);
+	}
+
+	/**
+	 * Constructs a parallel sweep and prune broad phase sorting along the x axis, finding
+	 * pairs on the given pool. The pool is not shut down when the broad phase is closed.
+	 *
+	 * @param pool The pool to find pairs on.
+	 */
+	public ParallelSweepAndPrune(ForkJoinPool pool)
+	{
+		this(0, pool);
+	}
+
+	/**
+	 * Constructs a parallel sweep and prune broad phase sorting along the given axis,
+	 * finding pairs on the given pool. The pool is not shut down when the broad phase
+	 * is closed.
+	 *
+	 * @param axis The axis to sort along, 0, 1 and 2 being x, y and z.
+	 * @param pool The pool to find pairs on.
+	 */
+	public ParallelSweepAndPrune(int axis, ForkJoinPool pool)
+	{
+		this(axis, pool, false);
+	}
+
+	/**
+	 * Constructs a parallel sweep and prune broad phase finding pairs on the given pool.
+	 *
+	 * @param axis The axis to sort along, 0, 1 and 2 being x, y and z.
+	 * @param pool The pool to find pairs on.
+	 * @param ownsPool Whether the pool is shut down when the broad phase is closed.
+	 */
+	private ParallelSweepAndPrune(int axis, ForkJoinPool pool, boolean ownsPool)
+	{
+		super(axis);
+		this.pool = pool;
+		this.ownsPool = ownsPool;
+		chunks = new Chunk[pool.getParallelism() * CHUNKS_PER_THREAD];
+		for (int i = 0; i < chunks.length; i++)
+		{
+			chunks[i] = new Chunk();
+		}
+	}
+
+	/**
+	 * Creates the pool of a broad phase with the given number of threads.
+	 *
+	 * @param parallelism The number of threads.
+	 * @return The pool.
+	 * @throws IllegalArgumentException if the parallelism is less than 1.
+	 */
+	private static ForkJoinPool newPool(int parallelism)
+	{
+		if (parallelism < 1)
+		{
+			throw new IllegalArgumentException("Parallelism must be at least 1.");
+		}
+		return new ForkJoinPool(parallelism);
+	}
+
+	/**
+	 * Returns the number of threads pairs are found on.
+	 *
+	 * @return The parallelism of the pool.
+	 */
+	public int getParallelism()
+	{
+		return pool.getParallelism();
+	}
+
+	/**
+	 * Shuts down the pool if it was created by this broad phase. Pairs can't be found
+	 * with more entities than the parallel threshold once it has been shut down.
+	 */
+	@Override
+	public void close()
+	{
+		if (ownsPool)
+		{
+			pool.shutdown();
+		}
+	}
+
+	@Override
+	public void findPairs(PairBuffer pairs)
+	{
+		orderByStart();
+		if (proxyCount < PARALLEL_THRESHOLD)
+		{
+			sweep(0, proxyCount, pairs);
+			return;
+		}
+
+		// Split the list into chunks of an equal number of entities.
+		for (int i = 0; i < chunks.length; i++)
+		{
+			Chunk chunk = chunks[i];
+			chunk.reinitialize();
+			chunk.start = (int) ((long) proxyCount * i / chunks.length);
+			chunk.end = (int) ((long) proxyCount * (i + 1) / chunks.length);
+			chunk.pairs.clear();
+		}
+		sweepChunks.reinitialize();
+		pool.invoke(sweepChunks);
+
+		for (Chunk chunk : chunks)
+		{
+			for (int i = 0; i < chunk.pairs.size(); i++)
+			{
+				pairs.add(chunk.pairs.getEntityA(i), chunk.pairs.getEntityB(i));
+			}
+			chunk.pairs.clear();
+		}
+	}
+
+	/**
+	 * Lists the proxies in order of the start of their interval, as read from the
+	 * sorted endpoints.
+	 */
+	private void orderByStart()
+	{
+		if (order.length < proxyCount)
+		{
+			order = new int[proxyArray.length];
+			starts = new float[proxyArray.length];
+			ends = new float[proxyArray.length];
+		}
+		int count = 0;
+		for (int i = 0; i < endpointCount; i++)
+		{
+			int endpoint = endpoints[i];
+			if ((endpoint & MAX_FLAG) == 0)
+			{
+				BoundingBox box = proxyArray[endpoint].box;
+				order[count] = endpoint;
+				starts[count] = min(box);
+				ends[count] = max(box);
+				count++;
+			}
+		}
+	}
+
+	/**
+	 * Tests every entity in the given range of the ordered list against the entities
+	 * after it whose interval starts before its interval ends.
+	 *
+	 * @param from The first position in the list to test.
+	 * @param to The position after the last to test.
+	 * @param pairs The buffer to add the pairs to.
+	 */
+	private void sweep(int from, int to, PairBuffer pairs)
+	{
+		for (int i = from; i < to; i++)
+		{
+			Proxy p = proxyArray[order[i]];
+			float end = ends[i];
+			for (int j = i + 1; j < proxyCount && starts[j] <= end; j++)
+			{
+				Proxy q = proxyArray[order[j]];
+				if (p.box.isIntersecting(q.box))
+				{
+					pairs.add(p.entity, q.entity);
+				}
+			}
+		}
+	}
+
+	/**
+	 * A range of the ordered list swept as one task.
+	 */
+	private class Chunk extends RecursiveAction
+	{
+		private static final long serialVersionUID = 1L;
+
+		private final PairBuffer pairs = new PairBuffer();
+		private int start;
+		private int end;
+
+		@Override
+		protected void compute()
+		{
+			sweep(start, end, pairs);
+		}
+	}
+}
@@ -0,0 +1,373 @@
+package uk.ac.bham.cs.domct.physicsengine.systems.physics.collision.detection.broadphase;
+
+import java.util.Arrays;
+import java.util.List;
+
+import uk.ac.bham.cs.domct.physicsengine.component.Collidable;
+import uk.ac.bham.cs.domct.physicsengine.entity.Entity;
+
+/**
+ * Uniform grid broad phase, best suited to scenes of many entities of a similar size. Each
+ * frame every entity is inserted into the cubic cells its bounding box covers, and only the
+ * entities sharing a cell are tested against each other. Cells are stored in an open
+ * addressing hash table keyed on their packed integer coordinates, with the entities of each
+ * cell kept as a linked list in primitive arrays, so the grid allocates nothing once it has
+ * grown to the size of the scene.
+ * <p>
+ * Entities bigger than a cell, such as planes, are inserted into every cell they cover. An
+ * entity that would cover more than a set number of cells is instead tested against every
+ * other entity, so that one huge entity can't fill the table.
+ *
+ * @author Dominic Cogan-Tucker
+ *
+ */
+public class SpatialHashGrid implements BroadPhase
+{
+	private static final long EMPTY = Long.MIN_VALUE;
+	private static final int COORD_BITS = 21;
+	private static final long COORD_MASK = (1L << COORD_BITS) - 1;
+	private static final int NONE = -1;
+
+	/**
+	 * The side length of a cell and its inverse.
+	 */
+	private final float cellSize;
+	private final float inverseCellSize;
+
+	/**
+	 * The maximum number of cells an entity is inserted into.
+	 */
+	private final int maxCellsPerEntity;
+
+	/**
+	 * The entities in the grid this frame and their bounding boxes.
+	 */
+	private Entity[] entities = new Entity[16];
+	private BoundingBox[] boxes = new BoundingBox[16];
+	private int entityCount = 0;
+
+	/**
+	 * The entities too big to be inserted into the grid.
+	 */
+	private int[] oversized = new int[16];
+	private boolean[] isOversized = new boolean[16];
+	private int oversizedCount = 0;
+
+	/**
+	 * The hash table of cells. Each slot holds the packed coordinates of a cell and the
+	 * first entry in that cell.
+	 */
+	private long[] keys;
+	private int[] heads;
+	private int mask;
+
+	/**
+	 * The slots used this frame, in the order they were first used.
+	 */
+	private int[] usedSlots;
+	private int usedCount = 0;
+
+	/**
+	 * The entries of every cell, each holding the index of an entity and the next entry
+	 * in the same cell.
+	 */
+	private int[] entryEntity = new int[64];
+	private int[] entryNext = new int[64];
+	private int entryCount = 0;
+
+	/**
+	 * Constructs a grid with a cell size of 2.
+	 */
+	public SpatialHashGrid()
+	{
+		this(2f);
+	}
+
+	/**
+	 * Constructs a grid with the given cell size. The cell size should be around the size
+	 * of the largest of the similarly sized entities in the scene.
+	 *
+	 * @param cellSize The side length of each cell.
+	 */
+	public SpatialHashGrid(float cellSize)
+	{
+		this(cellSize, 4096);
+	}
+
+	/**
+	 * Constructs a grid with the given cell size, inserting entities into at most the
+	 * given number of cells.
+	 *
+	 * @param cellSize The side length of each cell.
+	 * @param maxCellsPerEntity The maximum number of cells an entity is inserted into.
+	 */
+	public SpatialHashGrid(float cellSize, int maxCellsPerEntity)
+	{
+		if (!(cellSize > 0))
+		{
+			throw new IllegalArgumentException("Cell size must be greater than 0.");
+		}
+		this.cellSize = cellSize;
+		this.inverseCellSize = 1f / cellSize;
+		this.maxCellsPerEntity = maxCellsPerEntity;
+		allocateTable(64);
+	}
+
+	/**
+	 * Returns the side length of each cell.
+	 *
+	 * @return The cell size.
+	 */
+	public float getCellSize()
+	{
+		return cellSize;
+	}
+
+	@Override
+	public void update(List<Entity> entities)
+	{
+		clear();
+		if (this.entities.length < entities.size())
+		{
+			this.entities = new Entity[entities.size()];
+			boxes = new BoundingBox[entities.size()];
+			oversized = new int[entities.size()];
+			isOversized = new boolean[entities.size()];
+		}
+		for (int i = 0; i < entities.size(); i++)
+		{
+			Entity e = entities.get(i);
+			insert(e, e.getComponent(Collidable.class).bBox);
+		}
+	}
+
+	@Override
+	public void findPairs(PairBuffer pairs)
+	{
+		// Test every pair of entries sharing a cell.
+		for (int u = 0; u < usedCount; u++)
+		{
+			int slot = usedSlots[u];
+			long cell = keys[slot];
+			for (int i = heads[slot]; i != NONE; i = entryNext[i])
+			{
+				BoundingBox a = boxes[entryEntity[i]];
+				for (int j = entryNext[i]; j != NONE; j = entryNext[j])
+				{
+					BoundingBox b = boxes[entryEntity[j]];
+					// Only add the pair in the first cell both boxes share, so each pair is found once.
+					if (a.isIntersecting(b) && firstSharedCell(a, b) == cell)
+					{
+						pairs.add(entities[entryEntity[j]], entities[entryEntity[i]]);
+					}
+				}
+			}
+		}
+
+		// Test the oversized entities against every other entity.
+		for (int o = 0; o < oversizedCount; o++)
+		{
+			int i = oversized[o];
+			for (int j = 0; j < entityCount; j++)
+			{
+				if (j == i || (isOversized[j] && j < i))
+				{
+					continue;
+				}
+				if (boxes[i].isIntersecting(boxes[j]))
+				{
+					pairs.add(entities[i], entities[j]);
+				}
+			}
+		}
+	}
+
+	/**
+	 * Inserts the entity into every cell its bounding box covers.
+	 *
+	 * @param e The entity.
+	 * @param box The entity's bounding box.
+	 */
+	private void insert(Entity e, BoundingBox box)
+	{
+		int index = entityCount++;
+		entities[index] = e;
+		boxes[index] = box;
+		isOversized[index] = false;
+
+		int minX = cell(box.minX), maxX = cell(box.maxX);
+		int minY = cell(box.minY), maxY = cell(box.maxY);
+		int minZ = cell(box.minZ), maxZ = cell(box.maxZ);
+		long cells = ((long) maxX - minX + 1) * ((long) maxY - minY + 1) * ((long) maxZ - minZ + 1);
+		if (cells > maxCellsPerEntity || cells <= 0)
+		{
+			oversized[oversizedCount++] = index;
+			isOversized[index] = true;
+			return;
+		}
+		for (int x = minX; x <= maxX; x++)
+		{
+			for (int y = minY; y <= maxY; y++)
+			{
+				for (int z = minZ; z <= maxZ; z++)
+				{
+					addEntry(slot(pack(x, y, z)), index);
+				}
+			}
+		}
+	}
+
+	/**
+	 * Adds an entry for the entity to the front of the cell at the given slot.
+	 *
+	 * @param slot The slot of the cell.
+	 * @param index The index of the entity.
+	 */
+	private void addEntry(int slot, int index)
+	{
+		if (entryCount == entryEntity.length)
+		{
+			entryEntity = Arrays.copyOf(entryEntity, entryCount * 2);
+			entryNext = Arrays.copyOf(entryNext, entryCount * 2);
+		}
+		entryEntity[entryCount] = index;
+		entryNext[entryCount] = heads[slot];
+		heads[slot] = entryCount++;
+	}
+
+	/**
+	 * Returns the slot of the cell with the given key, claiming an empty slot if the
+	 * cell isn't in the table yet.
+	 *
+	 * @param key The packed coordinates of the cell.
+	 * @return The slot of the cell.
+	 */
+	private int slot(long key)
+	{
+		if (2 * (usedCount + 1) > keys.length)
+		{
+			rehash(keys.length * 2);
+		}
+		int slot = hash(key) & mask;
+		while (keys[slot] != EMPTY)
+		{
+			if (keys[slot] == key)
+			{
+				return slot;
+			}
+			slot = (slot + 1) & mask;
+		}
+		keys[slot] = key;
+		heads[slot] = NONE;
+		usedSlots[usedCount++] = slot;
+		return slot;
+	}
+
+	/**
+	 * Moves every used cell into a larger table.
+	 *
+	 * @param capacity The new number of slots, a power of two.
+	 */
+	private void rehash(int capacity)
+	{
+		long[] oldKeys = keys;
+		int[] oldHeads = heads;
+		int[] oldUsed = usedSlots;
+		int oldUsedCount = usedCount;
+		allocateTable(capacity);
+		for (int u = 0; u < oldUsedCount; u++)
+		{
+			long key = oldKeys[oldUsed[u]];
+			int slot = hash(key) & mask;
+			while (keys[slot] != EMPTY)
+			{
+				slot = (slot + 1) & mask;
+			}
+			keys[slot] = key;
+			heads[slot] = oldHeads[oldUsed[u]];
+			usedSlots[usedCount++] = slot;
+		}
+	}
+
+	/**
+	 * Allocates an empty table with the given number of slots.
+	 *
+	 * @param capacity The number of slots, a power of two.
+	 */
+	private void allocateTable(int capacity)
+	{
+		keys = new long[capacity];
+		Arrays.fill(keys, EMPTY);
+		heads = new int[capacity];
+		usedSlots = new int[capacity / 2 + 1];
+		usedCount = 0;
+		mask = capacity - 1;
+	}
+
+	/**
+	 * Empties the grid, only resetting the slots that were used.
+	 */
+	private void clear()
+	{
+		for (int u = 0; u < usedCount; u++)
+		{
+			keys[usedSlots[u]] = EMPTY;
+		}
+		usedCount = 0;
+		entryCount = 0;
+		Arrays.fill(entities, 0, entityCount, null);
+		Arrays.fill(boxes, 0, entityCount, null);
+		entityCount = 0;
+		oversizedCount = 0;
+	}
+
+	/**
+	 * Returns the key of the first cell that both of the boxes cover, being the cell
+	 * holding the maximum of their minimum corners.
+	 *
+	 * @param a The first box.
+	 * @param b The second box.
+	 * @return The packed coordinates of the cell.
+	 */
+	private long firstSharedCell(BoundingBox a, BoundingBox b)
+	{
+		return pack(cell(Math.max(a.minX, b.minX)), cell(Math.max(a.minY, b.minY)),
+				cell(Math.max(a.minZ, b.minZ)));
+	}
+
+	/**
+	 * Returns the cell coordinate of the given value.
+	 *
+	 * @param value The position along an axis.
+	 * @return The coordinate of the cell holding that position.
+	 */
+	private int cell(float value)
+	{
+		return (int) Math.floor(value * inverseCellSize);
+	}
+
+	/**
+	 * Packs the three cell coordinates into one key.
+	 *
+	 * @param x The x coordinate of the cell.
+	 * @param y The y coordinate of the cell.
+	 * @param z The z coordinate of the cell.
+	 * @return The key of the cell.
+	 */
+	private static long pack(int x, int y, int z)
+	{
+		return ((x & COORD_MASK) << (2 * COORD_BITS)) | ((y & COORD_MASK) << COORD_BITS) | (z & COORD_MASK);
+	}
+
+	/**
+	 * Mixes the bits of the key to spread neighbouring cells across the table.
+	 *
+	 * @param key The key of the cell.
+	 * @return The hash of the key.
+	 */
+	private static int hash(long key)
+	{
+		key *= 0x9E3779B97F4A7C15L;
+		return (int) (key ^ (key >>> 32));
+	}
+}
@@ -0,0 +1,326 @@
+package uk.ac.bham.cs.domct.physicsengine.systems.physics.collision.detection.broadphase;
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+
+import uk.ac.bham.cs.domct.physicsengine.component.Collidable;
+import uk.ac.bham.cs.domct.physicsengine.entity.Entity;
+
+/**
+ * Incremental sweep and prune broad phase. The start and end points of every entity's
+ * bounding box along one axis are kept in a sorted list between frames. As entities only
+ * move a small amount each frame the list is almost sorted at the start of every frame, so
+ * an insertion sort restores the order in close to linear time. Sweeping along the sorted
+ * list then only tests the entities whose intervals overlap on that axis.
+ *
+ * @author Dominic Cogan-Tucker
+ *
+ */
+public class SweepAndPrune implements BroadPhase
+{
+	/**
+	 * Flag set on the endpoints that are the end of an interval.
+	 */
+	protected static final int MAX_FLAG = 1 << 30;
+
+	/**
+	 * Mask to get the proxy index of an endpoint.
+	 */
+	protected static final int INDEX_MASK = MAX_FLAG - 1;
+
+	/**
+	 * The number of entities that can be added in a frame before the endpoints are
+	 * fully sorted rather than insertion sorted.
+	 */
+	private static final int INSERTION_LIMIT = 64;
+
+	/**
+	 * The axis the endpoints are sorted along, 0, 1 and 2 being x, y and z.
+	 */
+	private final int axis;
+
+	/**
+	 * The proxy of each entity in the broad phase.
+	 */
+	private Map<Entity, Proxy> proxies = new HashMap<>();
+
+	/**
+	 * The proxies stored by index, as referenced by the endpoints.
+	 */
+	protected Proxy[] proxyArray = new Proxy[16];
+	protected int proxyCount = 0;
+
+	/**
+	 * The sorted endpoints and the value of each endpoint along the axis.
+	 */
+	protected int[] endpoints = new int[32];
+	private float[] values = new float[32];
+	protected int endpointCount = 0;
+
+	/**
+	 * The proxy indices of the intervals open during a sweep.
+	 */
+	private int[] active = new int[16];
+
+	/**
+	 * Scratch space used when fully sorting the endpoints.
+	 */
+	private long[] sortKeys = new long[0];
+
+	/**
+	 * The current frame, used to find entities that have been removed.
+	 */
+	private int frame = 0;
+
+	/**
+	 * Constructs a sweep and prune broad phase sorting along the x axis.
+	 */
+	public SweepAndPrune()
+	{
+		this(0);
+	}
+
+	/**
+	 * Constructs a sweep and prune broad phase sorting along the given axis.
+	 *
+	 * @param axis The axis to sort along, 0, 1 and 2 being x, y and z.
+	 */
+	public SweepAndPrune(int axis)
+	{
+		if (axis < 0 || axis > 2)
+		{
+			throw new IllegalArgumentException("Axis must be 0, 1 or 2.");
+		}
+		this.axis = axis;
+	}
+
+	@Override
+	public void update(List<Entity> entities)
+	{
+		frame++;
+		int added = 0;
+		for (int i = 0; i < entities.size(); i++)
+		{
+			Entity e = entities.get(i);
+			Proxy p = proxies.get(e);
+			if (p == null)
+			{
+				p = addProxy(e);
+				added++;
+			}
+			p.frame = frame;
+		}
+
+		boolean rebuild = added > INSERTION_LIMIT;
+		if (proxies.size() != entities.size())
+		{
+			removeStaleProxies();
+			rebuild = true;
+		}
+
+		if (rebuild)
+		{
+			rebuildEndpoints();
+		}
+		else
+		{
+			insertionSort();
+		}
+	}
+
+	@Override
+	public void findPairs(PairBuffer pairs)
+	{
+		int activeCount = 0;
+		for (int i = 0; i < endpointCount; i++)
+		{
+			int endpoint = endpoints[i];
+			Proxy p = proxyArray[endpoint & INDEX_MASK];
+			if ((endpoint & MAX_FLAG) != 0)
+			{
+				// The interval has ended so swap it out of the active list.
+				int last = active[--activeCount];
+				active[p.activeSlot] = last;
+				proxyArray[last].activeSlot = p.activeSlot;
+			}
+			else
+			{
+				// Every open interval overlaps this one on the sorted axis.
+				for (int j = 0; j < activeCount; j++)
+				{
+					Proxy q = proxyArray[active[j]];
+					if (p.box.isIntersecting(q.box))
+					{
+						pairs.add(q.entity, p.entity);
+					}
+				}
+				p.activeSlot = activeCount;
+				active[activeCount++] = endpoint & INDEX_MASK;
+			}
+		}
+	}
+
+	/**
+	 * Adds a proxy for the given entity, appending its endpoints to the end of the list.
+	 *
+	 * @param e The entity to add.
+	 * @return The proxy of the entity.
+	 */
+	private Proxy addProxy(Entity e)
+	{
+		Proxy p = new Proxy();
+		p.entity = e;
+		p.box = e.getComponent(Collidable.class).bBox;
+		p.index = proxyCount;
+		proxies.put(e, p);
+
+		if (proxyCount == proxyArray.length)
+		{
+			proxyArray = Arrays.copyOf(proxyArray, proxyCount * 2);
+			active = Arrays.copyOf(active, proxyCount * 2);
+			endpoints = Arrays.copyOf(endpoints, proxyCount * 4);
+			values = Arrays.copyOf(values, proxyCount * 4);
+		}
+		proxyArray[proxyCount++] = p;
+		endpoints[endpointCount++] = p.index;
+		endpoints[endpointCount++] = p.index | MAX_FLAG;
+		return p;
+	}
+
+	/**
+	 * Removes the proxies of all entities that weren't updated this frame.
+	 */
+	private void removeStaleProxies()
+	{
+		for (Iterator<Proxy> i = proxies.values().iterator(); i.hasNext();)
+		{
+			Proxy p = i.next();
+			if (p.frame != frame)
+			{
+				i.remove();
+				Proxy last = proxyArray[--proxyCount];
+				proxyArray[p.index] = last;
+				last.index = p.index;
+				proxyArray[proxyCount] = null;
+			}
+		}
+	}
+
+	/**
+	 * Recreates the endpoints of every proxy and fully sorts them. Used when the proxies
+	 * have changed too much for an insertion sort to be quick.
+	 */
+	private void rebuildEndpoints()
+	{
+		endpointCount = 2 * proxyCount;
+		if (sortKeys.length < endpointCount)
+		{
+			sortKeys = new long[endpoints.length];
+		}
+		for (int i = 0; i < proxyCount; i++)
+		{
+			Proxy p = proxyArray[i];
+			sortKeys[2 * i] = sortKey(min(p.box), i);
+			sortKeys[2 * i + 1] = sortKey(max(p.box), i | MAX_FLAG);
+		}
+		Arrays.sort(sortKeys, 0, endpointCount);
+		for (int i = 0; i < endpointCount; i++)
+		{
+			endpoints[i] = (int) sortKeys[i];
+			values[i] = value(endpoints[i]);
+		}
+	}
+
+	/**
+	 * Updates the value of every endpoint and restores the sorted order with an
+	 * insertion sort. Starts of intervals are placed before ends of intervals with the
+	 * same value so that touching boxes are still found as overlapping.
+	 */
+	private void insertionSort()
+	{
+		for (int i = 0; i < endpointCount; i++)
+		{
+			values[i] = value(endpoints[i]);
+		}
+		for (int i = 1; i < endpointCount; i++)
+		{
+			int endpoint = endpoints[i];
+			float value = values[i];
+			int j = i - 1;
+			while (j >= 0 && (values[j] > value
+					|| (values[j] == value && (endpoints[j] & MAX_FLAG) > (endpoint & MAX_FLAG))))
+			{
+				endpoints[j + 1] = endpoints[j];
+				values[j + 1] = values[j];
+				j--;
+			}
+			endpoints[j + 1] = endpoint;
+			values[j + 1] = value;
+		}
+	}
+
+	/**
+	 * Returns the value of the given endpoint along the sorted axis.
+	 *
+	 * @param endpoint The endpoint.
+	 * @return The value of the endpoint.
+	 */
+	private float value(int endpoint)
+	{
+		BoundingBox box = proxyArray[endpoint & INDEX_MASK].box;
+		return (endpoint & MAX_FLAG) != 0 ? max(box) : min(box);
+	}
+
+	/**
+	 * Returns the minimum value of the box along the sorted axis.
+	 *
+	 * @param box The bounding box.
+	 * @return The minimum value along the axis.
+	 */
+	protected float min(BoundingBox box)
+	{
+		return axis == 0 ? box.minX : axis == 1 ? box.minY : box.minZ;
+	}
+
+	/**
+	 * Returns the maximum value of the box along the sorted axis.
+	 *
+	 * @param box The bounding box.
+	 * @return The maximum value along the axis.
+	 */
+	protected float max(BoundingBox box)
+	{
+		return axis == 0 ? box.maxX : axis == 1 ? box.maxY : box.maxZ;
+	}
+
+	/**
+	 * Creates a key that sorts endpoints by their value and then places the starts of
+	 * intervals before the ends.
+	 *
+	 * @param value The value of the endpoint.
+	 * @param endpoint The endpoint.
+	 * @return The sort key of the endpoint.
+	 */
+	private static long sortKey(float value, int endpoint)
+	{
+		int bits = Float.floatToIntBits(value);
+		// Flip the bits so the ints order the same way as the floats.
+		bits ^= (bits >> 31) & 0x7FFFFFFF;
+		return ((long) bits << 32) | (endpoint & 0xFFFFFFFFL);
+	}
+
+	/**
+	 * An entity's entry in the broad phase.
+	 */
+	protected static class Proxy
+	{
+		protected Entity entity;
+		protected BoundingBox box;
+		protected int index;
+		private int activeSlot;
+		private int frame;
+	}
+}
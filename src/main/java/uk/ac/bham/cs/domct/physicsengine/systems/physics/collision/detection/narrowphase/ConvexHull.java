@@ -1,22 +1,42 @@
 package uk.ac.bham.cs.domct.physicsengine.systems.physics.collision.detection.narrowphase;
 
-import java.util.ArrayList;
-import java.util.List;
+import java.util.Collections;
+import java.util.Map;
+import java.util.WeakHashMap;
 
 import org.joml.Vector3f;
-import org.joml.Vector4f;
 
 import uk.ac.bham.cs.domct.physicsengine.component.Mesh;
-import uk.ac.bham.cs.domct.physicsengine.component.State;
-import uk.ac.bham.cs.domct.physicsengine.entity.CollidablePlane;
+import uk.ac.bham.cs.domct.physicsengine.component.Transform;
 import uk.ac.bham.cs.domct.physicsengine.entity.Entity;
-import uk.ac.bham.cs.domct.physicsengine.entity.MovableCollidableBall;
-import uk.ac.bham.cs.domct.physicsengine.utils.MatrixUtils;
 
 /**
  * Stores the mesh data for the entity in a form to be used in collision detection.
- * The Convex Hull stores a list of vertices and the index ordering, where these
- * vertices store adjacency data for the hull.
+ * The Convex Hull holds the corners of the convex hull of the mesh's vertices, built by
+ * a {@link HullBuilder}, along with the adjacency of each.
+ * <p>
+ * The vertices of a mesh's hull are in local space, so they are built once and shared
+ * by every hull of the same mesh, with each hull only holding its entity to transform
+ * the support points by. Creating a hull from a mesh that has been seen before is then
+ * a lookup, and the memory used by hulls grows with the number of distinct meshes in
+ * use rather than the number of entities. As the data is never changed, hulls of the
+ * same mesh in different worlds share it too. The data also holds the bounds the
+ * bounding boxes of the mesh's entities are made from, so once the entities of a mesh
+ * are gone, along with anything else holding the mesh, its hull and bounds are dropped
+ * together.
+ * <p>
+ * The search for a support point climbs from the support point last found in the same
+ * octant of local directions for the same pair, which for a pair whose directions change
+ * little from one query to the next is usually the answer or a step from it. The
+ * starting points are kept by the pair rather than the hull, since rounding can stop a
+ * climb at a vertex that is only nearly as far as the furthest, so which vertex is found
+ * depends on where the search starts. A pair is only tested on one thread at a time, so
+ * the points found for it don't depend on the order in which pairs are tested or how
+ * many threads test them, and the hull itself holds no state for a search.
+ * <p>
+ * Shapes whose support points can be found directly, such as a sphere, extend the hull
+ * without giving it a mesh, overriding how the support point is generated so that
+ * their collision shape is kept separate from the mesh they are rendered with.
  * 
  * @author Dominic Cogan-Tucker
  *
@@ -26,18 +46,20 @@ public class ConvexHull
 	/**
 	 * The entity this hull belongs to.
 	 */
-	private Entity entity;
+	protected final Entity entity;
 	
 	/**
-	 * The hulls vertices.
+	 * The vertices of each mesh's hull, built the first time a hull of the mesh is
+	 * created. The meshes are held weakly, and this is the only cache of the engine
+	 * keyed on them, so a mesh's hull is dropped once nothing else uses the mesh.
 	 */
-	private List<Vertex> vertices = new ArrayList<>();
-	private List<Vertex> tempList = new ArrayList<>();
+	private static final Map<Mesh, HullData> meshHulls = Collections.synchronizedMap(new WeakHashMap<>());
 	
 	/**
-	 * The index ordering of the vertices.
+	 * The hulls vertices in local space, shared with every hull of the same mesh and
+	 * never changed once built, or null if the hull has no mesh.
 	 */
-	private int[] indicies;
+	private final HullData data;
 	
 	/**
 	 * Constructs a convex hull for the given entity.
@@ -46,164 +68,90 @@ public class ConvexHull
 	 */
 	public ConvexHull(Entity entity)
 	{
-		this.entity = entity;
-		processVertices();
-		updateIndexData();
-		setAdjacencyData();
+		this(entity, entity.getComponent(Mesh.class));
 	}
 	
 	/**
-	 * Generates a support point in the given direction for the hull.
-	 * 
-	 * @param direction The direction to generate the support point in.
+	 * Constructs a convex hull for the given entity from a mesh. A hull given no mesh
+	 * has no vertices, and must be extended to generate its support points.
 	 * 
-	 * @return The support point of the hull in the given direction.
+	 * @param entity The entity the hull belongs to.
+	 * @param mesh The mesh to generate the hull from, or null.
 	 */
-	protected Vector3f generateSupportPoint(Vector3f direction)
+	protected ConvexHull(Entity entity, Mesh mesh)
 	{
-		State state = entity.getComponent(State.class);
-		Vector3f rot = new Vector3f();
-		rot.set(state.rotation);
-		if (!(entity instanceof MovableCollidableBall))
-		{
-			if (!(entity instanceof CollidablePlane))
-			{
-				if (rot.x > 0) rot.x = -rot.x;
-				if (rot.y > 0) rot.y = -rot.y;
-				if (rot.z > 0) rot.z = -rot.z;
-				
-				if (rot.x % 45 == 0 && (rot.x / 45) % 2 != 0) rot.x = -45;
-				if (rot.x % 45 == 0 && (rot.x / 45) % 2 == 0) rot.x = 0;
-				else if (rot.x < -45) rot.x = 45 -(rot.x % 90);
-				if (rot.y % 45 == 0 && (rot.y / 45) % 2 != 0) rot.y = -45;
-				if (rot.y % 45 == 0 && (rot.y / 45) % 2 == 0) rot.x = 0;
-				else if (rot.y < -45) rot.y = 45 - (rot.y % 90);
-				if (rot.z % 45 == 0 && (rot.z / 45) % 2 != 0) rot.z = -45;
-				if (rot.z % 45 == 0 && (rot.z / 45) % 2 == 0) rot.z = 0;
-				else if (rot.z < -45) rot.z = 45 -(rot.z % 90);
-				
-				if (rot.x > 0) rot.x = -rot.x;
-				if (rot.y > 0) rot.y = -rot.y;
-				if (rot.z > 0) rot.z = -rot.z;
-			}
-			direction.rotateX((float) Math.toRadians(-rot.x));
-			direction.rotateY((float) Math.toRadians(-rot.y));
-			direction.rotateZ((float) Math.toRadians(-rot.z));
-			direction.normalize();
-		}
-		
-		Vertex start = vertices.get(0);
-		while (true)
-		{
-			Vertex current = start;
-			float distance = current.toVector3f().dot(direction);
-			List<Integer> adjacent = current.getAdjacent();
-			for (Integer integer : adjacent)
-			{
-				float newDistance = vertices.get(integer).toVector3f().dot(direction);
-				if (newDistance > distance)
-				{
-					current = vertices.get(integer);
-					distance = newDistance;
-				}
-			}
-			if (current.equals(start))
-			{
-				break;
-			}
-			start = current;
-		}
-	
-		Vector4f v4 = new Vector4f(start.toVector3f(), 1)
-				.mul(MatrixUtils.transformMatrix(state.position, 
-						rot, state.scale));
-		return new Vector3f(v4.x, v4.y, v4.z);
+		this.entity = entity;
+		data = mesh == null ? null 
+				: meshHulls.computeIfAbsent(mesh, m -> new HullBuilder().build(m.vertices));
 	}
 	
 	/**
-	 * Processes the vertices of the entity to create a list for the convex hull
-	 * to use.
+	 * Returns the vertices of the hull in local space, shared with every hull of the
+	 * same mesh.
+	 * 
+	 * @return The hull data, or null if the hull has no mesh.
 	 */
-	private void processVertices()
+	public HullData getData()
 	{
-		float[] positions = entity.getComponent(Mesh.class).vertices;
-		
-		for (int i = 0; i < positions.length / 3; i++)
-		{
-			Vertex newVert = new Vertex(positions[3 * i], 
-					positions[3 * i + 1], positions[3 * i + 2]);
-			tempList.add(newVert);
-			boolean alreadyContains = false;
-			for (Vertex existingVert : vertices)
-			{
-				if (newVert.equals(existingVert))
-				{
-					alreadyContains = true;
-					break;
-				}
-			}
-			if (!alreadyContains)
-			{
-				vertices.add(newVert);
-			}
-		}
+		return data;
 	}
 	
 	/**
-	 * Updates the index data for the vertices in the convex hull.
+	 * Generates a support point in the given direction for the hull, writing it
+	 * into the given vector, starting from the vertex given for the direction's octant
+	 * and recording the vertex found in its place. The entity's transform is only read,
+	 * so it must have been updated since the entity last moved.
+	 * 
+	 * @param worldDirection The direction to generate the support point in.
+	 * @param starts The vertex to start from in each octant, or -1 to start from the
+	 * 		furthest vertex along the octant's diagonal, or null to always do so.
+	 * @param offset The position in starts of the first octant's vertex.
+	 * @param dest The vector to hold the support point.
+	 * 
+	 * @return dest, holding the support point of the hull in the given direction.
 	 */
-	private void updateIndexData()
+	protected Vector3f generateSupportPoint(Vector3f worldDirection, int[] starts, int offset, Vector3f dest)
 	{
-		int[] indicies = entity.getComponent(Mesh.class).indices;
+		Transform transform = entity.getComponent(Transform.class);
+		// The support point is found in local space, using dest for the local direction
+		// so that the given direction is left unchanged.
+		Vector3f direction = transform.toLocalDirection(dest.set(worldDirection));
 		
-		this.indicies = new int[indicies.length];
-		for (int i = 0; i < indicies.length; i++)
+		// Climb from vertex to vertex towards the direction until no neighbour is further,
+		// which on a convex hull is the furthest vertex of all.
+		float[] positions = data.positions;
+		int[] offsets = data.offsets;
+		int[] neighbours = data.neighbours;
+		float dx = direction.x, dy = direction.y, dz = direction.z;
+		int octant = HullData.octant(dx, dy, dz);
+		int current = starts == null || starts[offset + octant] == -1 ? data.octants[octant] 
+				: starts[offset + octant];
+		float distance = positions[3 * current] * dx + positions[3 * current + 1] * dy + positions[3 * current + 2] * dz;
+		while (true)
 		{
-			int index = indicies[i];
-			if (index < vertices.size())
-			{
-				this.indicies[i] = index;
-			}
-			else
+			int best = current;
+			for (int i = offsets[current], end = offsets[current + 1]; i < end; i++)
 			{
-				Vertex duplicate = tempList.get(index);
-				for (int j = 0; j < vertices.size(); j++)
+				int next = 3 * neighbours[i];
+				float newDistance = positions[next] * dx + positions[next + 1] * dy + positions[next + 2] * dz;
+				if (newDistance > distance)
 				{
-					if (duplicate.equals(vertices.get(j)))
-					{
-						index = j;
-						break;
-					}
+					best = neighbours[i];
+					distance = newDistance;
 				}
-				this.indicies[i] = index;
 			}
+			if (best == current)
+			{
+				break;
+			}
+			current = best;
 		}
-		
-		tempList.clear();
-	}
-	
-	/**
-	 * Sets the adjaceny data for all vetices in the convex hull.
-	 */
-	private void setAdjacencyData()
-	{
-		for (int i = 0; i < this.indicies.length / 3; i++)
+		if (starts != null)
 		{
-			int previous = this.indicies[3 * i];
-			int current = this.indicies[3 * i + 1];
-			int next = this.indicies[3 * i + 2];
-			
-			vertices.get(previous)
-				.addAdjacentIndex(current)
-				.addAdjacentIndex(next);
-			
-			vertices.get(current)
-				.addAdjacentIndex(previous)
-				.addAdjacentIndex(next);
-			
-			vertices.get(next)
-				.addAdjacentIndex(previous)
-				.addAdjacentIndex(current);
+			starts[offset + octant] = current;
 		}
+	
+		return transform.matrix.transformPosition(positions[3 * current], positions[3 * current + 1], 
+				positions[3 * current + 2], dest);
 	}
 }
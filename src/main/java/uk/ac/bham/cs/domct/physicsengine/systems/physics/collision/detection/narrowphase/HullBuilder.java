@@ -0,0 +1,913 @@
+package uk.ac.bham.cs.domct.physicsengine.systems.physics.collision.detection.narrowphase;
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.PriorityQueue;
+
+/**
+ * Builds the convex hull of a set of points, such as the vertices of a mesh, as
+ * {@link HullData} for support points to be found on.
+ * <p>
+ * Points sharing a position are first welded together through a hash table, in time
+ * linear in the number of points. The hull is then found with quickhull. Starting from a
+ * tetrahedron of extreme points, the point farthest outside the hull is added, replacing
+ * every face that can see it with faces joining it to the horizon of those faces, and
+ * the points left inside are discarded. Points inside the hull or in the plane of one of
+ * its faces never become vertices, so the hull of a mesh only has the mesh's corners.
+ * A point whose faces rounding leaves without a single horizon is left out rather than
+ * breaking the hull.
+ * <p>
+ * The hull can be simplified by giving a tolerance, points no further than it outside a
+ * face being left out, or a maximum number of vertices. As the farthest point is always
+ * added next, stopping early keeps the points that change the shape of the hull most.
+ * Points that all lie in a plane give a polygon, on a line a segment, and at one position
+ * a single vertex, none of which are simplified.
+ * <p>
+ * A builder keeps its working state between builds, so it must only be used by one
+ * thread at a time.
+ *
+ * @author Dominic Cogan-Tucker
+ *
+ */
+public final class HullBuilder
+{
+	/**
+	 * The distance a point must be outside a face to be kept, relative to the extent of
+	 * the points.
+	 */
+	private static final double EPSILON = 1E-6;
+
+	/**
+	 * The thickness of the first tetrahedron, relative to its length, below which the
+	 * distance a point must be outside a face to be kept shrinks with it.
+	 */
+	private static final double THIN = 0.1;
+
+	/**
+	 * The distance outside the hull within which points are left out, and the most
+	 * vertices the hull may have.
+	 */
+	private float tolerance = 0;
+	private int maxVertices = Integer.MAX_VALUE;
+
+	/**
+	 * The welded points, as their x, y and z coordinates, and how many there are.
+	 */
+	private float[] points;
+	private int count;
+
+	/**
+	 * The distance a point must be outside a face to be kept, nearer points being taken
+	 * to lie in the plane of the face.
+	 */
+	private double epsilon;
+
+	/**
+	 * The three vertices of each face, counter-clockwise seen from outside the hull, and
+	 * the plane of each as its outward normal and distance from the origin.
+	 */
+	private int[] faces = new int[3 * 64];
+	private double[] planes = new double[4 * 64];
+	private boolean[] alive = new boolean[64];
+	private int faceCount;
+
+	/**
+	 * The first of the points outside each face, the farthest of them and its distance.
+	 * The points outside a face are linked through the next outside point of each.
+	 */
+	private int[] outside = new int[64];
+	private int[] farthest = new int[64];
+	private double[] farthestDistance = new double[64];
+	private int[] nextOutside;
+
+	/**
+	 * The number of faces using each point, and the number of points used by any face,
+	 * which are the vertices of the hull.
+	 */
+	private int[] references;
+	private int vertexCount;
+
+	/**
+	 * The face on the left of each directed edge, keyed by the edge's start point in the
+	 * high 32 bits and its end point in the low 32 bits.
+	 */
+	private final Map<Long, Integer> edges = new HashMap<>();
+
+	/**
+	 * The faces seen from the point being added, the edges of their horizon, and the
+	 * mark of the faces found to be seen.
+	 */
+	private int[] visible = new int[64];
+	private int[] horizon = new int[128];
+	private int[] seen = new int[64];
+	private int mark = 0;
+
+	/**
+	 * The end of the horizon edge starting at each point, and the mark of the points
+	 * found to start one.
+	 */
+	private int[] horizonNext;
+	private int[] horizonMark;
+
+	/**
+	 * Sets the distance outside the hull within which points are left out, simplifying
+	 * the hull. A tolerance of 0 keeps every point on the hull.
+	 *
+	 * @param tolerance The tolerance, in the units of the points.
+	 * @return This builder.
+	 * @throws IllegalArgumentException if the tolerance is negative or not a number.
+	 */
+	public HullBuilder setTolerance(float tolerance)
+	{
+		if (!(tolerance >= 0))
+		{
+			throw new IllegalArgumentException("Tolerance must not be negative.");
+		}
+		this.tolerance = tolerance;
+		return this;
+	}
+
+	/**
+	 * Sets the most vertices the hull may have, simplifying the hull if the points have
+	 * more corners than this.
+	 *
+	 * @param maxVertices The maximum number of vertices.
+	 * @return This builder.
+	 * @throws IllegalArgumentException if the maximum is less than the 4 vertices of the
+	 * 		smallest hull with volume.
+	 */
+	public HullBuilder setMaxVertices(int maxVertices)
+	{
+		if (maxVertices < 4)
+		{
+			throw new IllegalArgumentException("A hull must be allowed at least 4 vertices.");
+		}
+		this.maxVertices = maxVertices;
+		return this;
+	}
+
+	/**
+	 * Builds the convex hull of the given points.
+	 *
+	 * @param positions The x, y and z coordinates of each point.
+	 * @return The vertices of the hull and their adjacency.
+	 * @throws IllegalArgumentException if there are no points, or the coordinates don't
+	 * 		make up whole points.
+	 */
+	public HullData build(float[] positions)
+	{
+		if (positions.length == 0 || positions.length % 3 != 0)
+		{
+			throw new IllegalArgumentException("Positions must hold the x, y and z of at least one point.");
+		}
+		weld(positions);
+		float[] extent = new float[3];
+		for (int i = 0; i < 3 * count; i++)
+		{
+			extent[i % 3] = Math.max(extent[i % 3], Math.abs(points[i]));
+		}
+		epsilon = EPSILON * (extent[0] + extent[1] + extent[2]);
+
+		// The two farthest apart of the extreme points along each axis.
+		int a = 0, b = 0;
+		double best = -1;
+		for (int axis = 0; axis < 3; axis++)
+		{
+			int min = 0, max = 0;
+			for (int i = 1; i < count; i++)
+			{
+				if (points[3 * i + axis] < points[3 * min + axis])
+				{
+					min = i;
+				}
+				if (points[3 * i + axis] > points[3 * max + axis])
+				{
+					max = i;
+				}
+			}
+			double distance = distanceSquared(min, max);
+			if (distance > best)
+			{
+				best = distance;
+				a = min;
+				b = max;
+			}
+		}
+		if (Math.sqrt(best) <= epsilon)
+		{
+			return point(a);
+		}
+
+		// The point farthest from the line through them.
+		int c = -1;
+		best = epsilon;
+		for (int i = 0; i < count; i++)
+		{
+			double distance = lineDistance(a, b, i);
+			if (distance > best)
+			{
+				best = distance;
+				c = i;
+			}
+		}
+		if (c == -1)
+		{
+			return segment(a, b);
+		}
+
+		// The point farthest from the plane through all three.
+		double[] plane = new double[4];
+		plane(a, b, c, plane, 0);
+		int d = -1;
+		best = epsilon;
+		for (int i = 0; i < count; i++)
+		{
+			double distance = Math.abs(planeDistance(plane, 0, i));
+			if (distance > best)
+			{
+				best = distance;
+				d = i;
+			}
+		}
+		if (d == -1)
+		{
+			return polygon(a, b, plane);
+		}
+
+		// A point nearer than epsilon to the plane of every face is left out, which near
+		// the sharp edges of a thin hull reaches much further than epsilon outside it.
+		epsilon *= Math.min(1, best / (THIN * Math.sqrt(distanceSquared(a, b))));
+		return polyhedron(a, b, c, d);
+	}
+
+	/**
+	 * Welds together the points sharing a position, keeping the first of each in the
+	 * order they are given.
+	 *
+	 * @param positions The x, y and z coordinates of each point.
+	 */
+	private void weld(float[] positions)
+	{
+		int n = positions.length / 3;
+		int mask = Integer.highestOneBit(n) * 4 - 1;
+		int[] table = new int[mask + 1];
+		Arrays.fill(table, -1);
+		points = new float[positions.length];
+		count = 0;
+		for (int i = 0; i < n; i++)
+		{
+			// Adding zero turns negative zero into zero, so the two are welded.
+			float x = positions[3 * i] + 0f;
+			float y = positions[3 * i + 1] + 0f;
+			float z = positions[3 * i + 2] + 0f;
+			int slot = hash(x, y, z) & mask;
+			while (table[slot] != -1 && !isAt(table[slot], x, y, z))
+			{
+				slot = (slot + 1) & mask;
+			}
+			if (table[slot] == -1)
+			{
+				table[slot] = count;
+				points[3 * count] = x;
+				points[3 * count + 1] = y;
+				points[3 * count + 2] = z;
+				count++;
+			}
+		}
+	}
+
+	/**
+	 * Builds the hull of points that don't all lie in a plane, starting from the
+	 * tetrahedron of the given points.
+	 *
+	 * @param a The first point of the tetrahedron.
+	 * @param b The second point of the tetrahedron.
+	 * @param c The third point of the tetrahedron.
+	 * @param d The point of the tetrahedron farthest from the plane of the others.
+	 * @return The hull.
+	 */
+	private HullData polyhedron(int a, int b, int c, int d)
+	{
+		faceCount = 0;
+		vertexCount = 0;
+		edges.clear();
+		nextOutside = new int[count];
+		references = new int[count];
+		horizonNext = new int[count];
+		horizonMark = new int[count];
+
+		// Each face of the tetrahedron is wound to face away from the point opposite.
+		addFace(a, b, c, d);
+		addFace(a, d, b, c);
+		addFace(a, c, d, b);
+		addFace(b, d, c, a);
+		for (int i = 0; i < count; i++)
+		{
+			assign(i, 0, faceCount);
+		}
+
+		PriorityQueue<Integer> queue = new PriorityQueue<>(
+				(f, g) -> Double.compare(farthestDistance[g], farthestDistance[f]));
+		for (int f = 0; f < faceCount; f++)
+		{
+			if (outside[f] != -1)
+			{
+				queue.add(f);
+			}
+		}
+		while (!queue.isEmpty())
+		{
+			int face = queue.poll();
+			if (!alive[face])
+			{
+				continue;
+			}
+			if (farthestDistance[face] <= tolerance || vertexCount >= maxVertices)
+			{
+				// Every other point is nearer to the hull than this one.
+				break;
+			}
+			int first = faceCount;
+			if (!addPoint(farthest[face], face))
+			{
+				// Rounding left the faces seen from the point without a single horizon,
+				// so the point is left out rather than breaking the hull.
+				discard(farthest[face], face);
+				if (outside[face] != -1)
+				{
+					queue.add(face);
+				}
+				continue;
+			}
+			for (int f = first; f < faceCount; f++)
+			{
+				if (outside[f] != -1)
+				{
+					queue.add(f);
+				}
+			}
+		}
+		return polyhedronData();
+	}
+
+	/**
+	 * Adds a point outside the hull to it, replacing the faces that can see it with faces
+	 * joining it to their horizon, and moves the points outside the removed faces to the
+	 * new faces. The hull is left unchanged if the horizon isn't a single loop.
+	 *
+	 * @param eye The point to add.
+	 * @param face The face the point is outside of.
+	 * @return true if the point was added.
+	 */
+	private boolean addPoint(int eye, int face)
+	{
+		// Spread out from the face to find every face that can see the point. The edges
+		// between those that can and those that can't are the horizon.
+		mark++;
+		seen[face] = mark;
+		visible[0] = face;
+		int visibleCount = 1;
+		int horizonCount = 0;
+		for (int i = 0; i < visibleCount; i++)
+		{
+			int f = visible[i];
+			for (int e = 0; e < 3; e++)
+			{
+				int u = faces[3 * f + e];
+				int v = faces[3 * f + (e + 1) % 3];
+				Integer g = edges.get(edge(v, u));
+				if (g == null)
+				{
+					return false;
+				}
+				if (seen[g] == mark)
+				{
+					continue;
+				}
+				// Unlike keeping a point, seeing it takes no epsilon. A face the point is
+				// only just in front of left in place makes the new face joined to its edge
+				// fold in, and a face it is just behind replaced loses the far corner of
+				// the face, either by far more than epsilon when the point is near the edge.
+				if (planeDistance(planes, 4 * g, eye) > 0)
+				{
+					seen[g] = mark;
+					if (visibleCount == visible.length)
+					{
+						visible = Arrays.copyOf(visible, visibleCount * 2);
+					}
+					visible[visibleCount++] = g;
+				}
+				else
+				{
+					if (horizonCount + 2 > horizon.length)
+					{
+						horizon = Arrays.copyOf(horizon, horizon.length * 2);
+					}
+					horizon[horizonCount++] = u;
+					horizon[horizonCount++] = v;
+				}
+			}
+		}
+		if (!isLoop(horizonCount))
+		{
+			return false;
+		}
+
+		// Remove the faces that can see the point, keeping the points outside them.
+		int orphans = -1;
+		for (int i = 0; i < visibleCount; i++)
+		{
+			int f = visible[i];
+			for (int p = outside[f]; p != -1;)
+			{
+				int next = nextOutside[p];
+				if (p != eye)
+				{
+					nextOutside[p] = orphans;
+					orphans = p;
+				}
+				p = next;
+			}
+			removeFace(f);
+		}
+
+		// Join the point to the horizon, then find which new face each orphan is outside.
+		int first = faceCount;
+		for (int i = 0; i < horizonCount; i += 2)
+		{
+			addFace(horizon[i], horizon[i + 1], eye, -1);
+		}
+		for (int p = orphans; p != -1;)
+		{
+			int next = nextOutside[p];
+			assign(p, first, faceCount);
+			p = next;
+		}
+		return true;
+	}
+
+	/**
+	 * Returns whether the edges of the horizon join up into a single loop, each point on
+	 * it starting exactly one edge.
+	 *
+	 * @param horizonCount The number of points held by the edges of the horizon.
+	 * @return true if the horizon is a single loop.
+	 */
+	private boolean isLoop(int horizonCount)
+	{
+		if (horizonCount < 6)
+		{
+			return false;
+		}
+		for (int i = 0; i < horizonCount; i += 2)
+		{
+			int u = horizon[i];
+			if (horizonMark[u] == mark)
+			{
+				return false;
+			}
+			horizonMark[u] = mark;
+			horizonNext[u] = horizon[i + 1];
+		}
+		int start = horizon[0];
+		int p = start;
+		for (int i = 0; i < horizonCount; i += 2)
+		{
+			if (horizonMark[p] != mark || i > 0 && p == start)
+			{
+				return false;
+			}
+			p = horizonNext[p];
+		}
+		return p == start;
+	}
+
+	/**
+	 * Removes a point from the points outside a face, leaving it out of the hull.
+	 *
+	 * @param p The point.
+	 * @param f The face.
+	 */
+	private void discard(int p, int f)
+	{
+		int previous = -1;
+		farthestDistance[f] = 0;
+		for (int q = outside[f]; q != -1; q = nextOutside[q])
+		{
+			if (q == p)
+			{
+				if (previous == -1)
+				{
+					outside[f] = nextOutside[q];
+				}
+				else
+				{
+					nextOutside[previous] = nextOutside[q];
+				}
+				continue;
+			}
+			double distance = planeDistance(planes, 4 * f, q);
+			if (distance > farthestDistance[f])
+			{
+				farthestDistance[f] = distance;
+				farthest[f] = q;
+			}
+			previous = q;
+		}
+	}
+
+	/**
+	 * Adds a face to the hull, with the points a, b and c counter-clockwise seen from
+	 * outside the hull.
+	 *
+	 * @param a The first point of the face.
+	 * @param b The second point of the face.
+	 * @param c The third point of the face.
+	 * @param opposite A point inside the hull to wind the face away from, or -1 if the
+	 * 		points are already wound outwards.
+	 */
+	private void addFace(int a, int b, int c, int opposite)
+	{
+		if (faceCount == alive.length)
+		{
+			int capacity = faceCount * 2;
+			faces = Arrays.copyOf(faces, 3 * capacity);
+			planes = Arrays.copyOf(planes, 4 * capacity);
+			alive = Arrays.copyOf(alive, capacity);
+			outside = Arrays.copyOf(outside, capacity);
+			farthest = Arrays.copyOf(farthest, capacity);
+			farthestDistance = Arrays.copyOf(farthestDistance, capacity);
+			seen = Arrays.copyOf(seen, capacity);
+		}
+		int f = faceCount++;
+		plane(a, b, c, planes, 4 * f);
+		if (opposite != -1 && planeDistance(planes, 4 * f, opposite) > 0)
+		{
+			int swap = b;
+			b = c;
+			c = swap;
+			plane(a, b, c, planes, 4 * f);
+		}
+		faces[3 * f] = a;
+		faces[3 * f + 1] = b;
+		faces[3 * f + 2] = c;
+		alive[f] = true;
+		outside[f] = -1;
+		farthestDistance[f] = 0;
+		seen[f] = 0;
+		for (int e = 0; e < 3; e++)
+		{
+			int u = faces[3 * f + e];
+			edges.put(edge(u, faces[3 * f + (e + 1) % 3]), f);
+			if (references[u]++ == 0)
+			{
+				vertexCount++;
+			}
+		}
+	}
+
+	/**
+	 * Removes a face from the hull.
+	 *
+	 * @param f The face.
+	 */
+	private void removeFace(int f)
+	{
+		alive[f] = false;
+		for (int e = 0; e < 3; e++)
+		{
+			int u = faces[3 * f + e];
+			edges.remove(edge(u, faces[3 * f + (e + 1) % 3]));
+			if (--references[u] == 0)
+			{
+				vertexCount--;
+			}
+		}
+	}
+
+	/**
+	 * Adds a point to the points outside the first of the given faces it is outside of,
+	 * discarding it if it is inside them all.
+	 *
+	 * @param p The point.
+	 * @param from The first face to check.
+	 * @param to The face after the last to check.
+	 */
+	private void assign(int p, int from, int to)
+	{
+		for (int f = from; f < to; f++)
+		{
+			double distance = planeDistance(planes, 4 * f, p);
+			if (distance > epsilon)
+			{
+				nextOutside[p] = outside[f];
+				outside[f] = p;
+				if (distance > farthestDistance[f])
+				{
+					farthestDistance[f] = distance;
+					farthest[f] = p;
+				}
+				return;
+			}
+		}
+	}
+
+	/**
+	 * Returns the vertices of the finished polyhedron, in the order of the points, with
+	 * the neighbours of each taken from the edges of the faces.
+	 *
+	 * @return The hull.
+	 */
+	private HullData polyhedronData()
+	{
+		int[] index = new int[count];
+		int n = 0;
+		for (int i = 0; i < count; i++)
+		{
+			index[i] = references[i] > 0 ? n++ : -1;
+		}
+		float[] positions = new float[3 * n];
+		for (int i = 0; i < count; i++)
+		{
+			if (index[i] != -1)
+			{
+				System.arraycopy(points, 3 * i, positions, 3 * index[i], 3);
+			}
+		}
+
+		// Each edge is the directed edge of one face either way round, so adding the end
+		// of every directed edge to the neighbours of its start gives each edge once.
+		int[] offsets = new int[n + 1];
+		for (int f = 0; f < faceCount; f++)
+		{
+			if (alive[f])
+			{
+				for (int e = 0; e < 3; e++)
+				{
+					offsets[index[faces[3 * f + e]] + 1]++;
+				}
+			}
+		}
+		for (int i = 0; i < n; i++)
+		{
+			offsets[i + 1] += offsets[i];
+		}
+		int[] neighbours = new int[offsets[n]];
+		int[] next = Arrays.copyOf(offsets, n);
+		for (int f = 0; f < faceCount; f++)
+		{
+			if (alive[f])
+			{
+				for (int e = 0; e < 3; e++)
+				{
+					int u = index[faces[3 * f + e]];
+					neighbours[next[u]++] = index[faces[3 * f + (e + 1) % 3]];
+				}
+			}
+		}
+		edges.clear();
+		return new HullData(positions, offsets, neighbours);
+	}
+
+	/**
+	 * Returns the hull of points lying in a plane, which is the polygon found by a
+	 * monotone chain in the plane, each vertex of which neighbours the two beside it.
+	 *
+	 * @param a A point in the plane.
+	 * @param b Another point in the plane.
+	 * @param plane The plane of the points.
+	 * @return The hull.
+	 */
+	private HullData polygon(int a, int b, double[] plane)
+	{
+		// Axes in the plane, the first along the line from a to b.
+		double ux = points[3 * b] - points[3 * a];
+		double uy = points[3 * b + 1] - points[3 * a + 1];
+		double uz = points[3 * b + 2] - points[3 * a + 2];
+		double length = Math.sqrt(ux * ux + uy * uy + uz * uz);
+		ux /= length;
+		uy /= length;
+		uz /= length;
+		double wx = plane[1] * uz - plane[2] * uy;
+		double wy = plane[2] * ux - plane[0] * uz;
+		double wz = plane[0] * uy - plane[1] * ux;
+		double[] s = new double[count];
+		double[] t = new double[count];
+		Integer[] order = new Integer[count];
+		for (int i = 0; i < count; i++)
+		{
+			double x = points[3 * i] - points[3 * a];
+			double y = points[3 * i + 1] - points[3 * a + 1];
+			double z = points[3 * i + 2] - points[3 * a + 2];
+			s[i] = x * ux + y * uy + z * uz;
+			t[i] = x * wx + y * wy + z * wz;
+			order[i] = i;
+		}
+		Arrays.sort(order, (i, j) -> s[i] != s[j] ? Double.compare(s[i], s[j]) : Double.compare(t[i], t[j]));
+
+		// The lower then the upper chain, dropping points that don't turn left.
+		int[] chain = new int[2 * count];
+		int k = 0;
+		for (int pass = 0; pass < 2; pass++)
+		{
+			int start = k;
+			for (int n = 0; n < count; n++)
+			{
+				int p = order[pass == 0 ? n : count - 1 - n];
+				while (k >= start + 2 && cross(s, t, chain[k - 2], chain[k - 1], p) <= 0)
+				{
+					k--;
+				}
+				chain[k++] = p;
+			}
+			// The last point of each chain is the first of the other.
+			k--;
+		}
+
+		float[] positions = new float[3 * k];
+		int[] offsets = new int[k + 1];
+		int[] neighbours = new int[2 * k];
+		for (int i = 0; i < k; i++)
+		{
+			System.arraycopy(points, 3 * chain[i], positions, 3 * i, 3);
+			offsets[i + 1] = 2 * (i + 1);
+			neighbours[2 * i] = (i + k - 1) % k;
+			neighbours[2 * i + 1] = (i + 1) % k;
+		}
+		return new HullData(positions, offsets, neighbours);
+	}
+
+	/**
+	 * Returns the hull of points lying on a line, which is the segment between the two
+	 * farthest apart.
+	 *
+	 * @param a One end of the segment.
+	 * @param b The other end of the segment.
+	 * @return The hull.
+	 */
+	private HullData segment(int a, int b)
+	{
+		float[] positions = new float[6];
+		System.arraycopy(points, 3 * a, positions, 0, 3);
+		System.arraycopy(points, 3 * b, positions, 3, 3);
+		return new HullData(positions, new int[] {0, 1, 2}, new int[] {1, 0});
+	}
+
+	/**
+	 * Returns the hull of points all at one position, which is a single vertex.
+	 *
+	 * @param a The point.
+	 * @return The hull.
+	 */
+	private HullData point(int a)
+	{
+		return new HullData(Arrays.copyOfRange(points, 3 * a, 3 * a + 3), new int[] {0, 0}, new int[0]);
+	}
+
+	/**
+	 * Sets the plane through three points, with the normal facing the side from which
+	 * they are counter-clockwise.
+	 *
+	 * @param a The first point.
+	 * @param b The second point.
+	 * @param c The third point.
+	 * @param dest The array to hold the normal then distance of the plane.
+	 * @param offset The position in the array to hold the plane at.
+	 */
+	private void plane(int a, int b, int c, double[] dest, int offset)
+	{
+		double abx = points[3 * b] - points[3 * a];
+		double aby = points[3 * b + 1] - points[3 * a + 1];
+		double abz = points[3 * b + 2] - points[3 * a + 2];
+		double acx = points[3 * c] - points[3 * a];
+		double acy = points[3 * c + 1] - points[3 * a + 1];
+		double acz = points[3 * c + 2] - points[3 * a + 2];
+		double nx = aby * acz - abz * acy;
+		double ny = abz * acx - abx * acz;
+		double nz = abx * acy - aby * acx;
+		double length = Math.sqrt(nx * nx + ny * ny + nz * nz);
+		if (length > 0)
+		{
+			nx /= length;
+			ny /= length;
+			nz /= length;
+		}
+		dest[offset] = nx;
+		dest[offset + 1] = ny;
+		dest[offset + 2] = nz;
+		dest[offset + 3] = nx * points[3 * a] + ny * points[3 * a + 1] + nz * points[3 * a + 2];
+	}
+
+	/**
+	 * Returns the signed distance of a point from a plane, positive in front of it.
+	 *
+	 * @param plane The array holding the plane.
+	 * @param offset The position of the plane in the array.
+	 * @param p The point.
+	 * @return The distance of the point from the plane.
+	 */
+	private double planeDistance(double[] plane, int offset, int p)
+	{
+		return plane[offset] * points[3 * p] + plane[offset + 1] * points[3 * p + 1]
+				+ plane[offset + 2] * points[3 * p + 2] - plane[offset + 3];
+	}
+
+	/**
+	 * Returns the distance of a point from the line through two others.
+	 *
+	 * @param a A point on the line.
+	 * @param b Another point on the line.
+	 * @param p The point.
+	 * @return The distance of the point from the line.
+	 */
+	private double lineDistance(int a, int b, int p)
+	{
+		double abx = points[3 * b] - points[3 * a];
+		double aby = points[3 * b + 1] - points[3 * a + 1];
+		double abz = points[3 * b + 2] - points[3 * a + 2];
+		double apx = points[3 * p] - points[3 * a];
+		double apy = points[3 * p + 1] - points[3 * a + 1];
+		double apz = points[3 * p + 2] - points[3 * a + 2];
+		double x = aby * apz - abz * apy;
+		double y = abz * apx - abx * apz;
+		double z = abx * apy - aby * apx;
+		return Math.sqrt((x * x + y * y + z * z) / (abx * abx + aby * aby + abz * abz));
+	}
+
+	/**
+	 * Returns the squared distance between two points.
+	 *
+	 * @param a The first point.
+	 * @param b The second point.
+	 * @return The squared distance between them.
+	 */
+	private double distanceSquared(int a, int b)
+	{
+		double x = points[3 * b] - points[3 * a];
+		double y = points[3 * b + 1] - points[3 * a + 1];
+		double z = points[3 * b + 2] - points[3 * a + 2];
+		return x * x + y * y + z * z;
+	}
+
+	/**
+	 * Returns whether a welded point is at the given position.
+	 *
+	 * @param p The point.
+	 * @param x The x coordinate of the position.
+	 * @param y The y coordinate of the position.
+	 * @param z The z coordinate of the position.
+	 * @return true if the point has exactly the same coordinates.
+	 */
+	private boolean isAt(int p, float x, float y, float z)
+	{
+		return Float.floatToIntBits(points[3 * p]) == Float.floatToIntBits(x)
+				&& Float.floatToIntBits(points[3 * p + 1]) == Float.floatToIntBits(y)
+				&& Float.floatToIntBits(points[3 * p + 2]) == Float.floatToIntBits(z);
+	}
+
+	/**
+	 * Returns the z component of the cross product of the vectors from a to b and a to c
+	 * in the plane, which is positive if a, b and c turn left.
+	 * 
+	 * @param s The first coordinate of each point in the plane.
+	 * @param t The second coordinate of each point in the plane.
+	 * @param a The first point.
+	 * @param b The second point.
+	 * @param c The third point.
+	 * @return The cross product.
+	 */
+	private static double cross(double[] s, double[] t, int a, int b, int c)
+	{
+		return (s[b] - s[a]) * (t[c] - t[a]) - (t[b] - t[a]) * (s[c] - s[a]);
+	}
+
+	/**
+	 * Returns the key of the directed edge between two points.
+	 * 
+	 * @param from The point the edge starts at.
+	 * @param to The point the edge ends at.
+	 * @return The key of the edge.
+	 */
+	private static long edge(int from, int to)
+	{
+		return ((long) from << 32) | (to & 0xFFFFFFFFL);
+	}
+
+	/**
+	 * Mixes the bits of a position into a hash.
+	 * 
+	 * @param x The x coordinate of the position.
+	 * @param y The y coordinate of the position.
+	 * @param z The z coordinate of the position.
+	 * @return The hash of the position.
+	 */
+	private static int hash(float x, float y, float z)
+	{
+		int h = Float.floatToIntBits(x);
+		h = 31 * h + Float.floatToIntBits(y);
+		h = 31 * h + Float.floatToIntBits(z);
+		h *= 0x9E3779B9;
+		return h ^ (h >>> 16);
+	}
+}
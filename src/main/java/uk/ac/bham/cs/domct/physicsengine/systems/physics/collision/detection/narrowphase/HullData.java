@@ -0,0 +1,165 @@
+package uk.ac.bham.cs.domct.physicsengine.systems.physics.collision.detection.narrowphase;
+
+import org.joml.Vector3f;
+
+/**
+ * The vertices of a convex hull in local space along with the adjacency of each vertex,
+ * as built by a {@link HullBuilder}. The positions are stored flat as the x, y and z of
+ * each vertex in turn, and the adjacency in compressed sparse row form, the neighbours of
+ * vertex i being those from neighbours[offsets[i]] up to neighbours[offsets[i + 1]].
+ * Hull data is never changed once built, so it is shared by every hull of the same mesh.
+ * <p>
+ * The support vertex of each octant's diagonal is found when the data is built, to
+ * start the search for a support point in a direction within that octant from, along
+ * with the bounds of the vertices, which the bounding boxes of the hull's entities are
+ * transformed from. Both then live exactly as long as the hull of the mesh.
+ *
+ * @author Dominic Cogan-Tucker
+ *
+ */
+public final class HullData
+{
+	/**
+	 * The x, y and z coordinates of each vertex.
+	 */
+	final float[] positions;
+
+	/**
+	 * The position in the neighbours of the first neighbour of each vertex, followed by
+	 * the total number of neighbours.
+	 */
+	final int[] offsets;
+
+	/**
+	 * The indices of the neighbours of every vertex, in the order of the vertices.
+	 */
+	final int[] neighbours;
+
+	/**
+	 * The vertex furthest along the diagonal of each octant, the octant of a direction
+	 * having bit 0 set for a positive x, bit 1 for a positive y and bit 2 for a positive z.
+	 */
+	final int[] octants = new int[8];
+
+	/**
+	 * The smallest x, y and z of the vertices, then the largest.
+	 */
+	private final float[] bounds = {Float.POSITIVE_INFINITY, Float.POSITIVE_INFINITY, 
+			Float.POSITIVE_INFINITY, Float.NEGATIVE_INFINITY, Float.NEGATIVE_INFINITY, Float.NEGATIVE_INFINITY};
+
+	/**
+	 * Constructs hull data from its flat arrays.
+	 *
+	 * @param positions The x, y and z coordinates of each vertex.
+	 * @param offsets The offset of the neighbours of each vertex, then their total.
+	 * @param neighbours The neighbours of every vertex.
+	 */
+	HullData(float[] positions, int[] offsets, int[] neighbours)
+	{
+		this.positions = positions;
+		this.offsets = offsets;
+		this.neighbours = neighbours;
+		for (int i = 0; i < positions.length; i++)
+		{
+			bounds[i % 3] = Math.min(bounds[i % 3], positions[i]);
+			bounds[3 + i % 3] = Math.max(bounds[3 + i % 3], positions[i]);
+		}
+		for (int octant = 0; octant < 8; octant++)
+		{
+			float x = (octant & 1) != 0 ? 1 : -1;
+			float y = (octant & 2) != 0 ? 1 : -1;
+			float z = (octant & 4) != 0 ? 1 : -1;
+			float furthest = Float.NEGATIVE_INFINITY;
+			for (int i = 0; i < positions.length / 3; i++)
+			{
+				float distance = positions[3 * i] * x + positions[3 * i + 1] * y + positions[3 * i + 2] * z;
+				if (distance > furthest)
+				{
+					furthest = distance;
+					octants[octant] = i;
+				}
+			}
+		}
+	}
+
+	/**
+	 * Returns the octant of a direction, with bit 0 set if x is positive, bit 1 if y is
+	 * and bit 2 if z is.
+	 *
+	 * @param x The x component of the direction.
+	 * @param y The y component of the direction.
+	 * @param z The z component of the direction.
+	 * @return The octant of the direction, from 0 to 7.
+	 */
+	static int octant(float x, float y, float z)
+	{
+		return (x > 0 ? 1 : 0) | (y > 0 ? 2 : 0) | (z > 0 ? 4 : 0);
+	}
+
+	/**
+	 * Returns the smallest x, y and z of the hull's vertices.
+	 *
+	 * @param dest The vector to hold the minimum.
+	 * @return dest, holding the minimum corner of the hull's bounds.
+	 */
+	public Vector3f getMin(Vector3f dest)
+	{
+		return dest.set(bounds[0], bounds[1], bounds[2]);
+	}
+
+	/**
+	 * Returns the largest x, y and z of the hull's vertices.
+	 *
+	 * @param dest The vector to hold the maximum.
+	 * @return dest, holding the maximum corner of the hull's bounds.
+	 */
+	public Vector3f getMax(Vector3f dest)
+	{
+		return dest.set(bounds[3], bounds[4], bounds[5]);
+	}
+
+	/**
+	 * Returns the number of vertices of the hull.
+	 *
+	 * @return The number of vertices.
+	 */
+	public int getVertexCount()
+	{
+		return offsets.length - 1;
+	}
+
+	/**
+	 * Returns the position of a vertex of the hull.
+	 *
+	 * @param index The index of the vertex.
+	 * @param dest The vector to hold the position.
+	 * @return dest, holding the position of the vertex.
+	 */
+	public Vector3f getVertex(int index, Vector3f dest)
+	{
+		return dest.set(positions[3 * index], positions[3 * index + 1], positions[3 * index + 2]);
+	}
+
+	/**
+	 * Returns the number of vertices adjacent to a vertex of the hull.
+	 *
+	 * @param index The index of the vertex.
+	 * @return The number of neighbours of the vertex.
+	 */
+	public int getNeighbourCount(int index)
+	{
+		return offsets[index + 1] - offsets[index];
+	}
+
+	/**
+	 * Returns a vertex adjacent to a vertex of the hull.
+	 *
+	 * @param index The index of the vertex.
+	 * @param n Which of the vertex's neighbours to return.
+	 * @return The index of the neighbour.
+	 */
+	public int getNeighbour(int index, int n)
+	{
+		return neighbours[offsets[index] + n];
+	}
+}
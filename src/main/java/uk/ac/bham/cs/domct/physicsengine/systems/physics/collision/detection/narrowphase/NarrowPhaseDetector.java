@@ -6,30 +6,83 @@ import uk.ac.bham.cs.domct.physicsengine.component.*;
 import uk.ac.bham.cs.domct.physicsengine.systems.physics.collision.Collision;
 
 /**
- * Class containing static methods used during narrow phase detection to
- * determine if two entities are colliding.
+ * Determines if two entities are colliding during narrow phase detection, using the
+ * GJK algorithm. A detector holds the state of the pair it is testing, so each thread
+ * testing pairs needs its own detector. The static {@link #areIntersecting(Collision)}
+ * uses a detector kept for the calling thread.
+ * <p>
+ * The search for a pair starts in the direction its previous search finished in, which
+ * is kept in the pair's simplex. For a pair that was separated this direction is an
+ * axis separating the entities, and if it still separates them the test ends after a
+ * single support point. For resting contacts it is close to the direction the search
+ * will finish in, so fewer iterations are needed than starting from a fixed direction.
  * 
  * @author Dominic Cogan-Tucker
  *
  */
 public final class NarrowPhaseDetector
 {
-	private static ConvexHull hullA;
-	private static ConvexHull hullB;
-	private static Collision collision;
-	private static Vector3f currentDir;
+	/**
+	 * The detector used by {@link #areIntersecting(Collision)} on each thread.
+	 */
+	private static final ThreadLocal<NarrowPhaseDetector> DETECTOR = 
+			ThreadLocal.withInitial(NarrowPhaseDetector::new);
+	
+	private ConvexHull hullA;
+	private ConvexHull hullB;
+	private Collision collision;
+	private final Vector3f currentDir = new Vector3f();
+	
+	/**
+	 * Scratch vectors reused by every test so that no vectors are allocated.
+	 */
+	private final Vector3f ab = new Vector3f();
+	private final Vector3f ac = new Vector3f();
+	private final Vector3f ad = new Vector3f();
+	private final Vector3f ao = new Vector3f();
+	private final Vector3f abc = new Vector3f();
+	private final Vector3f test = new Vector3f();
+	private final Vector3f negatedA = new Vector3f();
 	
 	private static final int EXIT_ITERATION = 1000;
-	private static int currentIteration;
 	
 	/**
-	 * Private constructor to ensure that the class isn't initialised unnecessarily. 
+	 * The squared sine of the angle below which points are taken to be in line, or the
+	 * sine below which a point is taken to be in the plane of a triangle.
+	 */
+	private static final float DEGENERATE = 1E-6f;
+	private int currentIteration;
+	
+	/**
+	 * The number of pairs tested, the support points generated while testing them, 
+	 * and the tests ended by the cached direction still separating the pair, since 
+	 * the statistics were last reset.
+	 */
+	private int tests = 0;
+	private int iterations = 0;
+	private int earlyOuts = 0;
+	
+	/**
+	 * Constructs a detector, which can be reused for any number of pairs.
 	 */
-	private NarrowPhaseDetector()
+	public NarrowPhaseDetector()
 	{
 		
 	}
 	
+	/**
+	 * Returns whether two given entities are intersecting, using the detector of
+	 * the calling thread. If the entities are intersecting then a simplex 
+	 * surrounding the origin has been successfully created.
+	 * 
+	 * @param col The pair of colliding entities.
+	 * @return true if the entities are intersecting.
+	 */
+	public static boolean areIntersecting(Collision col)
+	{
+		return DETECTOR.get().intersects(col);
+	}
+	
 	/**
 	 * Returns whether two given entities are intersecting. If the entities
 	 * are intersecting then a simplex surrounding the origin has been
@@ -38,10 +91,24 @@ public final class NarrowPhaseDetector
 	 * @param col The pair of colliding entities.
 	 * @return true if the entities are intersecting.
 	 */
-	public static boolean areIntersecting(Collision col)
+	public boolean intersects(Collision col)
 	{
 		init(col);
-		return createSimplex();
+		boolean intersecting = createSimplex();
+		// Keep the direction the search finished in to start the next search from. It is
+		// a direction from B to A, which stays right as the cache keeps the pair's order.
+		Vector3f direction = collision.getSimplex().direction;
+		if (currentDir.isFinite())
+		{
+			direction.set(currentDir);
+		}
+		else
+		{
+			direction.zero();
+		}
+		collision = null;
+		tests++;
+		return intersecting;
 	}
 	
 	/**
@@ -50,7 +117,7 @@ public final class NarrowPhaseDetector
 	 * 
 	 * @param col The pair of colliding entities.
 	 */
-	private static void init(Collision col)
+	private void init(Collision col)
 	{
 		collision = col;
 		hullA = collision.getEntityA().getComponent(Collidable.class).hull;
@@ -59,7 +126,8 @@ public final class NarrowPhaseDetector
 		{
 			collision.setSimplex(new Simplex());
 		}
-		currentDir = new Vector3f(1, 0, 0);
+		collision.getSimplex().clear();
+		currentDir.set(collision.getSimplex().direction);
 	}
 	
 	/**
@@ -69,92 +137,114 @@ public final class NarrowPhaseDetector
 	 * 
 	 * @return true if the entities are colliding.
 	 */
-	private static boolean createSimplex()
+	private boolean createSimplex()
 	{
-		SupportPoint sup = minkowskiDifference();
-		if (Math.abs(new Vector3f(currentDir).dot(sup.v)) >= sup.v.length()*0.8f)
+		Simplex sim = collision.getSimplex();
+		SupportPoint sup;
+		if (currentDir.lengthSquared() > 0)
+		{
+			// If the last direction still separates the entities they aren't colliding.
+			sup = minkowskiDifference(sim.next());
+			if (sup.v.dot(currentDir) < 0)
+			{
+				earlyOuts++;
+				return false;
+			}
+		}
+		else
 		{
-			currentDir = new Vector3f(0, 1, 0);
-			sup = minkowskiDifference();
+			currentDir.set(1, 0, 0);
+			sup = minkowskiDifference(sim.next());
+			if (Math.abs(currentDir.dot(sup.v)) >= sup.v.length()*0.8f)
+			{
+				currentDir.set(0, 1, 0);
+				minkowskiDifference(sup);
+			}
 		}
-		collision.getSimplex().push(sup);
-		currentDir = new Vector3f(collision.getSimplex().a.v).negate();
+		sim.push(sup);
+		currentDir.set(sim.a.v).negate();
 		currentIteration = 0;
 		
 		while (true)
 		{
-			SupportPoint newSup = minkowskiDifference();
-			if (new Vector3f(newSup.v).dot(currentDir) < 0 || currentIteration++ > EXIT_ITERATION)
+			SupportPoint newSup = minkowskiDifference(sim.next());
+			if (newSup.v.dot(currentDir) < 0 || currentIteration++ > EXIT_ITERATION)
 			{
 				return false;
 			}
 			
-			collision.getSimplex().push(newSup);
+			sim.push(newSup);
 			
-			if (collision.getSimplex().getNumberOfPoints() == 2)
+			if (sim.getNumberOfPoints() == 2)
 			{
-				Vector3f ab = new Vector3f(collision.getSimplex().b.v).sub(collision.getSimplex().a.v);
-				Vector3f ao = new Vector3f(collision.getSimplex().a.v).negate();
+				ab.set(sim.b.v).sub(sim.a.v);
+				ao.set(sim.a.v).negate();
 				
-				currentDir = new Vector3f(ab).cross(ao).cross(ab);
+				currentDir.set(ab).cross(ao).cross(ab);
+				if (currentDir.lengthSquared() == 0)
+				{
+					// The origin is on the segment, as when the entities are symmetric
+					// about the same centre, so there is no direction towards it.
+					return surroundOrigin();
+				}
 				continue;
 			}
 			
-			if (collision.getSimplex().getNumberOfPoints() == 3)
+			if (sim.getNumberOfPoints() == 3)
 			{
-				Vector3f ab = new Vector3f(collision.getSimplex().b.v).sub(collision.getSimplex().a.v);
-				Vector3f ac = new Vector3f(collision.getSimplex().c.v).sub(collision.getSimplex().a.v);
-				Vector3f ao = new Vector3f(collision.getSimplex().a.v).negate();
-				Vector3f abc = new Vector3f(ab).cross(ac);
+				ab.set(sim.b.v).sub(sim.a.v);
+				ac.set(sim.c.v).sub(sim.a.v);
+				ao.set(sim.a.v).negate();
+				abc.set(ab).cross(ac);
 				
-				if (simplexTest(new Vector3f(ab).cross(abc)))
+				if (simplexTest(test.set(ab).cross(abc)))
 				{
-					collision.getSimplex().set(collision.getSimplex().a, collision.getSimplex().b);
-					currentDir = new Vector3f(ab).cross(ao).cross(ab);
+					sim.set(sim.a, sim.b);
+					currentDir.set(ab).cross(ao).cross(ab);
 					continue;
 				}
 				
-				if (simplexTest(new Vector3f(abc).cross(ac)))
+				if (simplexTest(test.set(abc).cross(ac)))
 				{
-					collision.getSimplex().set(collision.getSimplex().a, collision.getSimplex().c);
-					currentDir = new Vector3f(ac).cross(ao).cross(ac);
+					sim.set(sim.a, sim.c);
+					currentDir.set(ac).cross(ao).cross(ac);
 					continue;
 				}
 				
-				if (simplexTest(new Vector3f(abc)))
+				if (simplexTest(abc))
 				{
-					currentDir = new Vector3f(abc);
+					currentDir.set(abc);
 					continue;
 				}
 				
-				collision.getSimplex().set(collision.getSimplex().a, collision.getSimplex().c, collision.getSimplex().b);
-				currentDir = new Vector3f(abc).negate();
+				sim.set(sim.a, sim.c, sim.b);
+				currentDir.set(abc).negate();
 				continue;
 			}
 			
-			if (collision.getSimplex().getNumberOfPoints() == 4)
+			if (sim.getNumberOfPoints() == 4)
 			{
-				Vector3f ab = new Vector3f(collision.getSimplex().b.v).sub(collision.getSimplex().a.v);
-				Vector3f ac = new Vector3f(collision.getSimplex().c.v).sub(collision.getSimplex().a.v);
+				ab.set(sim.b.v).sub(sim.a.v);
+				ac.set(sim.c.v).sub(sim.a.v);
 				
-				if (simplexTest(new Vector3f(ab).cross(ac)))
+				if (simplexTest(test.set(ab).cross(ac)))
 				{
 					faceCheck();
 					continue;
 				}
 				
-				Vector3f ad = new Vector3f(collision.getSimplex().d.v).sub(collision.getSimplex().a.v);
+				ad.set(sim.d.v).sub(sim.a.v);
 				
-				if (simplexTest(new Vector3f(ac).cross(ad)))
+				if (simplexTest(test.set(ac).cross(ad)))
 				{
-					collision.getSimplex().set(collision.getSimplex().a, collision.getSimplex().c, collision.getSimplex().d);
+					sim.set(sim.a, sim.c, sim.d);
 					faceCheck();
 					continue;
 				}
 				
-				if (simplexTest(new Vector3f(ad).cross(ab)))
+				if (simplexTest(test.set(ad).cross(ab)))
 				{
-					collision.getSimplex().set(collision.getSimplex().a, collision.getSimplex().d, collision.getSimplex().b);
+					sim.set(sim.a, sim.d, sim.b);
 					faceCheck();
 					continue;
 				}
@@ -165,30 +255,96 @@ public final class NarrowPhaseDetector
 		return true;
 	}
 	
+	/**
+	 * Expands a simplex whose segment passes through the origin into a tetrahedron
+	 * around the origin, for the contact data to be generated from. A third point is
+	 * searched for perpendicular to the segment, then a fourth either side of the
+	 * triangle, which the origin lies in. The tetrahedron is wound the same way as one
+	 * found by the search, with D behind the triangle ABC.
+	 * 
+	 * @return true if a tetrahedron was found, false if the Minkowski difference is flat.
+	 */
+	private boolean surroundOrigin()
+	{
+		Simplex sim = collision.getSimplex();
+		test.set(ab).cross(1, 0, 0);
+		if (test.lengthSquared() == 0)
+		{
+			test.set(ab).cross(0, 1, 0);
+		}
+		for (int i = 0; i < 4 && sim.getNumberOfPoints() == 2; i++)
+		{
+			if (i == 2)
+			{
+				test.set(ab).cross(test);
+			}
+			currentDir.set(test);
+			if (i % 2 == 1)
+			{
+				currentDir.negate();
+			}
+			SupportPoint c = minkowskiDifference(sim.next());
+			ac.set(c.v).sub(sim.a.v);
+			if (abc.set(ab).cross(ac).lengthSquared() > DEGENERATE * ab.lengthSquared() * ac.lengthSquared())
+			{
+				sim.push(c);
+			}
+		}
+		if (sim.getNumberOfPoints() == 2)
+		{
+			return false;
+		}
+		
+		ab.set(sim.b.v).sub(sim.a.v);
+		ac.set(sim.c.v).sub(sim.a.v);
+		abc.set(ab).cross(ac);
+		currentDir.set(abc);
+		SupportPoint d = minkowskiDifference(sim.next());
+		if (abc.dot(ad.set(d.v).sub(sim.a.v)) <= DEGENERATE * abc.length() * ad.length())
+		{
+			currentDir.negate();
+			minkowskiDifference(d);
+			if (-abc.dot(ad.set(d.v).sub(sim.a.v)) <= DEGENERATE * abc.length() * ad.length())
+			{
+				return false;
+			}
+		}
+		sim.push(d);
+		ab.set(sim.b.v).sub(sim.a.v);
+		ac.set(sim.c.v).sub(sim.a.v);
+		ad.set(sim.d.v).sub(sim.a.v);
+		if (test.set(ab).cross(ac).dot(ad) > 0)
+		{
+			sim.set(sim.a, sim.c, sim.b, sim.d);
+		}
+		return true;
+	}
+	
 	/**
 	 * A helper method for multiple cases when the simplex has 4 points.
 	 */
-	private static void faceCheck()
+	private void faceCheck()
 	{
-		Vector3f ab = new Vector3f(collision.getSimplex().b.v).sub(collision.getSimplex().a.v);
-		Vector3f ac = new Vector3f(collision.getSimplex().c.v).sub(collision.getSimplex().a.v);
-		Vector3f ao = new Vector3f(collision.getSimplex().a.v).negate();
-		Vector3f abc = new Vector3f(ab).cross(ac);
+		Simplex sim = collision.getSimplex();
+		ab.set(sim.b.v).sub(sim.a.v);
+		ac.set(sim.c.v).sub(sim.a.v);
+		ao.set(sim.a.v).negate();
+		abc.set(ab).cross(ac);
 		
-		if (simplexTest(new Vector3f(ab).cross(abc)))
+		if (simplexTest(test.set(ab).cross(abc)))
 		{
-			collision.getSimplex().set(collision.getSimplex().a, collision.getSimplex().b);
-			currentDir = new Vector3f(ab).cross(ao).cross(ab);
+			sim.set(sim.a, sim.b);
+			currentDir.set(ab).cross(ao).cross(ab);
 		}
-		else if (simplexTest(new Vector3f(abc).cross(ac)))
+		else if (simplexTest(test.set(abc).cross(ac)))
 		{
-			collision.getSimplex().set(collision.getSimplex().a, collision.getSimplex().c);
-			currentDir = new Vector3f(ac).cross(ao).cross(ac);
+			sim.set(sim.a, sim.c);
+			currentDir.set(ac).cross(ao).cross(ac);
 		}
 		else
 		{
-			collision.getSimplex().set(collision.getSimplex().a, collision.getSimplex().b, collision.getSimplex().c);
-			currentDir = new Vector3f(abc);
+			sim.set(sim.a, sim.b, sim.c);
+			currentDir.set(abc);
 		}
 	}
 	
@@ -200,37 +356,105 @@ public final class NarrowPhaseDetector
 	 * @param v The vector to check.
 	 * @return true if the dotproduct is greater than 0.
 	 */
-	public static boolean simplexTest(Vector3f v)
+	public boolean simplexTest(Vector3f v)
 	{
-		return new Vector3f(v).dot(new Vector3f(collision.getSimplex().a.v).negate()) > 0;
+		return v.dot(negatedA.set(collision.getSimplex().a.v).negate()) > 0;
 	}
 	
 	/**
-	 * Returns a SupportPoint holding the values of the support point for
-	 * entity a and b in the current direction and the resulting Minkowski
+	 * Fills in the given SupportPoint with the values of the support point
+	 * for entity a and b in the current direction and the resulting Minkowski
 	 * difference.
 	 * 
-	 * @return A SupportPoint for the current direction.
+	 * @param sup The support point to fill in.
+	 * @return The SupportPoint for the current direction.
 	 */
-	private static SupportPoint minkowskiDifference()
+	private SupportPoint minkowskiDifference(SupportPoint sup)
 	{
-		return generateSupport(currentDir);
+		iterations++;
+		return generateSupport(hullA, hullB, currentDir, collision.getSimplex().supportStarts, sup);
 	}
 	
 	/**
-	 * Returns a SupportPoint holding the values of the support point for
-	 * entity a and b in the given direction and the resulting Minkowski
-	 * difference.
+	 * Returns the number of pairs tested since the statistics were last reset.
+	 * 
+	 * @return The number of tests.
+	 */
+	public int getTests()
+	{
+		return tests;
+	}
+	
+	/**
+	 * Returns the number of GJK iterations, each generating one support point, made 
+	 * since the statistics were last reset.
+	 * 
+	 * @return The number of iterations.
+	 */
+	public int getIterations()
+	{
+		return iterations;
+	}
+	
+	/**
+	 * Returns the number of tests ended by the direction kept from the previous test
+	 * still separating the pair, since the statistics were last reset.
+	 * 
+	 * @return The number of early outs.
+	 */
+	public int getEarlyOuts()
+	{
+		return earlyOuts;
+	}
+	
+	/**
+	 * Resets the counts of tests, iterations and early outs to zero.
+	 */
+	public void resetStatistics()
+	{
+		tests = 0;
+		iterations = 0;
+		earlyOuts = 0;
+	}
+	
+	/**
+	 * Fills in the given SupportPoint with the values of the support points
+	 * of the given hulls in the given direction and the resulting Minkowski
+	 * difference. The direction is normalised.
+	 * 
+	 * @param hullA The hull of the first entity.
+	 * @param hullB The hull of the second entity.
+	 * @param direction The direction of the support point.
+	 * @param sup The support point to fill in.
+	 * @return The SupportPoint for the given direction.
+	 */
+	public static SupportPoint generateSupport(ConvexHull hullA, ConvexHull hullB, Vector3f direction, SupportPoint sup)
+	{
+		return generateSupport(hullA, hullB, direction, null, sup);
+	}
+	
+	/**
+	 * Fills in the given SupportPoint with the values of the support points
+	 * of the given hulls in the given direction and the resulting Minkowski
+	 * difference, starting the search of each hull from the vertex its last
+	 * support point in the same octant was found at, as kept by the pair's
+	 * {@link Simplex#supportStarts}. The direction is normalised.
 	 * 
-	 * @return A SupportPoint for the current direction.
+	 * @param hullA The hull of the first entity.
+	 * @param hullB The hull of the second entity.
+	 * @param direction The direction of the support point.
+	 * @param starts The vertices to start from, which are updated, or null to start
+	 * 		from the same vertices every time.
+	 * @param sup The support point to fill in.
+	 * @return The SupportPoint for the given direction.
 	 */
-	public static SupportPoint generateSupport(Vector3f direction)
+	public static SupportPoint generateSupport(ConvexHull hullA, ConvexHull hullB, Vector3f direction, 
+			int[] starts, SupportPoint sup)
 	{
 		direction.normalize();
-		SupportPoint sup = new SupportPoint();
-		sup.a = hullA.generateSupportPoint(currentDir);
-		sup.b = hullB.generateSupportPoint(new Vector3f(currentDir).negate());
-		sup.v = new Vector3f(sup.a).sub(sup.b);
+		hullA.generateSupportPoint(direction, starts, 0, sup.a);
+		hullB.generateSupportPoint(sup.b.set(direction).negate(), starts, 8, sup.b);
+		sup.v.set(sup.a).sub(sup.b);
 		return sup;
 	}
 }
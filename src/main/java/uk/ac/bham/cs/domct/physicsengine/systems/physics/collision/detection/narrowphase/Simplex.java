@@ -1,8 +1,16 @@
 package uk.ac.bham.cs.domct.physicsengine.systems.physics.collision.detection.narrowphase;
 
+import java.util.Arrays;
+
+import org.joml.Vector3f;
+
 /**
  * A simplex is the generalisation of a tetrahedral shape to n dimensions. This class stores a simplex
  * from 0 to 3 dimensions, forming a point, line segment, triangle and tetrahedron respectively.
+ * <p>
+ * The simplex of a pair also keeps the direction GJK was last searching in, which is kept
+ * from one step to the next to start the next search for the same pair, and the vertices
+ * the support points of its hulls were last found at.
  * 
  * @author Dominic Cogan-Tucker
  *
@@ -34,6 +42,38 @@ public class Simplex
 	 */
 	public SupportPoint d;
 	
+	/**
+	 * The support points owned by the simplex, one more than it can hold so that there
+	 * is always one free to be filled in before it is pushed.
+	 */
+	private final SupportPoint[] points = {new SupportPoint(), new SupportPoint(), 
+			new SupportPoint(), new SupportPoint(), new SupportPoint()};
+	
+	/**
+	 * The direction GJK was searching in when it last finished for the pair, which
+	 * separates the entities if they weren't intersecting. Zero if there is none. It is
+	 * in the Minkowski difference of entity A minus entity B, so only holds while the
+	 * pair keeps the order of its entities.
+	 */
+	public final Vector3f direction = new Vector3f();
+	
+	/**
+	 * The vertex of each hull's last support point in each octant of its local
+	 * directions, the first 8 being of hull A and the rest of hull B, or -1 where none
+	 * has been found. The search for the next support point in an octant starts there.
+	 * Each half is only valid for its own hull, so for as long as the pair keeps the
+	 * order of its entities.
+	 */
+	public final int[] supportStarts = new int[16];
+	
+	/**
+	 * Constructs an empty simplex, with no search direction or support points found.
+	 */
+	public Simplex()
+	{
+		Arrays.fill(supportStarts, -1);
+	}
+	
 	/**
 	 * Sets the simplex as a tetrahedron (3-simplex) with the given points a, b, c, and d.
 	 *
@@ -110,7 +150,25 @@ public class Simplex
 	}
 	
 	/**
-	 * Clears the simplex to contain no points.
+	 * Returns a support point owned by the simplex that isn't currently one of its
+	 * points, so that a new point can be filled in and pushed without being allocated.
+	 * 
+	 * @return A free support point.
+	 */
+	public SupportPoint next()
+	{
+		for (SupportPoint point : points)
+		{
+			if (point != a && point != b && point != c && point != d)
+			{
+				return point;
+			}
+		}
+		throw new IllegalStateException("Simplex has no free support point.");
+	}
+	
+	/**
+	 * Clears the simplex to contain no points, keeping the last search direction.
 	 */
 	public void clear()
 	{
@@ -118,6 +176,17 @@ public class Simplex
 		a = b = c = d = null;
 	}
 	
+	/**
+	 * Clears the simplex, its last search direction and the vertices its support points
+	 * were found at, for when it is used for a new pair.
+	 */
+	public void reset()
+	{
+		clear();
+		direction.zero();
+		Arrays.fill(supportStarts, -1);
+	}
+	
 	/**
 	 * Returns the number of points currently in the simplex.
 	 * 
@@ -0,0 +1,78 @@
+package uk.ac.bham.cs.domct.physicsengine.systems.physics.collision.detection.narrowphase;
+
+import org.joml.Vector3f;
+
+import uk.ac.bham.cs.domct.physicsengine.component.Transform;
+import uk.ac.bham.cs.domct.physicsengine.entity.Entity;
+
+/**
+ * An implicit sphere, centred on the origin of its entity. Its support point in any
+ * direction is found directly from its radius, rather than by searching the vertices
+ * of a mesh, so the cost of a support query doesn't depend on how finely the sphere is
+ * rendered.
+ *
+ * @author Dominic Cogan-Tucker
+ *
+ */
+public class SphereHull extends ConvexHull
+{
+	/**
+	 * The radius of the sphere in local space.
+	 */
+	private final float radius;
+
+	/**
+	 * Constructs an implicit sphere for the given entity.
+	 *
+	 * @param entity The entity the sphere belongs to.
+	 * @param radius The radius of the sphere in local space, before the entity is scaled.
+	 * @throws IllegalArgumentException if the radius isn't positive.
+	 */
+	public SphereHull(Entity entity, float radius)
+	{
+		super(entity, null);
+		if (!(radius > 0))
+		{
+			throw new IllegalArgumentException("Radius of a sphere must be positive.");
+		}
+		this.radius = radius;
+	}
+
+	/**
+	 * Generates the support point of the sphere in the given direction. The direction
+	 * is taken into local space, where the support point is the point of the sphere in
+	 * that direction, then the point is transformed back into world space. This gives the
+	 * exact support point of the ellipsoid the sphere becomes if it is scaled unevenly.
+	 * The entity's transform is only read, so it must have been updated since the entity
+	 * last moved.
+	 *
+	 * @param worldDirection The direction to generate the support point in.
+	 * @param starts Unused, as the sphere has no vertices to search.
+	 * @param offset Unused.
+	 * @param dest The vector to hold the support point.
+	 *
+	 * @return dest, holding the support point of the sphere in the given direction.
+	 */
+	@Override
+	protected Vector3f generateSupportPoint(Vector3f worldDirection, int[] starts, int offset, Vector3f dest)
+	{
+		Transform transform = entity.getComponent(Transform.class);
+		Vector3f direction = transform.toLocalDirection(dest.set(worldDirection));
+		float length = direction.length();
+		if (length > 0)
+		{
+			direction.mul(radius / length);
+		}
+		return transform.matrix.transformPosition(direction.x, direction.y, direction.z, dest);
+	}
+
+	/**
+	 * Returns the radius of the sphere in local space.
+	 *
+	 * @return The radius of the sphere.
+	 */
+	public float getRadius()
+	{
+		return radius;
+	}
+}
@@ -14,17 +14,17 @@ public class SupportPoint
 	/**
 	 * The Minkowski difference value.
 	 */
-	public Vector3f v;
+	public Vector3f v = new Vector3f();
 	
 	/**
 	 * Support point of entity a.
 	 */
-	public Vector3f a;
+	public Vector3f a = new Vector3f();
 	
 	/**
 	 * Support point of entity b.
 	 */
-	public Vector3f b;
+	public Vector3f b = new Vector3f();
 	
 	/**
 	 * Returns whether this support point is equal to another support point.
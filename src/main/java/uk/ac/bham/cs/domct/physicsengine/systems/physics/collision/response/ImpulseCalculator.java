@@ -81,13 +81,22 @@ public class ImpulseCalculator
 	private Vector3f dirOfMotion = new Vector3f();
 	
 	/**
-	 * Constructs an ImpulseCalculator for the given collision. Private to ensure the static calculate
-	 * method is called to perform initiation.
+	 * Scratch vectors reused for every collision.
+	 */
+	private final Vector3f resultant = new Vector3f();
+	private final Vector3f scratch = new Vector3f();
+	private final Vector3f torqueDir = new Vector3f();
+	private final Vector3f entityOrientation = new Vector3f();
+	
+	/**
+	 * Calculates the resultant force of the given collision and applies it to the
+	 * entities involved. One calculator is reused for every collision, so that none
+	 * of its vectors are allocated.
 	 * 
 	 * @param collision The collision to calculate impulse for.
 	 * @param dt The frame time.
 	 */
-	private ImpulseCalculator(Collision collision, float dt)
+	public void calculate(Collision collision, float dt)
 	{
 		this.a = collision.getEntityA();
 		this.b = collision.getEntityB();
@@ -100,18 +109,7 @@ public class ImpulseCalculator
 		Mass massA = a.getComponent(Mass.class);
 		Mass massB = b.getComponent(Mass.class);
 		inverseMassTotal = massA.inverseMass + massB.inverseMass;
-	}
-	
-	/**
-	 * Constructs a ImpulseCalculator then initiates the resultant force calculations.
-	 * 
-	 * @param collision The collision to calculate impulse for.S
-	 * @param dt The frame time.
-	 */
-	public static void calculate(Collision collision, float dt)
-	{
-		ImpulseCalculator impc = new ImpulseCalculator(collision, dt);
-		impc.generateForces();
+		generateForces();
 	}
 	
 	/**
@@ -156,7 +154,7 @@ public class ImpulseCalculator
 			mov.momentum.set(0);
 		}
 		dirOfMotion.set(mov.momentum).normalize();
-		if (mov.momentum.equals(new Vector3f()))
+		if (mov.momentum.equals(0, 0, 0))
 		{
 			dirOfMotion.set(0, -1, 0);
 		}
@@ -165,17 +163,17 @@ public class ImpulseCalculator
 		{
 			contact.worldNormal.negate();
 		}
-		else if (dirOfMotion.equals(new Vector3f(0, 1, 0)) || dirOfMotion.equals(new Vector3f(0, -1, 0)) && (Math.abs(dirOfMotion.dot(contact.worldNormal)) < 0.55f))
+		else if (dirOfMotion.equals(0, 1, 0) || dirOfMotion.equals(0, -1, 0) && (Math.abs(dirOfMotion.dot(contact.worldNormal)) < 0.55f))
 		{
 			contact.worldNormal.set(dirOfMotion).negate();
 		}
 		
-		Vector3f relativeVelocity = new Vector3f(mov.velocity).mul(restitution + 1).negate();
+		Vector3f relativeVelocity = scratch.set(mov.velocity).mul(restitution + 1).negate();
 		float normalVelocity = relativeVelocity.dot(contact.worldNormal);
 		float impulseMagnitude = normalVelocity / inverseMassTotal;
-		Vector3f resultant = new Vector3f(contact.worldNormal).mul(impulseMagnitude).div(dt);
+		resultant.set(contact.worldNormal).mul(impulseMagnitude).div(dt);
 		
-		if (resultant.equals(new Vector3f(Float.NaN)))
+		if (resultant.equals(Float.NaN, Float.NaN, Float.NaN))
 		{
 			resultant.set(0);
 		}
@@ -201,17 +199,16 @@ public class ImpulseCalculator
 	{
 		Movable mov = a.getComponent(Movable.class);
 		State state = a.getComponent(State.class);
-		Vector3f torqueDir = new Vector3f(contact.worldNormal).cross(dirOfMotion);
-		Vector3f entityOrientation = new Vector3f(0, 1, 0)
-				.rotateX((float) Math.toRadians(state.rotation.x ))
-				.rotateY((float) Math.toRadians(state.rotation.y))
-				.rotateZ((float) Math.toRadians(state.rotation.z));
-		Vector3f torque = new Vector3f();
+		torqueDir.set(contact.worldNormal).cross(dirOfMotion);
+		state.getOrientation().transform(entityOrientation.set(0, 1, 0));
 		if ((torqueDir.x != 0 || torqueDir.y != 0 || torqueDir.z != 0) && contact.worldNormal.dot(entityOrientation) < 0.9985f && contact.worldNormal.dot(entityOrientation) > -0.9985f)
 		{
-			torque.set(torqueDir.normalize().mul(9.81f * a.getComponent(Mass.class).mass));
+			mov.torque.set(torqueDir.normalize().mul(9.81f * a.getComponent(Mass.class).mass));
+		}
+		else
+		{
+			mov.torque.set(0);
 		}
-		mov.torque.set(torque);
 		if (a instanceof MovableCollidableBall)
 		{
 			mov.torque.mul(5);
@@ -226,18 +223,18 @@ public class ImpulseCalculator
 	private void applyFriction(Entity e)
 	{
 		Movable mov = e.getComponent(Movable.class);
-		if (Math.abs(new Vector3f(dirOfMotion).dot(contact.worldNormal)) < 0.25)
+		if (Math.abs(dirOfMotion.dot(contact.worldNormal)) < 0.25)
 		{
-			float angle = (float) (Math.PI - new Vector3f(0, -1, 0).angle(contact.worldNormal));
-			Vector3f resultant = new Vector3f(contact.worldNormal)
+			float angle = (float) (Math.PI - scratch.set(0, -1, 0).angle(contact.worldNormal));
+			Vector3f resultant = this.resultant.set(contact.worldNormal)
 					.mul((float) (e.getComponent(Mass.class).mass * 9.81f * Math.cos(angle)));
-			Vector3f frictionalForce = new Vector3f(dirOfMotion).negate().mul(resultant.length() * friction);
+			Vector3f frictionalForce = scratch.set(dirOfMotion).negate().mul(resultant.length() * friction);
 			if (frictionalForce.length() != 0)
 			{
 				mov.force.set(0);
 				mov.momentum.set(0);
 			}
-			else if (new Vector3f(mov.force).add(frictionalForce).dot(new Vector3f(0, -1, 0)) <= 0 || contact.worldNormal.length() == 0)
+			else if (resultant.set(mov.force).add(frictionalForce).dot(0, -1, 0) <= 0 || contact.worldNormal.length() == 0)
 			{
 				mov.force.add(frictionalForce);
 			}
@@ -1,14 +1,15 @@
 package uk.ac.bham.cs.domct.physicsengine.systems.physics.dynamics;
 
-import java.util.Map;
+import java.util.List;
 
-import uk.ac.bham.cs.domct.physicsengine.component.Component;
 import uk.ac.bham.cs.domct.physicsengine.component.Mass;
 import uk.ac.bham.cs.domct.physicsengine.component.Movable;
 import uk.ac.bham.cs.domct.physicsengine.component.State;
-import uk.ac.bham.cs.domct.physicsengine.entity.Camera;
-import uk.ac.bham.cs.domct.physicsengine.entity.Entity;
+import uk.ac.bham.cs.domct.physicsengine.component.View;
+import uk.ac.bham.cs.domct.physicsengine.systems.Archetype;
 import uk.ac.bham.cs.domct.physicsengine.systems.EngineSystem;
+import uk.ac.bham.cs.domct.physicsengine.systems.Query;
+import uk.ac.bham.cs.domct.physicsengine.systems.World;
 import uk.ac.bham.cs.domct.physicsengine.systems.physics.collision.response.ImpulseCalculator;
 
 /**
@@ -19,18 +20,37 @@ import uk.ac.bham.cs.domct.physicsengine.systems.physics.collision.response.Impu
  */
 public final class DynamicsSystem extends EngineSystem
 {
+	/**
+	 * The entities moved by the system.
+	 */
+	private final Query movingEntities = world.query(Movable.class, State.class, Mass.class).without(View.class);
+	
 	/**
 	 * The time taken for a frame.
 	 */
 	private float dt;
 	
 	/**
-	 * Constructs a dynamic system, with a given frame time.
+	 * Constructs a dynamic system moving the entities of the default world, with a
+	 * given frame time.
 	 * 
 	 * @param dt The frame time for calculations.
 	 */
 	public DynamicsSystem(double dt)
 	{
+		this(World.getDefault(), dt);
+	}
+	
+	/**
+	 * Constructs a dynamic system moving the entities of the given world, with a
+	 * given frame time.
+	 * 
+	 * @param world The world of the system.
+	 * @param dt The frame time for calculations.
+	 */
+	public DynamicsSystem(World world, double dt)
+	{
+		super(world);
 		this.dt = (float) dt;
 	}
 	
@@ -44,29 +64,34 @@ public final class DynamicsSystem extends EngineSystem
 	}
 	
 	/**
-	 * Moves all entities using their acceleration and velocity.
+	 * Moves all entities using their acceleration and velocity. The camera, which has
+	 * a view and no mass, is not moved.
 	 */
-	private static void moveEntities(float dt)
+	private void moveEntities(float dt)
 	{
-		Map<Entity, Component> entitiesMap = getEntities(Movable.class);
-		entitiesMap.forEach((e, c) ->
+		List<Archetype> archetypes = movingEntities.getArchetypes();
+		for (int a = 0; a < archetypes.size(); a++)
 		{
-			if (e.hasComponent(State.class) && !(e instanceof Camera))
+			Archetype archetype = archetypes.get(a);
+			Movable[] movables = archetype.getColumn(Movable.class);
+			State[] states = archetype.getColumn(State.class);
+			Mass[] masses = archetype.getColumn(Mass.class);
+			for (int i = 0; i < archetype.size(); i++)
 			{
-				EulerIntegrator.integrate(dt, e);
-				reapplyExternal(e, (Movable) c);
+				EulerIntegrator.integrate(dt, movables[i], states[i], masses[i]);
+				reapplyExternal(movables[i], masses[i]);
 			}
-		});
+		}
 	}
 	
 	/**
 	 * Reapply the external force of gravity each frame.
 	 * 
-	 * @param e The entity to apply the force too.
 	 * @param m The entity's movable component.
+	 * @param mass The entity's mass component.
 	 */
-	private static void reapplyExternal(Entity e, Movable m)
+	private static void reapplyExternal(Movable m, Mass mass)
 	{
-		m.force.set(0, -ImpulseCalculator.GRAVITAIONAL_ACCELERATION * (e.getComponent(Mass.class)).mass, 0);
+		m.force.set(0, -ImpulseCalculator.GRAVITAIONAL_ACCELERATION * mass.mass, 0);
 	}
 }
@@ -1,12 +1,9 @@
 package uk.ac.bham.cs.domct.physicsengine.systems.physics.dynamics;
 
-import org.joml.Vector3f;
-
 import uk.ac.bham.cs.domct.physicsengine.component.Mass;
 import uk.ac.bham.cs.domct.physicsengine.component.Movable;
 import uk.ac.bham.cs.domct.physicsengine.component.State;
 import uk.ac.bham.cs.domct.physicsengine.entity.Entity;
-import uk.ac.bham.cs.domct.physicsengine.utils.Vector3fUtils;
 
 /**
  * Class to perform implicit Euler integration to calculate entity movement each frame.
@@ -18,6 +15,7 @@ public final class EulerIntegrator
 {
 	/**
 	 * Integrates the force applied to each entity to calculate new position and rotation each frame.
+	 * The orientation is rotated by the angular velocity about the world axes.
 	 * 
 	 * @param dt The time taken for a frame.
 	 * @param entities The entities to integrate force for.
@@ -28,20 +26,31 @@ public final class EulerIntegrator
 		{
 			if (e.hasComponent(Movable.class))
 			{
-				Movable mov = e.getComponent(Movable.class);
-				State state = e.getComponent(State.class);
-				setPrevious(mov, state);
-				Mass mass = e.getComponent(Mass.class);
-				mov.momentum.add(new Vector3f(mov.force).mul(dt));
-				mov.velocity = new Vector3f(mov.momentum).mul(mass.inverseMass);
-				state.position.add(new Vector3f(mov.velocity).mul(dt));
-				mov.angMomentum.set(new Vector3f(mov.torque).mul(dt));
-				mov.angVelocity.set(mov.angMomentum).mul(mass.inverseInertia);
-				state.rotation.add(Vector3fUtils.toDegrees(new Vector3f(mov.angVelocity).mul(dt)));
+				integrate(dt, e.getComponent(Movable.class), e.getComponent(State.class), e.getComponent(Mass.class));
 			}
 		}
 	}
 	
+	/**
+	 * Integrates the force applied to an entity with the given components to calculate
+	 * its new position and rotation.
+	 * 
+	 * @param dt The time taken for a frame.
+	 * @param mov The movable component of the entity.
+	 * @param state The state component of the entity.
+	 * @param mass The mass component of the entity.
+	 */
+	public static void integrate(float dt, Movable mov, State state, Mass mass)
+	{
+		setPrevious(mov, state);
+		mov.momentum.fma(dt, mov.force);
+		mov.velocity.set(mov.momentum).mul(mass.inverseMass);
+		state.position.fma(dt, mov.velocity);
+		mov.angMomentum.set(mov.torque).mul(dt);
+		mov.angVelocity.set(mov.angMomentum).mul(mass.inverseInertia);
+		state.rotate(dt, mov.angVelocity);
+	}
+	
 	/**
 	 * Step backs the movable and state values of the given entities to the previous frame.
 	 * 
@@ -51,40 +60,58 @@ public final class EulerIntegrator
 	{
 		for (Entity e : entities)
 		{
-			if (e.hasComponent(Movable.class))
-			{
-				Movable mov = e.getComponent(Movable.class);
-				State state = e.getComponent(State.class);
-				mov.force.set(mov.previous.force);
-				mov.momentum.set(mov.previous.momentum);
-				mov.velocity.set(mov.previous.velocity);
-				mov.torque.set(mov.previous.torque.negate());
-				mov.angMomentum.set(mov.previous.angMomentum);
-				mov.angVelocity.set(mov.previous.angVelocity);
-				state.position.set(state.previous.position);
-				state.rotation.set(state.previous.rotation);
-			}
+			stepBack(e);
+		}
+	}
+	
+	/**
+	 * Step backs the movable and state values of the given entity to the previous frame,
+	 * if it can move.
+	 * 
+	 * @param e The entity to step back.
+	 */
+	public static void stepBack(Entity e)
+	{
+		if (e.hasComponent(Movable.class))
+		{
+			Movable mov = e.getComponent(Movable.class);
+			State state = e.getComponent(State.class);
+			mov.force.set(mov.previous.force);
+			mov.momentum.set(mov.previous.momentum);
+			mov.velocity.set(mov.previous.velocity);
+			mov.torque.set(mov.previous.torque.negate());
+			mov.angMomentum.set(mov.previous.angMomentum);
+			mov.angVelocity.set(mov.previous.angVelocity);
+			state.position.set(state.previous.position);
+			state.setOrientation(state.previous.getOrientation());
 		}
 	}
 	
 	/**
 	 * Stores the current frame values at the end of the frame to be
-	 * accessed if a step back is needed.
+	 * accessed if a step back is needed. The previous components are
+	 * only created the first time, after which they are overwritten.
 	 * 
 	 * @param mov The current movable component.
 	 * @param state The current state component.
 	 */
 	private static void setPrevious(Movable mov, State state)
 	{
-		mov.previous = new Movable();
+		if (mov.previous == null)
+		{
+			mov.previous = new Movable();
+		}
+		if (state.previous == null)
+		{
+			state.previous = new State();
+		}
 		mov.previous.force.set(mov.force);
 		mov.previous.momentum.set(mov.momentum);
 		mov.previous.velocity.set(mov.velocity);
 		mov.previous.torque.set(mov.torque);
 		mov.previous.angMomentum.set(mov.angMomentum);
 		mov.previous.angVelocity.set(mov.angVelocity);
-		state.previous = new State();
 		state.previous.position.set(state.position);
-		state.previous.rotation.set(state.rotation);
+		state.previous.setOrientation(state.getOrientation());
 	}
 }
@@ -14,6 +14,7 @@ import uk.ac.bham.cs.domct.physicsengine.component.Component;
 import uk.ac.bham.cs.domct.physicsengine.component.Material;
 import uk.ac.bham.cs.domct.physicsengine.entity.Entity;
 import uk.ac.bham.cs.domct.physicsengine.systems.EngineSystem;
+import uk.ac.bham.cs.domct.physicsengine.systems.World;
 
 /**
  * The system that deals with the creation of all materials.
@@ -26,7 +27,17 @@ final class MaterialSystem extends EngineSystem
 	/**
 	 * A set of all the used materials.
 	 */
-	private static Set<Material> materials = new HashSet<>();
+	private Set<Material> materials = new HashSet<>();
+	
+	/**
+	 * Constructs a material system for the materials of the given world.
+	 * 
+	 * @param world The world of the system.
+	 */
+	MaterialSystem(World world)
+	{
+		super(world);
+	}
 	
 	/**
 	 * Creates all entity materials.
@@ -49,9 +60,9 @@ final class MaterialSystem extends EngineSystem
 	/**
 	 * Creates the textures associated all entities to be rendered.
 	 */
-	private static void createAll()
+	private void createAll()
 	{
-		Map<Entity, Component> entitiesMap = getEntities(Material.class);
+		Map<Entity, Component> entitiesMap = world.getEntities(Material.class);
 		// put materials into a set removing any duplicates.
 		entitiesMap.forEach((e, c) -> materials.add((Material) c));
 		materials.forEach(MaterialSystem::create);
@@ -60,7 +71,7 @@ final class MaterialSystem extends EngineSystem
 	/**
 	 * Deletes all the data stored for all the materials.
 	 */
-	private static void destroyAll()
+	private void destroyAll()
 	{
 		materials.forEach(MaterialSystem::destroy);
 	}
@@ -10,6 +10,7 @@ import uk.ac.bham.cs.domct.physicsengine.component.Material;
 import uk.ac.bham.cs.domct.physicsengine.component.Mesh;
 import uk.ac.bham.cs.domct.physicsengine.entity.Entity;
 import uk.ac.bham.cs.domct.physicsengine.systems.EngineSystem;
+import uk.ac.bham.cs.domct.physicsengine.systems.World;
 import uk.ac.bham.cs.domct.physicsengine.systems.rendering.openGLObjects.Vao;
 
 /**
@@ -20,6 +21,24 @@ import uk.ac.bham.cs.domct.physicsengine.systems.rendering.openGLObjects.Vao;
  */
 final class MeshSystem extends EngineSystem
 {	
+	/**
+	 * The map of all entities to render, shared with the render system.
+	 */
+	private Map<Mesh, Map<Material, List<Entity>>> renderMap;
+	
+	/**
+	 * Constructs a mesh system for the meshes of the given world, filling the given
+	 * map of entities to render.
+	 * 
+	 * @param world The world of the system.
+	 * @param renderMap The map of entities to render.
+	 */
+	MeshSystem(World world, Map<Mesh, Map<Material, List<Entity>>> renderMap)
+	{
+		super(world);
+		this.renderMap = renderMap;
+	}
+	
 	/**
 	 * Creates the renderMap and then all entity meshes.
 	 */
@@ -42,9 +61,9 @@ final class MeshSystem extends EngineSystem
 	/**
 	 * Creates the meshes for all entities.
 	 */
-	private static void createAll()
+	private void createAll()
 	{
-		RenderSystem.entities.forEach((mesh, entities) ->
+		renderMap.forEach((mesh, entities) ->
 				entities.forEach((material, list) ->
 						create(mesh, material)));
 	}
@@ -52,9 +71,9 @@ final class MeshSystem extends EngineSystem
 	/**
 	 * Deletes all mesh data.
 	 */
-	private static void destroyAll()
+	private void destroyAll()
 	{
-		RenderSystem.entities.forEach((mesh, materialMap) ->
+		renderMap.forEach((mesh, materialMap) ->
 				destroy(mesh));
 	}
 	
@@ -83,17 +102,17 @@ final class MeshSystem extends EngineSystem
 	/**
 	 * Creates a map of all entities to render. 
 	 */
-	private static void createRenderMap()
+	private void createRenderMap()
 	{
-		Map<Entity, Component> entitiesMap = getEntities(Mesh.class);
+		Map<Entity, Component> entitiesMap = world.getEntities(Mesh.class);
 		entitiesMap.forEach((e, c) ->
 			{
 				Map<Material, List<Entity>> map;
 				List<Entity> eList;
 				Mesh m = (Mesh) c;
-				if (RenderSystem.entities.get(m) != null)
+				if (renderMap.get(m) != null)
 				{
-					map = RenderSystem.entities.get(m);
+					map = renderMap.get(m);
 					Material mat;
 					if (e.hasComponent(Material.class))
 					{
@@ -127,7 +146,7 @@ final class MeshSystem extends EngineSystem
 						map.put(null, eList);
 					}
 				}
-				RenderSystem.entities.put((Mesh) c, map);
+				renderMap.put((Mesh) c, map);
 			});
 	}
 }
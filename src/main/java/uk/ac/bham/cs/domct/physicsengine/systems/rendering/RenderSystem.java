@@ -10,6 +10,7 @@ import java.util.Map;
 import uk.ac.bham.cs.domct.physicsengine.component.Material;
 import uk.ac.bham.cs.domct.physicsengine.component.Mesh;
 import uk.ac.bham.cs.domct.physicsengine.component.State;
+import uk.ac.bham.cs.domct.physicsengine.component.Transform;
 import uk.ac.bham.cs.domct.physicsengine.component.View;
 import uk.ac.bham.cs.domct.physicsengine.entity.Camera;
 import uk.ac.bham.cs.domct.physicsengine.entity.Entity;
@@ -42,28 +43,30 @@ public final class RenderSystem extends EngineSystem
 	private EntityShader shader;
 	
 	/**
-	 * The material system.
+	 * The map of all entities to render.
 	 */
-	private MaterialSystem materialSystem = new MaterialSystem();
+	private Map<Mesh, Map<Material, List<Entity>>> entities = new HashMap<>();
 	
 	/**
-	 * The mesh system.
+	 * The material system.
 	 */
-	private MeshSystem meshSystem = new MeshSystem();
+	private MaterialSystem materialSystem = new MaterialSystem(world);
 	
 	/**
-	 * The map of all entities to render.
+	 * The mesh system.
 	 */
-	protected static Map<Mesh, Map<Material, List<Entity>>> entities = new HashMap<>();
+	private MeshSystem meshSystem = new MeshSystem(world, entities);
 	
 	/**
-	 * Constructs a render system with the given camera view and shader program. 
+	 * Constructs a render system with the given camera view and shader program,
+	 * rendering the entities in the camera's world.
 	 * 
 	 * @param cam The camera to view the scene from.
 	 * @param s The shader program to use.
 	 */
 	public RenderSystem(Camera cam, EntityShader s)
 	{
+		super(cam.getWorld());
 		view = cam.getComponent(View.class);
 		cameraState = cam.getComponent(State.class);
 		shader = s;
@@ -150,8 +153,7 @@ public final class RenderSystem extends EngineSystem
 	private void drawEntity(Entity entity, Mesh mesh)
 	{
 		State entityState = entity.getComponent(State.class);
-		shader.setModelMatrix(MatrixUtils.transformMatrix(entityState.position, 
-				entityState.rotation, entityState.scale));
+		shader.setModelMatrix(entity.getComponent(Transform.class).update(entityState).matrix);
 		shader.setViewMatrix(MatrixUtils.viewMatrix(cameraState.position, cameraState.rotation));
 		shader.setProjectionMatrix(view.window.getProjectionMatrix());
 		glDrawElements(GL_TRIANGLES, mesh.indices.length, GL_UNSIGNED_INT, 0);
@@ -0,0 +1,64 @@
+package uk.ac.bham.cs.domct.physicsengine.collision;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.lang.management.ManagementFactory;
+
+import org.joml.Vector2f;
+import org.joml.Vector3f;
+import org.junit.Test;
+
+import com.sun.management.ThreadMXBean;
+
+import uk.ac.bham.cs.domct.physicsengine.entity.CollidablePlane;
+import uk.ac.bham.cs.domct.physicsengine.entity.MovableCollidableBox;
+import uk.ac.bham.cs.domct.physicsengine.systems.World;
+import uk.ac.bham.cs.domct.physicsengine.systems.physics.collision.CollisionSystem;
+import uk.ac.bham.cs.domct.physicsengine.systems.physics.dynamics.DynamicsSystem;
+
+/**
+ * Tests that a physics step allocates nothing once the scene has warmed up.
+ *
+ * @author Dominic Cogan-Tucker
+ *
+ */
+public class AllocationTests
+{
+	private static final double DT = 1 / 60.0;
+
+	@Test
+	public void warmedUpStepAllocatesNothing()
+	{
+		// A thousand boxes stacked in ten by ten columns on a plane.
+		World world = new World();
+		CollidablePlane.create(world, new Vector3f(), new Vector3f(), new Vector2f(50));
+		for (int x = 0; x < 10; x++)
+		{
+			for (int z = 0; z < 10; z++)
+			{
+				for (int y = 0; y < 10; y++)
+				{
+					MovableCollidableBox.create(world, new Vector3f(2 * x - 9, 0.5f + y, 2 * z - 9), new Vector3f(), 1, 1);
+				}
+			}
+		}
+		CollisionSystem collisionSystem = new CollisionSystem(world, DT);
+		world.addSystem(new DynamicsSystem(world, DT)).addSystem(collisionSystem);
+		for (int i = 0; i < 100; i++)
+		{
+			world.update();
+		}
+		assertTrue(collisionSystem.getCollidingPairs().size() > 0);
+
+		ThreadMXBean threads = (ThreadMXBean) ManagementFactory.getThreadMXBean();
+		long thread = Thread.currentThread().getId();
+		// The bytes allocated by reading the counter itself, if any, are discounted.
+		long before = threads.getThreadAllocatedBytes(thread);
+		long overhead = threads.getThreadAllocatedBytes(thread) - before;
+		before = threads.getThreadAllocatedBytes(thread);
+		world.update();
+		long allocated = threads.getThreadAllocatedBytes(thread) - before - overhead;
+		assertEquals(0, allocated);
+	}
+}
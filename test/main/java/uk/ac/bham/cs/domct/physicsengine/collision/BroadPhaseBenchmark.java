@@ -0,0 +1,217 @@
+package uk.ac.bham.cs.domct.physicsengine.collision;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.IdentityHashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.function.Supplier;
+
+import org.joml.Vector2f;
+import org.joml.Vector3f;
+
+import uk.ac.bham.cs.domct.physicsengine.component.State;
+import uk.ac.bham.cs.domct.physicsengine.entity.CollidablePlane;
+import uk.ac.bham.cs.domct.physicsengine.entity.Entity;
+import uk.ac.bham.cs.domct.physicsengine.entity.MovableCollidableBox;
+import uk.ac.bham.cs.domct.physicsengine.systems.EngineSystem;
+import uk.ac.bham.cs.domct.physicsengine.systems.physics.collision.detection.broadphase.BroadPhase;
+import uk.ac.bham.cs.domct.physicsengine.systems.physics.collision.detection.broadphase.BroadPhaseDetector;
+import uk.ac.bham.cs.domct.physicsengine.systems.physics.collision.detection.broadphase.BruteForceBroadPhase;
+import uk.ac.bham.cs.domct.physicsengine.systems.physics.collision.detection.broadphase.DynamicAabbTree;
+import uk.ac.bham.cs.domct.physicsengine.systems.physics.collision.detection.broadphase.PairBuffer;
+import uk.ac.bham.cs.domct.physicsengine.systems.physics.collision.detection.broadphase.ParallelSweepAndPrune;
+import uk.ac.bham.cs.domct.physicsengine.systems.physics.collision.detection.broadphase.SpatialHashGrid;
+import uk.ac.bham.cs.domct.physicsengine.systems.physics.collision.detection.broadphase.SweepAndPrune;
+
+/**
+ * Benchmark comparing the broad phase implementations. Every broad phase is run over the
+ * same seeded scenes of randomly placed and rotated boxes resting over a floor, with the
+ * boxes moved a small amount between frames. The average time to update the broad phase
+ * and generate the pairs is reported per frame, and the pairs found by every broad phase
+ * are checked against those found by the brute force reference.
+ *
+ * @author Dominic Cogan-Tucker
+ *
+ */
+public class BroadPhaseBenchmark
+{
+	private static final long SEED = 42;
+	private static final int[] SCENE_SIZES = {100, 1000, 10000, 50000};
+	private static final int WARM_UP_FRAMES = 2;
+	private static final int MEASURED_FRAMES = 5;
+
+	/**
+	 * The broad phases to compare, with the reference first.
+	 */
+	private final Map<String, Supplier<BroadPhase>> broadPhases = new LinkedHashMap<>();
+
+	/**
+	 * Constructs the benchmark, running the parallel broad phase on the given number
+	 * of threads.
+	 *
+	 * @param threads The number of threads for the parallel broad phase.
+	 */
+	public BroadPhaseBenchmark(int threads)
+	{
+		broadPhases.put("BruteForce", BruteForceBroadPhase::new);
+		broadPhases.put("SweepAndPrune", SweepAndPrune::new);
+		broadPhases.put("ParallelSAP x" + threads, () -> new ParallelSweepAndPrune(threads));
+		broadPhases.put("DynamicAabbTree", DynamicAabbTree::new);
+		broadPhases.put("SpatialHashGrid", SpatialHashGrid::new);
+	}
+
+	/**
+	 * Runs every broad phase over a scene of the given number of bodies.
+	 *
+	 * @param size The number of bodies in the scene.
+	 * @return true if every broad phase found the same pairs as the reference.
+	 */
+	private boolean runScene(int size)
+	{
+		EngineSystem.clear();
+		Random random = new Random(SEED);
+		List<Entity> bodies = createScene(size, random);
+
+		List<String> names = new ArrayList<>(broadPhases.keySet());
+		List<BroadPhase> instances = new ArrayList<>();
+		broadPhases.values().forEach(s -> instances.add(s.get()));
+		long[] totalTime = new long[instances.size()];
+		int[] pairCount = new int[instances.size()];
+		boolean consistent = true;
+
+		Map<Entity, Integer> ids = new IdentityHashMap<>();
+		for (int i = 0; i < bodies.size(); i++)
+		{
+			ids.put(bodies.get(i), i);
+		}
+		PairBuffer pairs = new PairBuffer();
+
+		for (int frame = 0; frame < WARM_UP_FRAMES + MEASURED_FRAMES; frame++)
+		{
+			moveBodies(bodies, random);
+			bodies.forEach(BroadPhaseDetector::updateBBox);
+			long[] reference = null;
+			for (int i = 0; i < instances.size(); i++)
+			{
+				pairs.clear();
+				long start = System.nanoTime();
+				instances.get(i).update(bodies);
+				instances.get(i).findPairs(pairs);
+				long time = System.nanoTime() - start;
+				if (frame >= WARM_UP_FRAMES)
+				{
+					totalTime[i] += time;
+				}
+				pairCount[i] = pairs.size();
+
+				long[] found = pairKeys(pairs, ids);
+				if (reference == null)
+				{
+					reference = found;
+				}
+				else if (!Arrays.equals(reference, found))
+				{
+					System.out.println("  " + names.get(i) + " found " + found.length
+							+ " pairs in frame " + frame + ", expected " + reference.length);
+					consistent = false;
+				}
+			}
+		}
+
+		System.out.printf("%d bodies:%n", size);
+		for (int i = 0; i < instances.size(); i++)
+		{
+			System.out.printf("  %-18s %10.3f ms/frame %8d pairs%n", names.get(i),
+					totalTime[i] / 1E6 / MEASURED_FRAMES, pairCount[i]);
+		}
+		instances.forEach(BroadPhase::close);
+		return consistent;
+	}
+
+	/**
+	 * Creates a floor of planes and the given number of randomly placed boxes above it,
+	 * spread over a volume that grows with the number of boxes.
+	 *
+	 * @param size The number of boxes.
+	 * @param random The seeded random to place the boxes with.
+	 * @return The list of all collidable entities in the scene.
+	 */
+	private static List<Entity> createScene(int size, Random random)
+	{
+		List<Entity> bodies = new ArrayList<>();
+		float width = 2.5f * (float) Math.cbrt(size);
+		for (int x = 0; x < 2; x++)
+		{
+			for (int z = 0; z < 2; z++)
+			{
+				bodies.add(CollidablePlane.create(new Vector3f(width * (x - 0.5f) / 2, -0.5f, width * (z - 0.5f) / 2),
+						new Vector3f(), new Vector2f(width / 2)));
+			}
+		}
+		for (int i = 0; i < size; i++)
+		{
+			Vector3f pos = new Vector3f(random.nextFloat(), random.nextFloat(), random.nextFloat())
+					.mul(width).sub(width / 2, 0, width / 2);
+			Vector3f rot = new Vector3f(random.nextFloat(), random.nextFloat(), random.nextFloat()).mul(360);
+			bodies.add(MovableCollidableBox.create(pos, rot, 0.5f + random.nextFloat(), 1));
+		}
+		return bodies;
+	}
+
+	/**
+	 * Moves every box a small random distance, with one in ten moving further.
+	 *
+	 * @param bodies The entities in the scene.
+	 * @param random The seeded random to move the boxes with.
+	 */
+	private static void moveBodies(List<Entity> bodies, Random random)
+	{
+		for (int i = 0; i < bodies.size(); i++)
+		{
+			Entity e = bodies.get(i);
+			if (e instanceof MovableCollidableBox)
+			{
+				float speed = i % 10 == 0 ? 0.5f : 0.02f;
+				e.getComponent(State.class).position.add((random.nextFloat() - 0.5f) * speed,
+						(random.nextFloat() - 0.5f) * speed, (random.nextFloat() - 0.5f) * speed);
+			}
+		}
+	}
+
+	/**
+	 * Converts the pairs into a sorted array of keys, each identifying an unordered pair
+	 * of entities, so that pair sets can be compared.
+	 *
+	 * @param pairs The pairs found by a broad phase.
+	 * @param ids The index of each entity.
+	 * @return The sorted pair keys.
+	 */
+	private static long[] pairKeys(PairBuffer pairs, Map<Entity, Integer> ids)
+	{
+		long[] keys = new long[pairs.size()];
+		for (int i = 0; i < pairs.size(); i++)
+		{
+			long a = ids.get(pairs.getEntityA(i));
+			long b = ids.get(pairs.getEntityB(i));
+			keys[i] = (Math.min(a, b) << 32) | Math.max(a, b);
+		}
+		Arrays.sort(keys);
+		return keys;
+	}
+
+	public static void main(String[] args)
+	{
+		int threads = args.length > 0 ? Integer.parseInt(args[0]) : Runtime.getRuntime().availableProcessors();
+		BroadPhaseBenchmark benchmark = new BroadPhaseBenchmark(threads);
+		boolean consistent = true;
+		for (int size : SCENE_SIZES)
+		{
+			consistent &= benchmark.runScene(size);
+		}
+		System.out.println(consistent ? "All broad phases found the same pairs as the reference."
+				: "Some broad phases found different pairs to the reference.");
+	}
+}
@@ -0,0 +1,207 @@
+package uk.ac.bham.cs.domct.physicsengine.collision;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Random;
+import java.util.Set;
+import java.util.concurrent.ForkJoinPool;
+
+import org.joml.Vector2f;
+import org.joml.Vector3f;
+import org.junit.Before;
+import org.junit.Test;
+
+import uk.ac.bham.cs.domct.physicsengine.component.State;
+import uk.ac.bham.cs.domct.physicsengine.entity.CollidableBox;
+import uk.ac.bham.cs.domct.physicsengine.entity.CollidablePlane;
+import uk.ac.bham.cs.domct.physicsengine.entity.Entity;
+import uk.ac.bham.cs.domct.physicsengine.entity.MovableCollidableBox;
+import uk.ac.bham.cs.domct.physicsengine.systems.EngineSystem;
+import uk.ac.bham.cs.domct.physicsengine.systems.physics.collision.Collision;
+import uk.ac.bham.cs.domct.physicsengine.systems.physics.collision.CollisionSystem;
+import uk.ac.bham.cs.domct.physicsengine.systems.physics.collision.detection.broadphase.BroadPhase;
+import uk.ac.bham.cs.domct.physicsengine.systems.physics.collision.detection.broadphase.BroadPhaseDetector;
+import uk.ac.bham.cs.domct.physicsengine.systems.physics.collision.detection.broadphase.BruteForceBroadPhase;
+import uk.ac.bham.cs.domct.physicsengine.systems.physics.collision.detection.broadphase.DynamicAabbTree;
+import uk.ac.bham.cs.domct.physicsengine.systems.physics.collision.detection.broadphase.PairBuffer;
+import uk.ac.bham.cs.domct.physicsengine.systems.physics.collision.detection.broadphase.ParallelSweepAndPrune;
+import uk.ac.bham.cs.domct.physicsengine.systems.physics.collision.detection.broadphase.SpatialHashGrid;
+import uk.ac.bham.cs.domct.physicsengine.systems.physics.collision.detection.broadphase.SweepAndPrune;
+import uk.ac.bham.cs.domct.physicsengine.systems.physics.dynamics.DynamicsSystem;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+
+/**
+ * Tests that every broad phase finds the same pairs as the brute force reference as
+ * entities move, are added and are removed.
+ *
+ * @author Dominic Cogan-Tucker
+ */
+public class BroadPhaseTests
+{
+	private List<Entity> bodies;
+	private Random random;
+
+	@Before
+	public void init()
+	{
+		EngineSystem.clear();
+		random = new Random(7);
+		bodies = new ArrayList<>();
+		bodies.add(CollidablePlane.create(new Vector3f(0, -0.5f, 0), new Vector3f(), new Vector2f(10)));
+		for (int i = 0; i < 200; i++)
+		{
+			addBox();
+		}
+	}
+
+	@Test
+	public void sweepAndPruneMatchesReference()
+	{
+		checkAgainstReference(new SweepAndPrune());
+	}
+
+	@Test
+	public void sweepAndPruneAlongYMatchesReference()
+	{
+		checkAgainstReference(new SweepAndPrune(1));
+	}
+
+	@Test
+	public void parallelSweepAndPruneMatchesReference()
+	{
+		for (int i = 0; i < 1500; i++)
+		{
+			addBox();
+		}
+		try (ParallelSweepAndPrune broadPhase = new ParallelSweepAndPrune(4))
+		{
+			checkAgainstReference(broadPhase);
+		}
+	}
+
+	@Test
+	public void parallelSweepAndPruneLeavesSuppliedPoolRunning()
+	{
+		for (int i = 0; i < 1500; i++)
+		{
+			addBox();
+		}
+		ForkJoinPool pool = new ForkJoinPool(4);
+		try
+		{
+			ParallelSweepAndPrune broadPhase = new ParallelSweepAndPrune(pool);
+			checkAgainstReference(broadPhase);
+			broadPhase.close();
+			assertFalse(pool.isShutdown());
+		}
+		finally
+		{
+			pool.shutdown();
+		}
+	}
+
+	@Test
+	public void dynamicAabbTreeMatchesReference()
+	{
+		checkAgainstReference(new DynamicAabbTree());
+	}
+
+	@Test
+	public void spatialHashGridMatchesReference()
+	{
+		checkAgainstReference(new SpatialHashGrid());
+	}
+
+	@Test
+	public void spatialHashGridWithOversizedEntitiesMatchesReference()
+	{
+		checkAgainstReference(new SpatialHashGrid(0.5f, 8));
+	}
+
+	@Test
+	public void staticPairsAreNeverGenerated()
+	{
+		EngineSystem.clear();
+		Entity plane = CollidablePlane.create(new Vector3f(0, -0.5f, 0), new Vector3f(), new Vector2f(10));
+		CollidableBox.create(new Vector3f(0, -0.5f, 0), new Vector3f(), 1, 1);
+		CollidableBox.create(new Vector3f(0.5f, -0.5f, 0), new Vector3f(), 1, 1);
+		Entity box = MovableCollidableBox.create(new Vector3f(3, -0.1f, 0), new Vector3f(), 1, 1);
+		
+		new DynamicsSystem(1 / 60.0).update();
+		CollisionSystem collisionSystem = new CollisionSystem(1 / 60.0);
+		collisionSystem.update();
+		List<Collision> collisions = collisionSystem.getCollidingPairs();
+		assertEquals(1, collisions.size());
+		Collision collision = collisions.iterator().next();
+		assertEquals(box, collision.getEntityA());
+		assertEquals(plane, collision.getEntityB());
+	}
+
+	/**
+	 * Steps the scene over several frames, moving, adding and removing boxes, checking the
+	 * given broad phase finds the same set of pairs as the reference every frame.
+	 *
+	 * @param broadPhase The broad phase to check.
+	 */
+	private void checkAgainstReference(BroadPhase broadPhase)
+	{
+		BroadPhase reference = new BruteForceBroadPhase();
+		for (int frame = 0; frame < 20; frame++)
+		{
+			for (Entity e : bodies)
+			{
+				if (e instanceof MovableCollidableBox)
+				{
+					e.getComponent(State.class).position.add(randomOffset(frame % 5 == 0 ? 1f : 0.05f));
+				}
+			}
+			if (frame % 4 == 1)
+			{
+				addBox();
+			}
+			if (frame % 4 == 3)
+			{
+				bodies.remove(bodies.size() / 2).destroy();
+			}
+			bodies.forEach(BroadPhaseDetector::updateBBox);
+			assertEquals(findPairs(reference), findPairs(broadPhase));
+		}
+	}
+
+	/**
+	 * Returns the set of pairs found by the broad phase, each pair as a set of two entities.
+	 *
+	 * @param broadPhase The broad phase.
+	 * @return The pairs found.
+	 */
+	private Set<Set<Entity>> findPairs(BroadPhase broadPhase)
+	{
+		PairBuffer pairs = new PairBuffer();
+		broadPhase.update(bodies);
+		broadPhase.findPairs(pairs);
+		Set<Set<Entity>> pairSet = new HashSet<>();
+		for (int i = 0; i < pairs.size(); i++)
+		{
+			Set<Entity> pair = new HashSet<>();
+			pair.add(pairs.getEntityA(i));
+			pair.add(pairs.getEntityB(i));
+			assertEquals(2, pair.size());
+			pairSet.add(pair);
+		}
+		assertEquals(pairs.size(), pairSet.size());
+		return pairSet;
+	}
+
+	private void addBox()
+	{
+		bodies.add(MovableCollidableBox.create(randomOffset(10), randomOffset(360), 0.5f + random.nextFloat(), 1));
+	}
+
+	private Vector3f randomOffset(float range)
+	{
+		return new Vector3f(random.nextFloat() - 0.5f, random.nextFloat() - 0.5f, random.nextFloat() - 0.5f).mul(range);
+	}
+}
@@ -1,5 +1,7 @@
 package uk.ac.bham.cs.domct.physicsengine.collision;
 
+import java.lang.ref.WeakReference;
+import java.util.Random;
 
 import org.joml.Vector2f;
 import org.joml.Vector3f;
@@ -7,14 +9,39 @@ import org.junit.Before;
 import org.junit.Test;
 
 import uk.ac.bham.cs.domct.physicsengine.component.Collidable;
+import uk.ac.bham.cs.domct.physicsengine.component.Material;
+import uk.ac.bham.cs.domct.physicsengine.component.Mesh;
+import uk.ac.bham.cs.domct.physicsengine.component.State;
+import uk.ac.bham.cs.domct.physicsengine.component.Transform;
 import uk.ac.bham.cs.domct.physicsengine.entity.CollidableBox;
 import uk.ac.bham.cs.domct.physicsengine.entity.CollidablePlane;
+import uk.ac.bham.cs.domct.physicsengine.entity.Entity;
 import uk.ac.bham.cs.domct.physicsengine.entity.MovableCollidableBall;
+import uk.ac.bham.cs.domct.physicsengine.entity.MovableCollidableBox;
+import uk.ac.bham.cs.domct.physicsengine.entity.MovableCollidableGameObject;
 import uk.ac.bham.cs.domct.physicsengine.systems.EngineSystem;
+import uk.ac.bham.cs.domct.physicsengine.systems.World;
 import uk.ac.bham.cs.domct.physicsengine.systems.physics.collision.Collision;
+import uk.ac.bham.cs.domct.physicsengine.systems.physics.collision.CollisionSystem;
+import uk.ac.bham.cs.domct.physicsengine.systems.physics.collision.PairCache;
+import uk.ac.bham.cs.domct.physicsengine.systems.physics.collision.contactGeneration.ContactPoint;
+import uk.ac.bham.cs.domct.physicsengine.systems.physics.collision.contactGeneration.PrimitiveContactGenerator;
+import uk.ac.bham.cs.domct.physicsengine.systems.physics.collision.detection.broadphase.SweepAndPrune;
+import uk.ac.bham.cs.domct.physicsengine.systems.physics.collision.detection.narrowphase.ConvexHull;
+import uk.ac.bham.cs.domct.physicsengine.systems.physics.collision.detection.narrowphase.HullBuilder;
+import uk.ac.bham.cs.domct.physicsengine.systems.physics.collision.detection.narrowphase.HullData;
 import uk.ac.bham.cs.domct.physicsengine.systems.physics.collision.detection.narrowphase.NarrowPhaseDetector;
+import uk.ac.bham.cs.domct.physicsengine.systems.physics.collision.detection.narrowphase.Simplex;
+import uk.ac.bham.cs.domct.physicsengine.systems.physics.collision.detection.narrowphase.SphereHull;
+import uk.ac.bham.cs.domct.physicsengine.systems.physics.collision.detection.narrowphase.SupportPoint;
+import uk.ac.bham.cs.domct.physicsengine.systems.physics.dynamics.DynamicsSystem;
+import uk.ac.bham.cs.domct.physicsengine.utils.FileUtils;
 
+import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
 import static org.junit.Assert.assertTrue;
 
 /**
@@ -366,4 +393,514 @@ public class CollisionTests
 		boolean gjkIntersection = NarrowPhaseDetector.areIntersecting(col);
 		assertTrue(gjkIntersection);
 	}
+	
+	// Checking that the pair cache keeps the collision of a pair for as long as the pair is found. //
+	@Test
+	public void pairCacheTest()
+	{
+		CollidableBox a = CollidableBox.create(new Vector3f(), new Vector3f(), 1, 1);
+		CollidableBox b = CollidableBox.create(new Vector3f(), new Vector3f(), 1, 1);
+		CollidableBox c = CollidableBox.create(new Vector3f(), new Vector3f(), 1, 1);
+		assertEquals(PairCache.pairId(a, b), PairCache.pairId(b, a));
+		
+		PairCache cache = new PairCache();
+		Collision ab = cache.get(a, b);
+		Collision bc = cache.get(b, c);
+		cache.removeStale();
+		assertSame(ab, cache.get(b, a));
+		cache.removeStale();
+		assertEquals(1, cache.size());
+		// The collision of the removed pair is reused for the new one.
+		assertSame(bc, cache.get(a, c));
+		assertTrue(bc.isBetween(c, a));
+		assertSame(ab, cache.get(a, b));
+		
+		// Enough pairs to grow the table, each keeping its collision.
+		CollidableBox[] boxes = new CollidableBox[40];
+		for (int i = 0; i < boxes.length; i++)
+		{
+			boxes[i] = CollidableBox.create(new Vector3f(), new Vector3f(), 1, 1);
+		}
+		Collision[] collisions = new Collision[boxes.length - 1];
+		for (int i = 0; i < collisions.length; i++)
+		{
+			collisions[i] = cache.get(boxes[i], boxes[i + 1]);
+		}
+		cache.removeStale();
+		for (int i = 0; i < collisions.length; i++)
+		{
+			assertSame(collisions[i], cache.get(boxes[i + 1], boxes[i]));
+		}
+		cache.removeStale();
+		assertEquals(collisions.length, cache.size());
+		
+		// A cached pair of movable entities keeps its order when found the other way round.
+		MovableCollidableBox d = MovableCollidableBox.create(new Vector3f(), new Vector3f(), 1, 1);
+		MovableCollidableBox e = MovableCollidableBox.create(new Vector3f(), new Vector3f(), 1, 1);
+		Collision de = cache.get(d, e);
+		assertSame(d, de.getEntityA());
+		cache.removeStale();
+		assertSame(de, cache.get(e, d));
+		assertSame(d, de.getEntityA());
+		assertSame(e, de.getEntityB());
+	}
+	
+	// Checking that a pair still separated by the direction kept from its last test is found after one iteration. //
+	@Test
+	public void warmStartedGjkTest()
+	{
+		CollidableBox a = CollidableBox.create(new Vector3f(), new Vector3f(), 1, 1);
+		CollidableBox b = CollidableBox.create(new Vector3f(1.5f, 0.2f, 0), new Vector3f(), 1, 1);
+		Collision col = new Collision(a, b);
+		NarrowPhaseDetector detector = new NarrowPhaseDetector();
+		
+		assertFalse(detector.intersects(col));
+		assertEquals(0, detector.getEarlyOuts());
+		detector.resetStatistics();
+		
+		assertFalse(detector.intersects(col));
+		assertEquals(1, detector.getTests());
+		assertEquals(1, detector.getIterations());
+		assertEquals(1, detector.getEarlyOuts());
+		
+		// The early out still holds when the broad phase gives a cached pair the other way round.
+		MovableCollidableBox c = MovableCollidableBox.create(new Vector3f(), new Vector3f(), 1, 1);
+		MovableCollidableBox d = MovableCollidableBox.create(new Vector3f(1.5f, 0.2f, 0), new Vector3f(), 1, 1);
+		PairCache cache = new PairCache();
+		assertFalse(detector.intersects(cache.get(c, d)));
+		cache.removeStale();
+		detector.resetStatistics();
+		assertFalse(detector.intersects(cache.get(d, c)));
+		assertEquals(1, detector.getEarlyOuts());
+	}
+	
+	// Checking that primitive pairs have their contact data generated in closed form. //
+	@Test
+	public void primitiveContactTest()
+	{
+		CollidablePlane plane = CollidablePlane.create(new Vector3f(), new Vector3f(), new Vector2f(10));
+		MovableCollidableBox box = MovableCollidableBox.create(new Vector3f(0, 0.4f, 0), new Vector3f(), 1, 1);
+		PrimitiveContactGenerator generator = new PrimitiveContactGenerator();
+		ContactPoint data = new ContactPoint();
+		
+		Collision col = new Collision(box, plane);
+		assertTrue(generator.handles(col));
+		assertTrue(generator.generateCollisionData(col, data));
+		assertEquals(0.1f, data.penDepth, 1E-4f);
+		assertEquals(new Vector3f(0, 1, 0), data.worldNormal);
+		
+		// A sphere of radius 0.3947 against the side of the box, in both orders.
+		MovableCollidableBall ball = MovableCollidableBall.create(new Vector3f(0.8f, 0.4f, 0), new Vector3f(), 0.02f, 1);
+		Collision ballBox = new Collision(ball, box);
+		assertTrue(generator.generateCollisionData(ballBox, data));
+		assertEquals(0.0947f, data.penDepth, 1E-3f);
+		assertEquals(1, data.worldNormal.x, 1E-5f);
+		Collision boxBall = new Collision(box, ball);
+		assertTrue(generator.generateCollisionData(boxBall, data));
+		assertEquals(0.0947f, data.penDepth, 1E-3f);
+		assertEquals(-1, data.worldNormal.x, 1E-5f);
+		
+		move(box, 0, 0.6f, 0);
+		assertFalse(generator.generateCollisionData(col, data));
+	}
+	
+	// Checking that a ball collides as an implicit sphere rather than the hull of its mesh. //
+	@Test
+	public void implicitSphereTest()
+	{
+		MovableCollidableBall a = MovableCollidableBall.create(new Vector3f(), new Vector3f(30, 45, 60), 0.04f, 1);
+		Collidable collidable = a.getComponent(Collidable.class);
+		float radius = collidable.radius * 0.04f;
+		assertTrue(collidable.hull instanceof SphereHull);
+		
+		// The bounding box stays tight around the sphere however it is rotated.
+		assertEquals(radius, collidable.bBox.maxX, 1E-5f);
+		assertEquals(-radius, collidable.bBox.minY, 1E-5f);
+		
+		// GJK finds the sphere's surface exactly, between the vertices of the mesh.
+		MovableCollidableBall b = MovableCollidableBall.create(new Vector3f(1.99f * radius, 0, 0), new Vector3f(0, 17, 0), 0.04f, 1);
+		assertTrue(NarrowPhaseDetector.areIntersecting(new Collision(a, b)));
+		move(b, 2.01f * radius, 0, 0);
+		assertFalse(NarrowPhaseDetector.areIntersecting(new Collision(a, b)));
+	}
+	
+	// Checking that entities of the same mesh share one copy of its hull, whatever their world. //
+	@Test
+	public void sharedHullTest()
+	{
+		Mesh prism = prism(12);
+		Entity a = new MovableCollidableGameObject(prism, new Material(), new Vector3f(), new Vector3f(), new Vector3f(1), 1);
+		Entity b = new MovableCollidableGameObject(new World(), prism, new Material(), 
+				new Vector3f(), new Vector3f(), new Vector3f(2), 1);
+		Entity c = new MovableCollidableGameObject(prism(12), new Material(), new Vector3f(), new Vector3f(), new Vector3f(1), 1);
+		HullData data = a.getComponent(Collidable.class).hull.getData();
+		assertEquals(24, data.getVertexCount());
+		assertSame(data, b.getComponent(Collidable.class).hull.getData());
+		assertNotSame(data, c.getComponent(Collidable.class).hull.getData());
+	}
+	
+	// Checking that support points searched from the last found for the pair are as far as the furthest vertex. //
+	@Test
+	public void warmStartedSupportTest()
+	{
+		Random random = new Random(1);
+		Mesh cube = FileUtils.loadOBJFile("cube.obj");
+		Mesh prism = prism(24);
+		for (int i = 0; i < 20; i++)
+		{
+			// The first pair isn't rotated, so their faces are coplanar with the axes.
+			Vector3f rotation = i == 0 ? new Vector3f() : new Vector3f(360 * random.nextFloat(), 
+					360 * random.nextFloat(), 360 * random.nextFloat());
+			Entity a = new MovableCollidableGameObject(new World(), prism, new Material(), new Vector3f(), 
+					rotation, new Vector3f(1 + i % 3), 1);
+			Entity b = new MovableCollidableGameObject(new World(), cube, new Material(), new Vector3f(), 
+					rotation.negate(new Vector3f()), new Vector3f(1), 1);
+			ConvexHull hullA = a.getComponent(Collidable.class).hull;
+			ConvexHull hullB = b.getComponent(Collidable.class).hull;
+			int[] starts = new Simplex().supportStarts;
+			SupportPoint sup = new SupportPoint();
+			
+			// Directions just off the axes, then a walk of directions each near the last.
+			Vector3f direction = new Vector3f();
+			for (int k = 0; k < 600; k++)
+			{
+				if (k < 6)
+				{
+					direction.zero().setComponent(k / 2, k % 2 == 0 ? 1 : -1).add(0, 0, -1.49E-7f);
+				}
+				else
+				{
+					direction.add(0.1f * (float) random.nextGaussian(), 0.1f * (float) random.nextGaussian(), 
+							0.1f * (float) random.nextGaussian());
+				}
+				NarrowPhaseDetector.generateSupport(hullA, hullB, direction, starts, sup);
+				assertEquals(furthest(a, prism, direction), sup.a.dot(direction), 1E-5f);
+				assertEquals(furthest(b, cube, direction.negate()), sup.b.dot(direction), 1E-5f);
+				direction.negate();
+			}
+		}
+	}
+	
+	// Checking that a cached pair of hulls of different sizes can be given in either order. //
+	@Test
+	public void reversedPairSupportTest()
+	{
+		World world = new World();
+		Entity big = new MovableCollidableGameObject(world, prism(64), new Material(), new Vector3f(), 
+				new Vector3f(), new Vector3f(2), 1);
+		Entity small = new MovableCollidableGameObject(world, prism(3), new Material(), new Vector3f(0.5f, 0, 0), 
+				new Vector3f(), new Vector3f(1), 1);
+		PairCache cache = new PairCache();
+		NarrowPhaseDetector detector = new NarrowPhaseDetector();
+		for (int i = 0; i < 8; i++)
+		{
+			// Each hull's search starts from the vertices last found on it, not the other's.
+			move(small, i % 2 == 0 ? 0.5f : -0.5f, 0, 0.3f * i - 1);
+			Collision col = i % 2 == 0 ? cache.get(big, small) : cache.get(small, big);
+			assertTrue(detector.intersects(col));
+			cache.removeStale();
+		}
+	}
+	
+	/**
+	 * Moves an entity to the given position, updating its transform as the narrow phase
+	 * does before testing its pairs.
+	 */
+	private static void move(Entity e, float x, float y, float z)
+	{
+		State state = e.getComponent(State.class);
+		state.position.set(x, y, z);
+		e.getComponent(Transform.class).update(state);
+	}
+	
+	/**
+	 * Returns how far the furthest vertex of an entity's mesh is in the given direction,
+	 * found by transforming every vertex into world space.
+	 */
+	private static float furthest(Entity e, Mesh mesh, Vector3f direction)
+	{
+		Transform transform = e.getComponent(Transform.class).update(e.getComponent(State.class));
+		Vector3f vertex = new Vector3f();
+		float max = Float.NEGATIVE_INFINITY;
+		for (int i = 0; i < mesh.vertices.length; i += 3)
+		{
+			transform.matrix.transformPosition(mesh.vertices[i], mesh.vertices[i + 1], mesh.vertices[i + 2], vertex);
+			max = Math.max(max, vertex.dot(direction));
+		}
+		return max;
+	}
+	
+	// Checking that the hull of a mesh no longer in use can be collected. //
+	@Test
+	public void unusedHullTest()
+	{
+		Mesh mesh = prism(7);
+		WeakReference<Mesh> unusedMesh = new WeakReference<>(mesh);
+		WeakReference<HullData> data = new WeakReference<>(hullOf(mesh));
+		mesh = null;
+		for (int i = 0; i < 100 && unusedMesh.get() != null; i++)
+		{
+			System.gc();
+		}
+		assertNull(unusedMesh.get());
+		
+		// The hull of a collected mesh is dropped when the hulls are next looked up.
+		Mesh other = prism(8);
+		for (int i = 0; i < 100 && data.get() != null; i++)
+		{
+			hullOf(other);
+			System.gc();
+		}
+		assertNull(data.get());
+	}
+	
+	/**
+	 * Creates an entity of the given mesh in a new world, both of which are then dropped,
+	 * and returns the hull of the mesh.
+	 */
+	private static HullData hullOf(Mesh mesh)
+	{
+		Entity e = new MovableCollidableGameObject(new World(), mesh, new Material(), new Vector3f(), 
+				new Vector3f(), new Vector3f(1), 1);
+		return e.getComponent(Collidable.class).hull.getData();
+	}
+	
+	// Checking that the bounding box of a hull is transformed from the bounds kept with the hull's vertices. //
+	@Test
+	public void hullBoundsTest()
+	{
+		Mesh prism = prism(12);
+		Entity e = new MovableCollidableGameObject(new World(), prism, new Material(), new Vector3f(3, 0, 0), 
+				new Vector3f(), new Vector3f(2), 1);
+		HullData data = e.getComponent(Collidable.class).hull.getData();
+		assertEquals(new Vector3f(-0.5f, -0.5f, -0.5f), data.getMin(new Vector3f()));
+		assertEquals(new Vector3f(0.5f, 0.5f, 0.5f), data.getMax(new Vector3f()));
+		assertEquals(new Vector3f(0.5f, 0.5f, 0.5f), e.getComponent(Collidable.class).bBox.getLocalHalfExtents(new Vector3f()));
+		assertEquals(2, e.getComponent(Collidable.class).bBox.minX, 1E-6f);
+		assertEquals(4, e.getComponent(Collidable.class).bBox.maxX, 1E-6f);
+	}
+	
+	// Checking that the hull of a mesh keeps only its corners, joined by the edges of the hull. //
+	@Test
+	public void hullBuilderTest()
+	{
+		// The corners of a cube, each given twice, with its centre and the centre of a face.
+		float[] positions = new float[3 * 18];
+		for (int i = 0; i < 16; i++)
+		{
+			positions[3 * i] = (i & 1) - 0.5f;
+			positions[3 * i + 1] = (i >> 1 & 1) - 0.5f;
+			positions[3 * i + 2] = (i >> 2 & 1) - 0.5f;
+		}
+		positions[3 * 17] = 0.5f;
+		HullData cube = new HullBuilder().build(positions);
+		assertEquals(8, cube.getVertexCount());
+		int neighbours = 0;
+		for (int i = 0; i < cube.getVertexCount(); i++)
+		{
+			assertTrue(cube.getNeighbourCount(i) >= 3);
+			neighbours += cube.getNeighbourCount(i);
+		}
+		// The 12 triangles of the cube have 18 edges, each giving two neighbours.
+		assertEquals(36, neighbours);
+		
+		// Points on a circle in a plane give a polygon, which can't be simplified.
+		float[] circle = new float[3 * 32];
+		for (int i = 0; i < 32; i++)
+		{
+			circle[3 * i] = (float) Math.cos(i * Math.PI / 16);
+			circle[3 * i + 2] = (float) Math.sin(i * Math.PI / 16);
+		}
+		HullData polygon = new HullBuilder().setMaxVertices(8).build(circle);
+		assertEquals(32, polygon.getVertexCount());
+		assertEquals(2, polygon.getNeighbourCount(0));
+		
+		// Lifting every other point off the plane gives a hull that is simplified.
+		for (int i = 0; i < 32; i += 2)
+		{
+			circle[3 * i + 1] = 1;
+		}
+		assertEquals(32, new HullBuilder().build(circle).getVertexCount());
+		assertEquals(8, new HullBuilder().setMaxVertices(8).build(circle).getVertexCount());
+		
+		// Corners of a cube and points near a plane, moved by about the builder's epsilon,
+		// must still give a convex hull reaching every point.
+		Random random = new Random(1);
+		for (int trial = 0; trial < 200; trial++)
+		{
+			double noise = Math.pow(10, -4 - trial % 5);
+			float[] points = new float[3 * (8 + random.nextInt(100))];
+			for (int i = 0; i < points.length / 3; i++)
+			{
+				for (int axis = 0; axis < 3; axis++)
+				{
+					double x = trial % 2 == 0 ? (i >> axis & 1) - 0.5 
+							: axis == 1 ? 0 : random.nextDouble();
+					points[3 * i + axis] = (float) (x + noise * random.nextGaussian());
+				}
+			}
+			assertTrue(hullError(new HullBuilder().build(points), points, random) < 1E-4f);
+		}
+	}
+	
+	/**
+	 * Returns the furthest any of the given points is outside the hull, along a number of
+	 * random directions, finding the support point of the hull by climbing its
+	 * neighbours, which only reaches the furthest vertex if the hull is convex.
+	 */
+	private static float hullError(HullData hull, float[] points, Random random)
+	{
+		float error = 0;
+		Vector3f vertex = new Vector3f();
+		for (int k = 0; k < 100; k++)
+		{
+			Vector3f direction = new Vector3f((float) random.nextGaussian(), 
+					(float) random.nextGaussian(), (float) random.nextGaussian()).normalize();
+			float max = Float.NEGATIVE_INFINITY;
+			for (int i = 0; i < points.length; i += 3)
+			{
+				max = Math.max(max, direction.dot(points[i], points[i + 1], points[i + 2]));
+			}
+			int current = 0;
+			float distance = hull.getVertex(0, vertex).dot(direction);
+			for (int best = -1; best != current;)
+			{
+				best = current;
+				for (int n = 0; n < hull.getNeighbourCount(best); n++)
+				{
+					int neighbour = hull.getNeighbour(best, n);
+					float d = hull.getVertex(neighbour, vertex).dot(direction);
+					if (d > distance)
+					{
+						distance = d;
+						current = neighbour;
+					}
+				}
+			}
+			error = Math.max(error, max - distance);
+		}
+		return error;
+	}
+	
+	// Checking that testing pairs on several threads gives the same result as on one. //
+	@Test
+	public void parallelNarrowPhaseTest()
+	{
+		MovableCollidableBox[] serial = stack(1);
+		MovableCollidableBox[] parallel = stack(4);
+		for (int i = 0; i < serial.length; i++)
+		{
+			assertEquals(serial[i].getComponent(State.class).position, parallel[i].getComponent(State.class).position);
+			assertEquals(serial[i].getComponent(State.class).getOrientation(), 
+					parallel[i].getComponent(State.class).getOrientation());
+		}
+	}
+	
+	// Checking that testing pairs of hulls with GJK and EPA on several threads gives the same result as on one. //
+	@Test
+	public void parallelHullNarrowPhaseTest()
+	{
+		Entity[] serial = hullStack(1, false);
+		Entity[] parallel = hullStack(4, false);
+		for (int i = 0; i < serial.length; i++)
+		{
+			assertEquals(serial[i].getComponent(State.class).position, parallel[i].getComponent(State.class).position);
+			assertEquals(serial[i].getComponent(State.class).getOrientation(), 
+					parallel[i].getComponent(State.class).getOrientation());
+		}
+	}
+	
+	// Checking that a static entity edited between steps is tested the same on several threads as on one. //
+	@Test
+	public void editedStaticNarrowPhaseTest()
+	{
+		Entity[] serial = hullStack(1, true);
+		Entity[] parallel = hullStack(4, true);
+		for (int i = 0; i < serial.length; i++)
+		{
+			assertEquals(serial[i].getComponent(State.class).position, parallel[i].getComponent(State.class).position);
+			assertEquals(serial[i].getComponent(State.class).getOrientation(), 
+					parallel[i].getComponent(State.class).getOrientation());
+		}
+	}
+	
+	/**
+	 * Steps columns of cubes and prisms, collided as hulls of their meshes, falling onto
+	 * a plane in a new world, testing the pairs on the given number of threads, and
+	 * returns the bodies. The plane is tilted and raised halfway through if asked, which
+	 * leaves its transform to be updated by the narrow phase.
+	 */
+	private static Entity[] hullStack(int parallelism, boolean editPlane)
+	{
+		World world = new World();
+		CollidablePlane plane = CollidablePlane.create(world, new Vector3f(), new Vector3f(), new Vector2f(20));
+		Mesh cube = FileUtils.loadOBJFile("cube.obj");
+		Mesh prism = prism(24);
+		Entity[] bodies = new Entity[100];
+		for (int i = 0; i < bodies.length; i++)
+		{
+			bodies[i] = new MovableCollidableGameObject(world, i % 2 == 0 ? cube : prism, new Material(),
+					new Vector3f(2 * (i % 5) - 4, 0.5f + 1.1f * (i / 25), 2 * (i / 5 % 5) - 4), 
+					new Vector3f(0, 5 * i, 0), new Vector3f(1), 1);
+		}
+		double dt = 1 / 60.0;
+		CollisionSystem collisionSystem = new CollisionSystem(world, dt, new SweepAndPrune(), parallelism);
+		world.addSystem(new DynamicsSystem(world, dt)).addSystem(collisionSystem);
+		for (int i = 0; i < 60; i++)
+		{
+			if (editPlane && i == 30)
+			{
+				State state = plane.getComponent(State.class);
+				state.rotation.z = 1;
+				state.position.y = 0.02f;
+			}
+			world.update();
+		}
+		collisionSystem.close();
+		return bodies;
+	}
+	
+	/**
+	 * Returns a mesh of the corners of a prism of unit height and diameter, whose ends
+	 * are regular polygons with the given number of sides.
+	 */
+	private static Mesh prism(int sides)
+	{
+		Mesh mesh = new Mesh();
+		mesh.vertices = new float[6 * sides];
+		for (int i = 0; i < 2 * sides; i++)
+		{
+			double angle = 2 * Math.PI * (i / 2) / sides;
+			mesh.vertices[3 * i] = 0.5f * (float) Math.cos(angle);
+			mesh.vertices[3 * i + 1] = i % 2 - 0.5f;
+			mesh.vertices[3 * i + 2] = 0.5f * (float) Math.sin(angle);
+		}
+		return mesh;
+	}
+	
+	/**
+	 * Steps columns of boxes falling onto a plane in a new world, testing the pairs on
+	 * the given number of threads, and returns the boxes.
+	 */
+	private static MovableCollidableBox[] stack(int parallelism)
+	{
+		World world = new World();
+		CollidablePlane.create(world, new Vector3f(), new Vector3f(), new Vector2f(20));
+		MovableCollidableBox[] boxes = new MovableCollidableBox[100];
+		for (int i = 0; i < boxes.length; i++)
+		{
+			boxes[i] = MovableCollidableBox.create(world, 
+					new Vector3f(2 * (i % 5) - 4, 0.5f + 1.1f * (i / 25), 2 * (i / 5 % 5) - 4), 
+					new Vector3f(0, 5 * i, 0), 1, 1);
+		}
+		double dt = 1 / 60.0;
+		CollisionSystem collisionSystem = new CollisionSystem(world, dt, new SweepAndPrune(), parallelism);
+		world.addSystem(new DynamicsSystem(world, dt)).addSystem(collisionSystem);
+		for (int i = 0; i < 60; i++)
+		{
+			world.update();
+		}
+		collisionSystem.close();
+		return boxes;
+	}
 }
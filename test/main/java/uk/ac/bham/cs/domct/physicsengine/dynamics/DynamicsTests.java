@@ -1,5 +1,6 @@
 package uk.ac.bham.cs.domct.physicsengine.dynamics;
 
+import org.joml.Quaternionf;
 import org.joml.Vector3f;
 
 import org.junit.Test;
@@ -10,6 +11,7 @@ import uk.ac.bham.cs.domct.physicsengine.entity.MovableCollidableBox;
 import uk.ac.bham.cs.domct.physicsengine.systems.physics.dynamics.EulerIntegrator;
 
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
 import static org.junit.Assert.assertTrue;
 
 /**
@@ -107,10 +109,10 @@ public class DynamicsTests
 		box.getComponent(Movable.class).torque.set(0, 1, 0);
 		EulerIntegrator.integrate(100, box);
 		
-		Vector3f actual = box.getComponent(State.class).rotation;
-		Vector3f expected = new Vector3f(0, 3.438E+6f, 0);
+		Quaternionf actual = box.getComponent(State.class).getOrientation();
+		Quaternionf expected = new Quaternionf().rotationY(6E+4f);
 		
-		assertTrue(expected.equals(actual, expected.length() * TOLLERANCE));
+		assertTrue(sameOrientation(expected, actual));
 	}
 	
 	@Test
@@ -120,9 +122,59 @@ public class DynamicsTests
 		ball.getComponent(Movable.class).torque.set(-1, 2, -3);
 		EulerIntegrator.integrate(5, ball);
 		
-		Vector3f actual = ball.getComponent(State.class).rotation;
-		Vector3f expected = new Vector3f(-8.594E+3f,  1.719E+4f, -2.578E+4f);
+		Quaternionf actual = ball.getComponent(State.class).getOrientation();
+		Vector3f angle = new Vector3f(-150, 300, -450);
+		Quaternionf expected = new Quaternionf().rotationAxis(angle.length(), new Vector3f(angle).normalize());
 		
-		assertTrue(expected.equals(actual, expected.length() * TOLLERANCE));
+		assertTrue(sameOrientation(expected, actual));
+	}
+	
+	@Test
+	public void rotationMatchesOrientation()
+	{
+		MovableCollidableBox box = MovableCollidableBox.create(new Vector3f(), new Vector3f(30, -60, 200), 1, 1);
+		State state = box.getComponent(State.class);
+		box.getComponent(Movable.class).torque.set(0.1f, 0.2f, 0.3f);
+		EulerIntegrator.integrate(0.1f, box);
+		
+		Quaternionf fromRotation = new Quaternionf().rotationXYZ((float) Math.toRadians(state.rotation.x), 
+				(float) Math.toRadians(state.rotation.y), (float) Math.toRadians(state.rotation.z));
+		
+		assertTrue(sameOrientation(state.getOrientation(), fromRotation));
+	}
+	
+	@Test
+	public void stepBackReusesPreviousState()
+	{
+		MovableCollidableBox box = MovableCollidableBox.create(new Vector3f(), new Vector3f(), 1, 1);
+		Movable mov = box.getComponent(Movable.class);
+		State state = box.getComponent(State.class);
+		mov.torque.set(0, 1, 0);
+		EulerIntegrator.integrate(0.1f, box);
+		Movable previousMovable = mov.previous;
+		State previousState = state.previous;
+		Vector3f position = new Vector3f(state.position);
+		Quaternionf orientation = new Quaternionf(state.getOrientation());
+		
+		EulerIntegrator.integrate(0.1f, box);
+		assertSame(previousMovable, mov.previous);
+		assertSame(previousState, state.previous);
+		EulerIntegrator.stepBack(box);
+		
+		assertEquals(position, state.position);
+		assertTrue(sameOrientation(orientation, state.getOrientation()));
+	}
+	
+	/**
+	 * Returns true if the two quaternions represent the same orientation, within the
+	 * tolerance, as q and -q represent the same rotation.
+	 * 
+	 * @param expected The expected orientation.
+	 * @param actual The actual orientation.
+	 * @return true if the orientations are the same.
+	 */
+	private static boolean sameOrientation(Quaternionf expected, Quaternionf actual)
+	{
+		return 1 - Math.abs(expected.dot(actual)) < TOLLERANCE;
 	}
 }
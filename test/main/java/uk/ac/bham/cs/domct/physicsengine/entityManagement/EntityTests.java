@@ -1,9 +1,13 @@
 package uk.ac.bham.cs.domct.physicsengine.entityManagement;
 
 
+import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.HashMap;
+import java.util.List;
 import java.util.Map;
 
+import org.joml.Vector2f;
 import org.joml.Vector3f;
 
 import org.junit.Before;
@@ -12,8 +16,16 @@ import uk.ac.bham.cs.domct.physicsengine.component.Collidable;
 import uk.ac.bham.cs.domct.physicsengine.component.Component;
 import uk.ac.bham.cs.domct.physicsengine.component.Movable;
 import uk.ac.bham.cs.domct.physicsengine.component.State;
+import uk.ac.bham.cs.domct.physicsengine.entity.CollidablePlane;
 import uk.ac.bham.cs.domct.physicsengine.entity.Entity;
+import uk.ac.bham.cs.domct.physicsengine.entity.MovableCollidableBox;
+import uk.ac.bham.cs.domct.physicsengine.systems.Archetype;
+import uk.ac.bham.cs.domct.physicsengine.systems.CommandBuffer;
 import uk.ac.bham.cs.domct.physicsengine.systems.EngineSystem;
+import uk.ac.bham.cs.domct.physicsengine.systems.Query;
+import uk.ac.bham.cs.domct.physicsengine.systems.World;
+import uk.ac.bham.cs.domct.physicsengine.systems.physics.collision.CollisionSystem;
+import uk.ac.bham.cs.domct.physicsengine.systems.physics.dynamics.DynamicsSystem;
 
 import static org.junit.Assert.*;
 
@@ -124,10 +136,191 @@ public class EntityTests
 			      .allMatch(e -> e.getValue().equals(actual.get(e.getKey()))));
 	}
 	
+	@Test
+	public void entityMovesBetweenArchetypes()
+	{
+		State s = new State();
+		Movable m = new Movable();
+		a.addComponent(s);
+		Archetype stateOnly = EngineSystem.getArchetypes(State.class).stream()
+				.filter(arch -> arch.contains(a)).findFirst().get();
+		a.addComponent(m);
+		assertFalse(stateOnly.contains(a));
+		List<Archetype> withMovable = EngineSystem.getArchetypes(State.class, Movable.class);
+		Archetype archetype = withMovable.stream().filter(arch -> arch.contains(a)).findFirst().get();
+		assertEquals(2, archetype.getSignature().size());
+		int row = Arrays.asList(archetype.getEntities()).indexOf(a);
+		assertSame(s, archetype.getColumn(State.class)[row]);
+		assertSame(m, archetype.getColumn(Movable.class)[row]);
+		a.removeComponent(Movable.class);
+		assertTrue(stateOnly.contains(a));
+		assertFalse(archetype.contains(a));
+		a.destroy();
+		assertFalse(stateOnly.contains(a));
+	}
+	
+	@Test
+	public void queryFollowsComponentChanges()
+	{
+		Query query = EngineSystem.query(State.class, Movable.class).without(Collidable.class);
+		assertSame(query, EngineSystem.query(Movable.class, State.class).without(Collidable.class));
+		List<Entity> matching = new ArrayList<>();
+		a.addComponent(new State()).addComponent(new Movable());
+		b.addComponent(new State());
+		query.addEntitiesTo(matching);
+		assertTrue(matching.contains(a));
+		assertFalse(matching.contains(b));
+		
+		long version = query.getVersion();
+		b.addComponent(new Movable());
+		a.addComponent(new Collidable());
+		assertNotEquals(version, query.getVersion());
+		matching.clear();
+		query.addEntitiesTo(matching);
+		assertFalse(matching.contains(a));
+		assertTrue(matching.contains(b));
+	}
+	
+	@Test
+	public void worldsAreIndependent()
+	{
+		World first = new World();
+		World second = new World();
+		Entity box = MovableCollidableBox.create(first, new Vector3f(0, 1, 0), new Vector3f(), 1, 1);
+		Entity other = MovableCollidableBox.create(second, new Vector3f(0, 1, 0), new Vector3f(), 1, 1);
+		CollidablePlane.create(second, new Vector3f(), new Vector3f(), new Vector2f(5));
+		assertEquals(1, first.query(Movable.class).size());
+		assertEquals(2, second.query(Collidable.class).size());
+		assertFalse(EngineSystem.getEntities(Movable.class).containsKey(box));
+		
+		first.addSystem(new DynamicsSystem(first, 1 / 60.0)).addSystem(new CollisionSystem(first, 1 / 60.0));
+		for (int i = 0; i < 10; i++)
+		{
+			first.update();
+		}
+		assertTrue(box.getComponent(State.class).position.y < 1);
+		assertEquals(new Vector3f(0, 1, 0), other.getComponent(State.class).position);
+		
+		first.clear();
+		assertFalse(box.isAlive());
+		assertTrue(other.isAlive());
+		assertNull(first.getEntity(other.getID()));
+	}
+	
+	@Test
+	public void commandsAreDeferredUntilApplied()
+	{
+		World world = new World();
+		Entity moving = new Entity(world).addComponent(new State());
+		Entity destroyed = new Entity(world).addComponent(new State());
+		Query query = world.query(State.class, Movable.class);
+		CommandBuffer commands = world.getCommandBuffer();
+		commands.addComponent(moving, new Movable())
+				.destroy(destroyed)
+				.addComponent(destroyed, new Movable())
+				.create(() -> new Entity(world).addComponent(new State()).addComponent(new Movable()));
+		assertEquals(0, query.size());
+		assertTrue(destroyed.isAlive());
+		
+		long version = world.getStructureVersion();
+		world.applyCommands();
+		assertEquals(0, commands.size());
+		assertEquals(2, query.size());
+		assertTrue(moving.hasComponent(Movable.class));
+		assertFalse(destroyed.isAlive());
+		assertFalse(destroyed.hasComponent(Movable.class));
+		// The two entities moved once each, and one was destroyed.
+		assertEquals(version + 3, world.getStructureVersion());
+	}
+	
+	@Test
+	public void failedCommandEmptiesBuffer()
+	{
+		World world = new World();
+		Entity e = new Entity(world).addComponent(new State());
+		CommandBuffer commands = world.getCommandBuffer();
+		commands.addComponent(e, new Movable())
+				.create(() -> 
+				{
+					throw new IllegalStateException();
+				})
+				.addComponent(e, new Collidable());
+		try
+		{
+			world.applyCommands();
+			fail();
+		}
+		catch (IllegalStateException ex)
+		{
+			assertEquals(0, commands.size());
+		}
+		assertTrue(e.hasComponent(Movable.class));
+		assertFalse(e.hasComponent(Collidable.class));
+		
+		commands.addComponent(e, new Collidable());
+		world.applyCommands();
+		assertTrue(e.hasComponent(Collidable.class));
+	}
+	
 	@Test
 	public void uniqueIDs()
 	{
 		assertNotEquals(a.getID(), b.getID());
 		assertNotEquals(b.getID(), c.getID());
 	}
+	
+	@Test
+	public void destroyedHandlesAreStale()
+	{
+		long handle = a.getID();
+		assertSame(a, EngineSystem.getEntity(handle));
+		a.destroy();
+		assertFalse(a.isAlive());
+		assertNull(EngineSystem.getEntity(handle));
+		Entity d = new Entity();
+		assertEquals(a.getIndex(), d.getIndex());
+		assertNotEquals(handle, d.getID());
+		assertTrue(d.isAlive());
+		assertNull(EngineSystem.getEntity(handle));
+		assertSame(d, EngineSystem.getEntity(d.getID()));
+	}
+	
+	@Test
+	public void addComponentToDestroyedEntity()
+	{
+		a.destroy();
+		try
+		{
+			a.addComponent(new State());
+			fail();
+		}
+		catch (IllegalStateException e)
+		{
+			assertFalse(a.isAlive());
+		}
+	}
+	
+	@Test
+	public void componentsAreStoredByTheWorld()
+	{
+		World world = new World();
+		Entity e = new Entity(world).addComponent(new State());
+		State replacement = new State();
+		world.getCommandBuffer().removeComponent(e, State.class).addComponent(e, replacement);
+		world.applyCommands();
+		assertSame(replacement, e.getComponent(State.class));
+		assertSame(replacement, world.getArchetype(e).getColumn(State.class)[0]);
+		
+		e.destroy();
+		assertFalse(e.hasComponent(State.class));
+		try
+		{
+			e.removeComponent(State.class);
+			fail();
+		}
+		catch (IllegalStateException ex)
+		{
+			assertFalse(e.hasComponent(State.class));
+		}
+	}
 }